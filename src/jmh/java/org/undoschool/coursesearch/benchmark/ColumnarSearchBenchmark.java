@@ -0,0 +1,59 @@
+package org.undoschool.coursesearch.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.undoschool.coursesearch.service.CourseColumns;
+import org.undoschool.coursesearch.service.SearchCriteria;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Filter-only searches answered by {@link CourseColumns}, the in-process columnar tier, for
+ * catalogs of different sizes. Criteria cycle through synthetic filter combinations and sorts;
+ * run with -prof gc to see the allocation per search.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ColumnarSearchBenchmark {
+
+    private static final int CRITERIA = 1024;
+    private static final String[] SORTS = {"upcoming", "priceAsc", "priceDesc"};
+
+    @Param({"10000", "100000", "1000000"})
+    public int courses;
+
+    private CourseColumns columns;
+    private SearchCriteria[] criteria;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SyntheticCourses synthetic = new SyntheticCourses(42);
+        columns = CourseColumns.of(synthetic.courses(0, courses));
+        criteria = new SearchCriteria[CRITERIA];
+        for (int i = 0; i < CRITERIA; i++) {
+            criteria[i] = synthetic.criteria(false);
+            criteria[i].setSort(SORTS[i % SORTS.length]);
+        }
+    }
+
+    @Benchmark
+    public Object search() {
+        SearchCriteria next = criteria[this.next++ & (CRITERIA - 1)];
+        return columns.search(next, 10);
+    }
+}
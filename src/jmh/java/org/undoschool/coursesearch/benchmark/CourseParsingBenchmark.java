@@ -0,0 +1,70 @@
+package org.undoschool.coursesearch.benchmark;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.undoschool.coursesearch.document.CourseDocument;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing a course catalog file as loaded at startup: the streaming parser the ingestion
+ * pipeline uses (one course at a time) versus binding the whole array into a list.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CourseParsingBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int courses;
+
+    private ObjectMapper objectMapper;
+    private byte[] json;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        json = objectMapper.writeValueAsBytes(new SyntheticCourses(42).courses(0, courses));
+    }
+
+    @Benchmark
+    public long streaming(Blackhole blackhole) throws IOException {
+        long parsed = 0;
+        try (JsonParser parser = objectMapper.createParser(new ByteArrayInputStream(json))) {
+            parser.nextToken();
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                blackhole.consume(objectMapper.readValue(parser, CourseDocument.class));
+                parsed++;
+            }
+        }
+        return parsed;
+    }
+
+    @Benchmark
+    public List<CourseDocument> wholeArray() throws IOException {
+        return objectMapper.readValue(json, new TypeReference<>() {
+        });
+    }
+}
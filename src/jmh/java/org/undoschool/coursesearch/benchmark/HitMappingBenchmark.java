@@ -0,0 +1,62 @@
+package org.undoschool.coursesearch.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.elasticsearch.core.convert.MappingElasticsearchConverter;
+import org.springframework.data.elasticsearch.core.document.Document;
+import org.springframework.data.elasticsearch.core.mapping.SimpleElasticsearchMappingContext;
+import org.undoschool.coursesearch.document.CourseDocument;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hit source to CourseDocument with the Spring Data converter, the per-hit work behind
+ * SearchHit::getContent, for result pages of several sizes.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HitMappingBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int hits;
+
+    private MappingElasticsearchConverter converter;
+    private List<Document> sources;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SimpleElasticsearchMappingContext mappingContext = new SimpleElasticsearchMappingContext();
+        converter = new MappingElasticsearchConverter(mappingContext);
+        converter.afterPropertiesSet();
+
+        sources = new ArrayList<>(hits);
+        for (CourseDocument course : new SyntheticCourses(42).courses(0, hits)) {
+            sources.add(converter.mapObject(course));
+        }
+    }
+
+    @Benchmark
+    public List<CourseDocument> mapHits() {
+        List<CourseDocument> courses = new ArrayList<>(sources.size());
+        for (Document source : sources) {
+            courses.add(converter.read(CourseDocument.class, source));
+        }
+        return courses;
+    }
+}
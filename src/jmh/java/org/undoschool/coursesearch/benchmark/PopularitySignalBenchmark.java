@@ -0,0 +1,82 @@
+package org.undoschool.coursesearch.benchmark;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.undoschool.coursesearch.config.CourseSearchProperties;
+import org.undoschool.coursesearch.service.CoursePopularityService;
+import org.undoschool.coursesearch.service.CourseSignal;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Signals recorded per second by {@link CoursePopularityService} from 8 threads, against a
+ * map guarded by one lock as the baseline. Most signals go to a few popular courses, which is
+ * where a shared lock or a single atomic per course would contend.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(8)
+public class PopularitySignalBenchmark {
+
+    private static final int SIGNALS = 4096;
+
+    @Param({"100", "10000"})
+    public int courses;
+
+    private CoursePopularityService service;
+    private final Map<String, Double> locked = new HashMap<>();
+    private List<CourseSignal>[] signals;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+    }
+
+    @Setup(Level.Trial)
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        // Never flushed, so no index is needed
+        service = new CoursePopularityService(null, null, new CourseSearchProperties(), new SimpleMeterRegistry());
+        SplittableRandom random = new SplittableRandom(42);
+        signals = new List[SIGNALS];
+        for (int i = 0; i < SIGNALS; i++) {
+            // Half of the signals go to the first 1% of the courses
+            int course = random.nextBoolean() ? random.nextInt(Math.max(courses / 100, 1)) : random.nextInt(courses);
+            CourseSignal.Type type = random.nextInt(20) == 0 ? CourseSignal.Type.ENROLMENT : CourseSignal.Type.CLICK;
+            signals[i] = List.of(CourseSignal.builder().id("course-" + course).type(type).build());
+        }
+    }
+
+    @Benchmark
+    public void record(Cursor cursor) {
+        service.record(signals[cursor.next++ & (SIGNALS - 1)]);
+    }
+
+    @Benchmark
+    public void lockedMap(Cursor cursor) {
+        CourseSignal signal = signals[cursor.next++ & (SIGNALS - 1)].get(0);
+        synchronized (locked) {
+            locked.merge(signal.getId(), signal.getType() == CourseSignal.Type.CLICK ? 1.0 : 10.0, Double::sum);
+        }
+    }
+}
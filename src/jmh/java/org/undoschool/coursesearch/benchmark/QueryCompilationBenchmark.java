@@ -0,0 +1,73 @@
+package org.undoschool.coursesearch.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.elasticsearch.client.elc.NativeQuery;
+import org.springframework.data.elasticsearch.core.query.Query;
+import org.undoschool.coursesearch.service.CourseQueryCompiler;
+import org.undoschool.coursesearch.service.CourseQueryCompiler.TextMode;
+import org.undoschool.coursesearch.service.SearchCriteria;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SearchCriteria to query: the Spring Data Criteria query the service used to build versus the
+ * native bool query from {@link CourseQueryCompiler}, and the native query rendered to the JSON
+ * that goes on the wire.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QueryCompilationBenchmark {
+
+    // Distinct criteria cycled through, so the JIT cannot specialize on one shape
+    private static final int CRITERIA = 1024;
+
+    @Param({"false", "true"})
+    public boolean withText;
+
+    private final CourseQueryCompiler compiler = new CourseQueryCompiler();
+    private SearchCriteria[] criteria;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SyntheticCourses synthetic = new SyntheticCourses(42);
+        criteria = new SearchCriteria[CRITERIA];
+        for (int i = 0; i < CRITERIA; i++) {
+            criteria[i] = synthetic.criteria(withText);
+        }
+    }
+
+    @Benchmark
+    public Query springDataCriteria() {
+        return FilterContextBenchmark.legacyQuery(nextCriteria(), compiler);
+    }
+
+    @Benchmark
+    public NativeQuery nativeQuery() {
+        return compiler.compile(nextCriteria(), TextMode.MATCH);
+    }
+
+    @Benchmark
+    public String nativeQueryJson() {
+        return compiler.compile(nextCriteria(), TextMode.MATCH).getQuery().toString();
+    }
+
+    private SearchCriteria nextCriteria() {
+        return criteria[next++ & (CRITERIA - 1)];
+    }
+}
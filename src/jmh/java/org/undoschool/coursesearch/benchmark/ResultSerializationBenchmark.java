@@ -0,0 +1,68 @@
+package org.undoschool.coursesearch.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.undoschool.coursesearch.document.CourseDocument;
+import org.undoschool.coursesearch.service.SearchResult;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SearchResult to JSON bytes with the ObjectMapper configuration Spring MVC uses, for full
+ * documents and for the card projection.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResultSerializationBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int hits;
+
+    private ObjectMapper objectMapper;
+    private SearchResult full;
+    private SearchResult cards;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+        List<CourseDocument> courses = new SyntheticCourses(42).courses(0, hits);
+        full = SearchResult.builder().total(hits).courses(courses).build();
+        cards = SearchResult.builder().total(hits).courses(courses.stream()
+                .map(c -> CourseDocument.builder()
+                        .id(c.getId())
+                        .title(c.getTitle())
+                        .price(c.getPrice())
+                        .nextSessionDate(c.getNextSessionDate())
+                        .build())
+                .toList()).build();
+    }
+
+    @Benchmark
+    public byte[] fullDocuments() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(full);
+    }
+
+    @Benchmark
+    public byte[] cardView() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(cards);
+    }
+}
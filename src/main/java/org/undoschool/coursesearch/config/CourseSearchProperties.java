@@ -0,0 +1,198 @@
+package org.undoschool.coursesearch.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tunables for the course search service, bound from the {@code coursesearch.*} keys in application.yml.
+ */
+@Data
+@ConfigurationProperties(prefix = "coursesearch")
+public class CourseSearchProperties {
+
+    private Cursor cursor = new Cursor();
+    private Export export = new Export();
+    private Ingest ingest = new Ingest();
+    private Index index = new Index();
+    private Sync sync = new Sync();
+    private Cache cache = new Cache();
+    private Coalesce coalesce = new Coalesce();
+    private Execution execution = new Execution();
+    private Batch batch = new Batch();
+    private Breaker breaker = new Breaker();
+    private Columnar columnar = new Columnar();
+    private Popularity popularity = new Popularity();
+    private Totals totals = new Totals();
+    private SlowLog slowLog = new SlowLog();
+    private Bootstrap bootstrap = new Bootstrap();
+
+    @Data
+    public static class Cursor {
+        // How long Elasticsearch keeps a point-in-time open between two cursor pages
+        private Duration keepAlive = Duration.ofMinutes(1);
+    }
+
+    @Data
+    public static class Export {
+        // Hits fetched per search_after round trip; bounds the memory held per export
+        private int batchSize = 1000;
+        private Duration keepAlive = Duration.ofMinutes(2);
+        // Exports matching more courses are rejected with 400; 0 exports any number
+        private long maxCourses = 0;
+    }
+
+    @Data
+    public static class Ingest {
+        // A bulk request is sent once either limit is reached
+        private int batchSize = 1000;
+        private DataSize batchBytes = DataSize.ofMegabytes(5);
+        // Bulk requests in flight at the same time
+        private int concurrency = 2;
+        // Attempts for documents rejected with a retryable status (429 or 5xx)
+        private int maxRetries = 3;
+        private Duration retryBackoff = Duration.ofMillis(500);
+    }
+
+    @Data
+    public static class Index {
+        // Primary shards of a new index version; the catalog fits comfortably in one
+        private int shards = 1;
+        // Settings a rebuilt index is switched to once loading has finished
+        private String refreshInterval = "1s";
+        private int replicas = 1;
+        private int forceMergeSegments = 1;
+        // Earlier versions kept after an alias swap, for rollback
+        private int retainedVersions = 1;
+    }
+
+    @Data
+    public static class Sync {
+        // Changes to the same id within one window are coalesced into a single bulk operation
+        private Duration window = Duration.ofSeconds(1);
+        // Flush early once this many distinct ids are pending
+        private int maxPending = 5000;
+        // Directory polled for *.ndjson change-log files; disabled when empty
+        private String changeLogDir;
+    }
+
+    @Data
+    public static class Cache {
+        private boolean enabled = true;
+        // Total weight of cached results, where each result weighs 1 + its number of courses
+        private long maxWeight = 20_000;
+        private Duration ttl = Duration.ofSeconds(30);
+        // Last good result per search, served marked as stale while Elasticsearch is failing
+        private boolean staleEnabled = true;
+        private long staleMaxWeight = 50_000;
+        private Duration staleTtl = Duration.ofHours(1);
+    }
+
+    @Data
+    public static class Coalesce {
+        private boolean enabled = true;
+        // How long a request waits for an identical in-flight search before giving up
+        private Duration timeout = Duration.ofSeconds(5);
+    }
+
+    @Data
+    public static class Execution {
+        // Searches running against Elasticsearch at the same time
+        private int maxConcurrent = 64;
+        // How long a request waits for a free slot before it is rejected with 503
+        private Duration acquireTimeout = Duration.ofMillis(200);
+        // Deadline for one search, fuzzy tiers included; exceeded searches return 504
+        private Duration timeout = Duration.ofSeconds(3);
+        // Send a second copy of a search still running after hedge-delay; the first answer wins
+        private boolean hedge = false;
+        private Duration hedgeDelay = Duration.ofMillis(250);
+    }
+
+    @Data
+    public static class Breaker {
+        private boolean enabled = true;
+        // Outcomes of the most recent searches the failure rate is computed over
+        private int windowSize = 50;
+        // The breaker does not open before this many outcomes are recorded
+        private int minimumCalls = 20;
+        private double failureRateThreshold = 0.5;
+        // How long an open breaker fails fast before letting a probe search through
+        private Duration openDuration = Duration.ofSeconds(10);
+    }
+
+    @Data
+    public static class Batch {
+        // Searches accepted in one /api/search/batch request
+        private int maxSize = 20;
+    }
+
+    @Data
+    public static class Columnar {
+        // Serve searches without a text query from an in-process copy of the catalog
+        private boolean enabled = false;
+        // Larger catalogs are not loaded; every course is held on the heap
+        private int maxCourses = 2_000_000;
+        private int loadBatchSize = 5000;
+    }
+
+    @Data
+    public static class Popularity {
+        // Signals are summed in memory per course and written as one scripted update each per flush
+        private Duration flushInterval = Duration.ofSeconds(30);
+        // Distinct courses counted between flushes; signals for further ids are dropped
+        private int maxTracked = 100_000;
+        private double clickWeight = 1;
+        private double enrolmentWeight = 10;
+        // Weight of the rank_feature clause in text and relevance searches; 0 disables it
+        private float boost = 1;
+    }
+
+    @Data
+    public static class Totals {
+
+        public enum Policy {
+            EXACT,      // count every match
+            CAPPED,     // count up to the threshold; beyond it the total is a lower bound
+            NONE        // do not count; the total is a lower bound from the page itself
+        }
+
+        // How /api/search computes SearchResult.total; /api/search/count is always exact
+        private Policy policy = Policy.CAPPED;
+        private int threshold = 10_000;
+    }
+
+    @Data
+    public static class SlowLog {
+        private boolean enabled = true;
+        // Searches taking at least this long, end to end, are recorded
+        private Duration threshold = Duration.ofMillis(500);
+        // Fraction of recorded searches re-run once with the profile API, one at a time
+        private double profileSampleRate = 0.1;
+        // Most recent slow searches kept for /api/admin/slow-queries
+        private int capacity = 100;
+    }
+
+    @Data
+    public static class Bootstrap {
+        // Check and load the catalog in the background; readiness stays down until it is done
+        private boolean async = true;
+        // Pause between attempts while Elasticsearch is unreachable
+        private Duration retryBackoff = Duration.ofSeconds(5);
+        // Searches run once the catalog is usable, before the instance reports ready
+        private List<WarmQuery> warmQueries = new ArrayList<>();
+    }
+
+    @Data
+    public static class WarmQuery {
+        private String q;
+        private String category;
+        private String type;
+        private String sort = "upcoming";
+        private int size = 10;
+        private List<String> facets = new ArrayList<>();
+    }
+}
@@ -1,9 +1,11 @@
 package org.undoschool.coursesearch.config;
 
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.elasticsearch.repository.config.EnableElasticsearchRepositories;
 
 @Configuration
+@EnableConfigurationProperties(CourseSearchProperties.class)
 @EnableElasticsearchRepositories(basePackages = "org.undoschool.coursesearch.repository")
 public class ElasticSearchConfig {
 }
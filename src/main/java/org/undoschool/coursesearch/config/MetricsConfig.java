@@ -0,0 +1,58 @@
+package org.undoschool.coursesearch.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+
+/**
+ * Times JSON serialization of response bodies, the last stage of a search that the service
+ * itself cannot see. Replaces Boot's default Jackson converter with one that records
+ * "http.response.serialization" tagged by the body type and format. The binary formats in
+ * {@link ResponseFormatConfig} record the same timer.
+ */
+@Configuration
+public class MetricsConfig {
+
+    @Bean
+    public MappingJackson2HttpMessageConverter mappingJackson2HttpMessageConverter(ObjectMapper objectMapper,
+                                                                                   MeterRegistry meterRegistry) {
+        return new TimedJacksonConverter(objectMapper, meterRegistry);
+    }
+
+    static class TimedJacksonConverter extends MappingJackson2HttpMessageConverter {
+
+        private final MeterRegistry meterRegistry;
+
+        TimedJacksonConverter(ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+            super(objectMapper);
+            this.meterRegistry = meterRegistry;
+        }
+
+        @Override
+        protected void writeInternal(Object object, Type type, HttpOutputMessage outputMessage)
+                throws IOException, HttpMessageNotWritableException {
+            Timer.Sample sample = Timer.start(meterRegistry);
+            try {
+                super.writeInternal(object, type, outputMessage);
+            } finally {
+                recordSerialization(meterRegistry, sample, object, "json");
+            }
+        }
+    }
+
+    static void recordSerialization(MeterRegistry meterRegistry, Timer.Sample sample, Object body, String format) {
+        sample.stop(Timer.builder("http.response.serialization")
+                .tag("type", body.getClass().getSimpleName())
+                .tag("format", format)
+                .publishPercentileHistogram()
+                .register(meterRegistry));
+    }
+}
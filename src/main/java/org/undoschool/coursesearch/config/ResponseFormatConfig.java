@@ -0,0 +1,91 @@
+package org.undoschool.coursesearch.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+
+/**
+ * Binary response formats for clients on slow links, picked by the Accept header:
+ * Smile ({@value #SMILE}) and CBOR ({@value #CBOR}). JSON stays the default.
+ *
+ * Both mappers are built from Boot's Jackson builder, so they share the JSON configuration
+ * (dates, NON_NULL fields, modules). Smile is written with back-references for repeated
+ * field names and short string values, so a page of courses repeats each field name once
+ * instead of once per course. Bodies are streamed straight into the response, like JSON.
+ */
+@Configuration
+public class ResponseFormatConfig {
+
+    public static final String SMILE = "application/x-jackson-smile";
+    public static final String CBOR = "application/cbor";
+
+    @Bean
+    public MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter(Jackson2ObjectMapperBuilder builder,
+                                                                             MeterRegistry meterRegistry) {
+        SmileFactory factory = SmileFactory.builder()
+                .enable(SmileGenerator.Feature.CHECK_SHARED_STRING_VALUES)
+                .build();
+        return new TimedSmileConverter(builder.factory(factory).build(), meterRegistry);
+    }
+
+    @Bean
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder builder,
+                                                                           MeterRegistry meterRegistry) {
+        return new TimedCborConverter(builder.factory(new CBORFactory()).build(), meterRegistry);
+    }
+
+    static class TimedSmileConverter extends MappingJackson2SmileHttpMessageConverter {
+
+        private final MeterRegistry meterRegistry;
+
+        TimedSmileConverter(ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+            super(objectMapper);
+            this.meterRegistry = meterRegistry;
+        }
+
+        @Override
+        protected void writeInternal(Object object, Type type, HttpOutputMessage outputMessage)
+                throws IOException, HttpMessageNotWritableException {
+            Timer.Sample sample = Timer.start(meterRegistry);
+            try {
+                super.writeInternal(object, type, outputMessage);
+            } finally {
+                MetricsConfig.recordSerialization(meterRegistry, sample, object, "smile");
+            }
+        }
+    }
+
+    static class TimedCborConverter extends MappingJackson2CborHttpMessageConverter {
+
+        private final MeterRegistry meterRegistry;
+
+        TimedCborConverter(ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+            super(objectMapper);
+            this.meterRegistry = meterRegistry;
+        }
+
+        @Override
+        protected void writeInternal(Object object, Type type, HttpOutputMessage outputMessage)
+                throws IOException, HttpMessageNotWritableException {
+            Timer.Sample sample = Timer.start(meterRegistry);
+            try {
+                super.writeInternal(object, type, outputMessage);
+            } finally {
+                MetricsConfig.recordSerialization(meterRegistry, sample, object, "cbor");
+            }
+        }
+    }
+}
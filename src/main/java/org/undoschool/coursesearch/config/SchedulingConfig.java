@@ -0,0 +1,12 @@
+package org.undoschool.coursesearch.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Enables the periodic jobs (delta sync flushes, change-log polling).
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
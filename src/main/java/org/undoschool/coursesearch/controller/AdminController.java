@@ -0,0 +1,47 @@
+package org.undoschool.coursesearch.controller;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.undoschool.coursesearch.service.CourseIndexManager;
+import org.undoschool.coursesearch.service.DataLoaderService;
+import org.undoschool.coursesearch.service.SlowQueryLog;
+
+import java.util.List;
+
+/**
+ * Operational endpoints that change or inspect the index rather than search it.
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api/admin")
+@RequiredArgsConstructor
+public class AdminController {
+
+    private final DataLoaderService dataLoaderService;
+    private final SlowQueryLog slowQueryLog;
+
+    /**
+     * Rebuilds the catalog into a new index version and swaps the alias once it is ready.
+     * Searches continue against the current version until the swap.
+     */
+    @PostMapping("/reindex")
+    public ResponseEntity<CourseIndexManager.RebuildReport> reindex() throws Exception {
+        log.info("Reindex requested");
+        return ResponseEntity.ok(dataLoaderService.rebuildFromSampleData());
+    }
+
+    /**
+     * The most recent searches over the slow-log threshold, newest first, with the request
+     * sent to Elasticsearch and, for sampled ones, its profile.
+     */
+    @GetMapping("/slow-queries")
+    public ResponseEntity<List<SlowQueryLog.SlowQuery>> slowQueries(@RequestParam(defaultValue = "20") int limit) {
+        return ResponseEntity.ok(slowQueryLog.recent(limit));
+    }
+}
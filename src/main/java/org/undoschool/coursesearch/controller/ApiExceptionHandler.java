@@ -0,0 +1,59 @@
+package org.undoschool.coursesearch.controller;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ProblemDetail;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.undoschool.coursesearch.service.SearchRejectedException;
+import org.undoschool.coursesearch.service.SearchTimeoutException;
+
+/**
+ * Maps service-layer exceptions to HTTP problem details for all API controllers.
+ */
+@RestControllerAdvice
+public class ApiExceptionHandler {
+
+    /**
+     * Invalid parameter combinations, malformed cursors and rejected changes are client errors.
+     */
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<ProblemDetail> badRequest(IllegalArgumentException e) {
+        return ResponseEntity.badRequest().body(problemFor(e));
+    }
+
+    /**
+     * The concurrency limit is reached; clients should back off briefly and retry.
+     */
+    @ExceptionHandler(SearchRejectedException.class)
+    public ResponseEntity<ProblemDetail> serviceUnavailable(SearchRejectedException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(problemFor(e));
+    }
+
+    @ExceptionHandler(SearchTimeoutException.class)
+    public ResponseEntity<ProblemDetail> gatewayTimeout(SearchTimeoutException e) {
+        return ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT).body(problemFor(e));
+    }
+
+    /**
+     * Problem detail for an exception, with the status the handlers above would respond with.
+     * Also used for the per-item errors of a batch search, which are reported inside a 200 response.
+     */
+    static ProblemDetail problemFor(RuntimeException e) {
+        HttpStatus status;
+        if (e instanceof IllegalArgumentException) {
+            status = HttpStatus.BAD_REQUEST;
+        } else if (e instanceof SearchRejectedException) {
+            status = HttpStatus.SERVICE_UNAVAILABLE;
+        } else if (e instanceof SearchTimeoutException) {
+            status = HttpStatus.GATEWAY_TIMEOUT;
+        } else {
+            // Unexpected failures keep their details in the log, not in the response
+            return ProblemDetail.forStatusAndDetail(HttpStatus.INTERNAL_SERVER_ERROR, "Search failed");
+        }
+        return ProblemDetail.forStatusAndDetail(status, e.getMessage());
+    }
+}
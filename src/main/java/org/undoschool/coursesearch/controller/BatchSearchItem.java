@@ -0,0 +1,21 @@
+package org.undoschool.coursesearch.controller;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import org.springframework.http.ProblemDetail;
+import org.undoschool.coursesearch.service.SearchOutcome;
+import org.undoschool.coursesearch.service.SearchResult;
+
+/**
+ * One entry of a batch search response: the result, or the problem that search ran into.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record BatchSearchItem(SearchResult result, ProblemDetail error) {
+
+    static BatchSearchItem of(SearchOutcome outcome) {
+        return outcome.error() == null ? new BatchSearchItem(outcome.result(), null) : failed(outcome.error());
+    }
+
+    static BatchSearchItem failed(RuntimeException error) {
+        return new BatchSearchItem(null, ApiExceptionHandler.problemFor(error));
+    }
+}
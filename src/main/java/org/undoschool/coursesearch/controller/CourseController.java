@@ -1,17 +1,23 @@
 package org.undoschool.coursesearch.controller;
 
+import org.springdoc.core.annotations.ParameterObject;
+import org.undoschool.coursesearch.service.CourseExportService;
 import org.undoschool.coursesearch.service.CourseSearchService;
-import org.undoschool.coursesearch.service.CourseType;
+import org.undoschool.coursesearch.service.CourseSuggestService;
+import org.undoschool.coursesearch.service.CourseSuggestService.CourseSuggestion;
 import org.undoschool.coursesearch.service.SearchCriteria;
+import org.undoschool.coursesearch.service.SearchOutcome;
 import org.undoschool.coursesearch.service.SearchResult;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.time.LocalDate;
-import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 
 @Slf4j
 @RestController
@@ -19,56 +25,119 @@ import java.time.LocalDateTime;
 @RequiredArgsConstructor
 public class CourseController {
 
+    public static final MediaType APPLICATION_NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
     private final CourseSearchService searchService;
+    private final CourseExportService exportService;
+    private final CourseSuggestService suggestService;
 
     /**
      * Main search endpoint: GET /api/search
      */
     @GetMapping("/search")
-    public ResponseEntity<SearchResult> searchCourses(
-            @RequestParam(required = false) String q,
-            @RequestParam(required = false) String category,
-            @RequestParam(required = false) CourseType type,
-            @RequestParam(required = false) Integer minAge,
-            @RequestParam(required = false) Integer maxAge,
-            @RequestParam(required = false) Double minPrice,
-            @RequestParam(required = false) Double maxPrice,
-            @RequestParam(required = false)
-            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startDate,
-            @RequestParam(defaultValue = "upcoming") String sort,
-            @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "10") int size,
-            @RequestParam(defaultValue = "false") boolean fuzzy
-    ) {
-
-        log.info("Search request - q: {}, category: {}, type: {}, page: {}, size: {}",
-                q, category, type, page, size);
+    public ResponseEntity<SearchResult> searchCourses(@ParameterObject SearchParams params) {
+
+        log.debug("Search request - q: {}, category: {}, type: {}, page: {}, size: {}, cursor: {}",
+                params.getQ(), params.getCategory(), params.getType(), params.getPage(), params.getSize(),
+                params.getCursor() != null);
 
         // Build search criteria from request parameters
-        SearchCriteria criteria = SearchCriteria.builder()
-                .query(q)
-                .category(category)
-                .type(type)
-                .minAge(minAge)
-                .maxAge(maxAge)
-                .minPrice(minPrice)
-                .maxPrice(maxPrice)
-                .startDate(startDate)
-                .sort(sort)
-                .page(page)
-                .size(size)
-                .fuzzy(fuzzy)
-                .build();
+        SearchCriteria criteria = params.toCriteria();
 
         // Execute search
         SearchResult result = searchService.searchCourses(criteria);
 
-        log.info("Search completed - found {} total courses, returning {} on page {}",
-                result.getTotal(), result.getCourses().size(), page);
+        log.debug("Search completed - found {} total courses, returning {} on page {}",
+                result.getTotal(), result.getCourses().size(), params.getPage());
 
         return ResponseEntity.ok(result);
     }
 
+    /**
+     * Batch search endpoint: POST /api/search/batch
+     *
+     * Takes a JSON array of search parameters (the same names as /api/search) and answers them in
+     * order with a single Elasticsearch round trip. Each item holds either a result or an error,
+     * so one bad search does not fail the page that asked for it.
+     */
+    @PostMapping("/search/batch")
+    public ResponseEntity<List<BatchSearchItem>> searchBatch(@RequestBody List<SearchParams> batch) {
+
+        log.debug("Batch search request - {} searches", batch.size());
+
+        BatchSearchItem[] items = new BatchSearchItem[batch.size()];
+        List<SearchCriteria> criteria = new ArrayList<>(batch.size());
+        List<Integer> positions = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            try {
+                criteria.add(batch.get(i).toCriteria());
+                positions.add(i);
+            } catch (IllegalArgumentException e) {
+                items[i] = BatchSearchItem.failed(e);
+            }
+        }
+
+        List<SearchOutcome> outcomes = searchService.searchBatch(criteria);
+        for (int j = 0; j < outcomes.size(); j++) {
+            SearchOutcome outcome = outcomes.get(j);
+            if (outcome.error() != null && !(outcome.error() instanceof IllegalArgumentException)) {
+                log.warn("Batch search item {} failed", positions.get(j), outcome.error());
+            }
+            items[positions.get(j)] = BatchSearchItem.of(outcome);
+        }
+
+        return ResponseEntity.ok(List.of(items));
+    }
+
+    /**
+     * Count endpoint: GET /api/search/count
+     *
+     * Exact number of courses matching the search parameters, without fetching any. Paging,
+     * sort and fuzzy are ignored.
+     */
+    @GetMapping("/search/count")
+    public ResponseEntity<Map<String, Long>> countCourses(@ParameterObject SearchParams params) {
+
+        long total = searchService.countCourses(params.toCriteria());
+
+        log.debug("Count completed - {} courses for q: {}, category: {}, type: {}",
+                total, params.getQ(), params.getCategory(), params.getType());
+
+        return ResponseEntity.ok(Map.of("total", total));
+    }
+
+    /**
+     * Export endpoint: GET /api/search/export
+     *
+     * Streams every course matching the search parameters as NDJSON. Paging parameters are ignored.
+     * Exports of more than coursesearch.export.max-courses matches are rejected with 400.
+     */
+    @GetMapping("/search/export")
+    public ResponseEntity<StreamingResponseBody> exportCourses(@ParameterObject SearchParams params) {
+
+        log.info("Export request - q: {}, category: {}, type: {}",
+                params.getQ(), params.getCategory(), params.getType());
+
+        SearchCriteria criteria = params.toCriteria();
+        exportService.checkSize(criteria);
+        StreamingResponseBody body = out -> exportService.export(criteria, out);
+
+        return ResponseEntity.ok()
+                .contentType(APPLICATION_NDJSON)
+                .body(body);
+    }
+
+    /**
+     * Autocomplete endpoint: GET /api/suggest?prefix=pyt
+     *
+     * Prefix lookup on course titles and categories for a search box; returns suggestions, not courses.
+     */
+    @GetMapping("/suggest")
+    public ResponseEntity<List<CourseSuggestion>> suggest(@RequestParam String prefix,
+                                                          @RequestParam(defaultValue = "5") int size) {
+        return ResponseEntity.ok(suggestService.suggest(prefix, size));
+    }
+
     /**
      * Health check endpoint to verify the API is running.
      */
@@ -76,4 +145,4 @@ public class CourseController {
     public ResponseEntity<String> health() {
         return ResponseEntity.ok("Course Search API is running!");
     }
-}
\ No newline at end of file
+}
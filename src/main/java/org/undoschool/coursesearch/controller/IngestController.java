@@ -0,0 +1,37 @@
+package org.undoschool.coursesearch.controller;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.undoschool.coursesearch.service.CourseChange;
+import org.undoschool.coursesearch.service.DeltaSyncService;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Ingestion endpoints for upstream systems pushing course changes.
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api/ingest")
+@RequiredArgsConstructor
+public class IngestController {
+
+    private final DeltaSyncService deltaSyncService;
+
+    /**
+     * Accepts a batch of upserts and deletes. Changes are applied asynchronously within
+     * the sync window, so the response is 202 Accepted.
+     */
+    @PostMapping("/changes")
+    public ResponseEntity<Map<String, Integer>> submitChanges(@RequestBody List<CourseChange> changes) {
+        int pending = deltaSyncService.submit(changes);
+        log.info("Accepted {} course changes, {} ids pending", changes.size(), pending);
+        return ResponseEntity.accepted().body(Map.of("accepted", changes.size(), "pending", pending));
+    }
+}
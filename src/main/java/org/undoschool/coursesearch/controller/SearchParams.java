@@ -0,0 +1,74 @@
+package org.undoschool.coursesearch.controller;
+
+import lombok.Data;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.undoschool.coursesearch.service.CourseType;
+import org.undoschool.coursesearch.service.Facet;
+import org.undoschool.coursesearch.service.SearchCriteria;
+import org.undoschool.coursesearch.service.SearchProjection;
+
+import java.time.LocalDateTime;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Query-string parameters shared by the search endpoints. Bound by Spring MVC from the request
+ * and turned into the service-layer {@link SearchCriteria}.
+ */
+@Data
+public class SearchParams {
+    private String q;                   // Optional text query (title/description)
+    private String category;
+    private CourseType type;
+    private Integer minAge;
+    private Integer maxAge;
+    private Double minPrice;
+    private Double maxPrice;
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+    private LocalDateTime startDate;
+    private String sort = "upcoming";   // upcoming, priceAsc, priceDesc, relevance
+    private int page = 0;
+    private int size = 10;
+    private boolean fuzzy = false;
+    private String cursor;              // "*" starts cursor paging
+    private List<String> facets;        // category, type, price, age, gradeRange
+    private String view;                // card or full (default)
+    private List<String> fields;        // explicit _source fields, instead of a view
+
+    public SearchCriteria toCriteria() {
+        return SearchCriteria.builder()
+                .query(q)
+                .category(category)
+                .type(type)
+                .minAge(minAge)
+                .maxAge(maxAge)
+                .minPrice(minPrice)
+                .maxPrice(maxPrice)
+                .startDate(startDate)
+                .sort(sort)
+                .page(page)
+                .size(size)
+                .fuzzy(fuzzy)
+                .cursor(cursor)
+                .facets(toFacets())
+                .fields(SearchProjection.resolve(view, fields))
+                .build();
+    }
+
+    private Set<Facet> toFacets() {
+        if (facets == null || facets.isEmpty()) {
+            return null;
+        }
+        Set<Facet> requested = EnumSet.noneOf(Facet.class);
+        // Accepts both facets=a,b and repeated facets parameters
+        for (String value : facets) {
+            for (String name : value.split(",")) {
+                if (!name.isBlank()) {
+                    requested.add(Facet.fromParam(name));
+                }
+            }
+        }
+        return requested;
+    }
+}
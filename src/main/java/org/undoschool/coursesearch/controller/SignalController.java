@@ -0,0 +1,34 @@
+package org.undoschool.coursesearch.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.undoschool.coursesearch.service.CoursePopularityService;
+import org.undoschool.coursesearch.service.CourseSignal;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Click and enrolment signals that feed the popularity ranking.
+ */
+@RestController
+@RequestMapping("/api/signals")
+@RequiredArgsConstructor
+public class SignalController {
+
+    private final CoursePopularityService popularityService;
+
+    /**
+     * Counts a batch of signals in memory. They reach the index with the next popularity
+     * flush, so the response is 202 Accepted.
+     */
+    @PostMapping
+    public ResponseEntity<Map<String, Integer>> submitSignals(@RequestBody List<CourseSignal> signals) {
+        popularityService.record(signals);
+        return ResponseEntity.accepted().body(Map.of("accepted", signals.size()));
+    }
+}
@@ -1,13 +1,18 @@
 package org.undoschool.coursesearch.document;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.elasticsearch.annotations.CompletionField;
 import org.springframework.data.elasticsearch.annotations.Document;
 import org.springframework.data.elasticsearch.annotations.Field;
 import org.springframework.data.elasticsearch.annotations.FieldType;
+import org.springframework.data.elasticsearch.annotations.Setting;
+import org.springframework.data.elasticsearch.core.suggest.Completion;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
@@ -16,10 +21,17 @@ import java.time.LocalDateTime;
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
-@Document(indexName = "courses")
+@JsonInclude(JsonInclude.Include.NON_NULL)
+// Index versions are created by CourseIndexManager during bootstrap, so the repository does not
+// call Elasticsearch when the context starts
+@Document(indexName = "courses", createIndex = false)
+// Segments are stored in the default "upcoming" order, so that sort can stop early per segment.
+// Shards and refresh interval are set from coursesearch.index.* when an index version is created.
+@Setting(sortFields = {"nextSessionDate", "id"}, sortOrders = {Setting.SortOrder.asc, Setting.SortOrder.asc})
 public class CourseDocument {
 
     @Id
+    @Field(type = FieldType.Keyword)
     private String id;
 
     @Field(type = FieldType.Text, analyzer = "standard")
@@ -28,13 +40,15 @@ public class CourseDocument {
     @Field(type = FieldType.Text, analyzer = "standard")
     private String description;
 
-    @Field(type = FieldType.Keyword)
+    // Filtered and faceted on every request; build global ordinals at refresh, not on the first query
+    @Field(type = FieldType.Keyword, eagerGlobalOrdinals = true)
     private String category;
 
-    @Field(type = FieldType.Keyword)
+    @Field(type = FieldType.Keyword, eagerGlobalOrdinals = true)
     private String type;
 
-    @Field(type = FieldType.Keyword)
+    // Only ever aggregated: doc values without an inverted index
+    @Field(type = FieldType.Keyword, index = false, eagerGlobalOrdinals = true)
     private String gradeRange;
 
     @Field(type = FieldType.Integer)
@@ -46,6 +60,15 @@ public class CourseDocument {
     @Field(type = FieldType.Double)
     private Double price;
 
+    // Sum of weighted click and enrolment signals, maintained by CoursePopularityService
+    @Field(type = FieldType.Rank_Feature)
+    private Double popularity;
+
     @Field(type = FieldType.Date, format = {}, pattern = "yyyy-MM-dd'T'HH:mm:ss")
     private LocalDateTime nextSessionDate;
+
+    // Autocomplete inputs (title and category), derived at index time; never part of API responses
+    @JsonIgnore
+    @CompletionField(maxInputLength = 100)
+    private Completion suggest;
 }
\ No newline at end of file
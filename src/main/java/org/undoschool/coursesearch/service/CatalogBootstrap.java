@@ -0,0 +1,163 @@
+package org.undoschool.coursesearch.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import org.undoschool.coursesearch.config.CourseSearchProperties;
+
+import java.util.EnumSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gets the instance ready to serve: makes sure the catalog is loaded, then runs the configured
+ * warm-up searches so that the first requests find a filled result cache and warm Elasticsearch
+ * caches.
+ *
+ * By default this runs on a background thread once the context has started, so the web server
+ * comes up and reports live without waiting for Elasticsearch. This indicator is part of the
+ * readiness health group and reports OUT_OF_SERVICE until the warm-up has run; while
+ * Elasticsearch is unreachable the catalog check is retried every retry-backoff. With
+ * {@code async=false} it runs before startup completes and a failure aborts startup.
+ */
+@Slf4j
+@Component
+public class CatalogBootstrap implements HealthIndicator {
+
+    public enum Phase {
+        STARTING,   // the context has not started yet
+        LOADING,    // checking the index, loading the sample data if needed
+        WARMING,    // running the warm-up searches
+        READY
+    }
+
+    private final DataLoaderService dataLoader;
+    private final CourseSearchService searchService;
+    private final CourseSearchProperties.Bootstrap config;
+
+    private volatile Phase phase = Phase.STARTING;
+    private volatile String lastError;
+    private volatile Thread worker;
+
+    public CatalogBootstrap(DataLoaderService dataLoader, CourseSearchService searchService,
+                            CourseSearchProperties properties) {
+        this.dataLoader = dataLoader;
+        this.searchService = searchService;
+        this.config = properties.getBootstrap();
+    }
+
+    @EventListener(ApplicationStartedEvent.class)
+    public void start() {
+        if (config.isAsync()) {
+            worker = Thread.ofVirtual().name("catalog-bootstrap").start(this::run);
+        } else {
+            run();
+        }
+    }
+
+    public Phase phase() {
+        return phase;
+    }
+
+    @Override
+    public Health health() {
+        Phase current = phase;
+        if (current == Phase.READY) {
+            return Health.up().withDetail("phase", current).build();
+        }
+        Health.Builder health = Health.outOfService().withDetail("phase", current);
+        String error = lastError;
+        if (error != null) {
+            health.withDetail("error", error);
+        }
+        return health.build();
+    }
+
+    private void run() {
+        long started = System.nanoTime();
+        try {
+            loadCatalog();
+        } catch (InterruptedException e) {
+            log.info("Bootstrap stopped before the catalog was loaded");
+            return;
+        }
+        long loaded = System.nanoTime();
+
+        phase = Phase.WARMING;
+        int warmed = warmUp();
+
+        phase = Phase.READY;
+        log.info("Ready to serve: catalog checked in {} ms, {} warm-up searches in {} ms",
+                TimeUnit.NANOSECONDS.toMillis(loaded - started), warmed,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - loaded));
+    }
+
+    private void loadCatalog() throws InterruptedException {
+        phase = Phase.LOADING;
+        while (true) {
+            try {
+                dataLoader.loadSampleData();
+                lastError = null;
+                return;
+            } catch (Exception e) {
+                if (!config.isAsync()) {
+                    log.error("Failed to load sample data: {}", e.getMessage(), e);
+                    throw new RuntimeException("Could not initialize sample data", e);
+                }
+                lastError = e.getMessage();
+                log.warn("Catalog not usable yet, retrying in {}: {}", config.getRetryBackoff(), e.getMessage());
+                Thread.sleep(config.getRetryBackoff());
+            }
+        }
+    }
+
+    /**
+     * Runs each warm-up search once and returns how many succeeded. A failing search is logged
+     * and skipped; the catalog is usable, so it does not hold back readiness.
+     */
+    private int warmUp() {
+        int warmed = 0;
+        for (CourseSearchProperties.WarmQuery warmQuery : config.getWarmQueries()) {
+            if (Thread.currentThread().isInterrupted()) {
+                break;
+            }
+            try {
+                searchService.searchCourses(toCriteria(warmQuery));
+                warmed++;
+            } catch (RuntimeException e) {
+                log.warn("Warm-up search {} failed: {}", warmQuery, e.getMessage());
+            }
+        }
+        return warmed;
+    }
+
+    private static SearchCriteria toCriteria(CourseSearchProperties.WarmQuery warmQuery) {
+        Set<Facet> facets = EnumSet.noneOf(Facet.class);
+        warmQuery.getFacets().forEach(name -> facets.add(Facet.fromParam(name)));
+        return SearchCriteria.builder()
+                .query(warmQuery.getQ())
+                .category(warmQuery.getCategory())
+                .type(StringUtils.hasText(warmQuery.getType())
+                        ? CourseType.valueOf(warmQuery.getType().trim().toUpperCase(Locale.ROOT))
+                        : null)
+                .sort(warmQuery.getSort())
+                .page(0)
+                .size(warmQuery.getSize())
+                .facets(facets.isEmpty() ? null : facets)
+                .build();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        Thread current = worker;
+        if (current != null) {
+            current.interrupt();
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package org.undoschool.coursesearch.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import org.undoschool.coursesearch.config.CourseSearchProperties;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Feeds change-log files dropped into {@code coursesearch.sync.change-log-dir} to the
+ * {@link DeltaSyncService}. Each file holds one {@link CourseChange} per line (NDJSON).
+ * Files are processed in name order and renamed to *.done or *.failed afterwards.
+ *
+ * A file is applied all or nothing: every line is parsed first and the changes are submitted
+ * in one call, which validates them all before queueing any. A *.failed file has therefore not
+ * been applied at all and can be fixed and dropped in again.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ChangeLogImporter {
+
+    private final DeltaSyncService deltaSyncService;
+    private final ObjectMapper objectMapper;
+    private final CourseSearchProperties properties;
+
+    @Scheduled(fixedDelayString = "${coursesearch.sync.window:1s}")
+    public void poll() throws IOException {
+        String dir = properties.getSync().getChangeLogDir();
+        if (!StringUtils.hasText(dir) || !Files.isDirectory(Path.of(dir))) {
+            return;
+        }
+
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(Path.of(dir))) {
+            files = listing.filter(p -> p.getFileName().toString().endsWith(".ndjson")).sorted().toList();
+        }
+
+        for (Path file : files) {
+            try {
+                long applied = importFile(file);
+                Files.move(file, file.resolveSibling(file.getFileName() + ".done"));
+                log.info("Queued {} changes from change log {}", applied, file);
+            } catch (IOException | IllegalArgumentException e) {
+                log.error("Change log {} could not be applied: {}", file, e.getMessage());
+                Files.move(file, file.resolveSibling(file.getFileName() + ".failed"));
+            }
+        }
+    }
+
+    private long importFile(Path file) throws IOException {
+        List<CourseChange> changes = new ArrayList<>();
+
+        try (BufferedReader reader = Files.newBufferedReader(file)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                try {
+                    changes.add(objectMapper.readValue(line, CourseChange.class));
+                } catch (JsonProcessingException e) {
+                    throw new IOException("Line " + lineNumber + " is not a valid change: " + e.getOriginalMessage(), e);
+                }
+            }
+        }
+        if (!changes.isEmpty()) {
+            deltaSyncService.submit(changes);
+        }
+        return changes.size();
+    }
+}
@@ -0,0 +1,110 @@
+package org.undoschool.coursesearch.service;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.Refresh;
+import co.elastic.clients.elasticsearch.core.BulkResponse;
+import co.elastic.clients.elasticsearch.core.bulk.BulkOperation;
+import co.elastic.clients.elasticsearch.core.bulk.BulkResponseItem;
+import co.elastic.clients.elasticsearch.core.bulk.OperationType;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.document.Document;
+import org.springframework.stereotype.Component;
+import org.undoschool.coursesearch.config.CourseSearchProperties;
+import org.undoschool.coursesearch.document.CourseDocument;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Sends bulk requests and retries the individual operations Elasticsearch rejected with a
+ * retryable status. Operations that fail permanently (e.g. mapping errors) are logged and counted.
+ *
+ * Documents are converted with the Spring Data converter so that the stored JSON is identical
+ * to what the repository would write.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class CourseBulkWriter {
+
+    private final ElasticsearchClient elasticsearchClient;
+    private final ElasticsearchOperations elasticsearchOperations;
+    private final CourseSearchProperties properties;
+
+    /**
+     * Outcome of one bulk write after retries. Updates of documents the index does not have are
+     * counted as missing rather than failed.
+     */
+    public record BulkOutcome(int succeeded, int failed, int missing) {
+
+        public BulkOutcome(int succeeded, int failed) {
+            this(succeeded, failed, 0);
+        }
+    }
+
+    public BulkOperation indexOperation(String index, CourseDocument course) {
+        course.setSuggest(CourseSuggestService.completionFor(course));
+        Document source = elasticsearchOperations.getElasticsearchConverter().mapObject(course);
+        return BulkOperation.of(op -> op.index(i -> i.index(index).id(course.getId()).document(source)));
+    }
+
+    public BulkOutcome write(List<BulkOperation> operations) throws IOException, InterruptedException {
+        return write(operations, Refresh.False);
+    }
+
+    /**
+     * Writes with the given refresh policy; {@link Refresh#WaitFor} returns only once the
+     * operations are visible to searches.
+     */
+    public BulkOutcome write(List<BulkOperation> operations, Refresh refresh) throws IOException, InterruptedException {
+        int maxRetries = properties.getIngest().getMaxRetries();
+        long backoffMillis = properties.getIngest().getRetryBackoff().toMillis();
+
+        List<BulkOperation> pending = operations;
+        int succeeded = 0;
+        int failed = 0;
+        int missing = 0;
+
+        for (int attempt = 0; !pending.isEmpty(); attempt++) {
+            List<BulkOperation> batch = pending;
+            BulkResponse response = elasticsearchClient.bulk(b -> b.refresh(refresh).operations(batch));
+            if (!response.errors()) {
+                succeeded += pending.size();
+                break;
+            }
+
+            List<BulkOperation> retry = new ArrayList<>();
+            List<BulkResponseItem> items = response.items();
+            for (int i = 0; i < items.size(); i++) {
+                BulkResponseItem item = items.get(i);
+                if (item.error() == null) {
+                    succeeded++;
+                } else if (isRetryable(item.status()) && attempt < maxRetries) {
+                    retry.add(pending.get(i));
+                } else if (item.status() == 404 && item.operationType() == OperationType.Update) {
+                    missing++;
+                    log.info("Bulk update of document {} dropped: not in the index", item.id());
+                } else {
+                    failed++;
+                    log.warn("Bulk {} of document {} failed with status {}: {}",
+                            item.operationType().jsonValue(), item.id(), item.status(), item.error().reason());
+                }
+            }
+
+            if (!retry.isEmpty()) {
+                log.debug("Retrying {} rejected bulk operations (attempt {})", retry.size(), attempt + 1);
+                Thread.sleep(backoffMillis << attempt);
+            }
+            pending = retry;
+        }
+
+        return new BulkOutcome(succeeded, failed, missing);
+    }
+
+    private static boolean isRetryable(int status) {
+        return status == 429 || status >= 500;
+    }
+}
@@ -0,0 +1,30 @@
+package org.undoschool.coursesearch.service;
+
+import lombok.Builder;
+import lombok.Data;
+import lombok.extern.jackson.Jacksonized;
+import org.undoschool.coursesearch.document.CourseDocument;
+
+import java.util.Map;
+
+/**
+ * One change from an upstream system, keyed by course id.
+ *
+ * An UPSERT carries either a full {@code course} (indexed as a whole) or only the changed
+ * {@code fields} (applied as a partial update). A DELETE carries just the id.
+ */
+@Data
+@Builder
+@Jacksonized
+public class CourseChange {
+
+    public enum Op {
+        UPSERT,
+        DELETE
+    }
+
+    private Op op;
+    private String id;
+    private CourseDocument course;          // Full document for an UPSERT
+    private Map<String, Object> fields;     // Changed fields only, e.g. price or nextSessionDate
+}
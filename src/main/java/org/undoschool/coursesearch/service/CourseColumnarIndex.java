@@ -0,0 +1,255 @@
+package org.undoschool.coursesearch.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.elasticsearch.client.elc.NativeQuery;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.MultiGetItem;
+import org.springframework.data.elasticsearch.core.SearchHit;
+import org.springframework.data.elasticsearch.core.SearchHits;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import org.undoschool.coursesearch.config.CourseSearchProperties;
+import org.undoschool.coursesearch.document.CourseDocument;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Optional in-process serving tier for searches without a text query.
+ *
+ * Holds the whole catalog as {@link CourseColumns}, loaded from the alias with a point-in-time
+ * walk once the application is ready and after every change that may touch the whole index
+ * (an alias swap). A delta sync names the courses it wrote, so only those are fetched again with
+ * a multi-get and patched into a copy of the snapshot. Rebuilds run one at a time in the
+ * background; events that arrive during a rebuild are folded into the next one. A snapshot only
+ * answers while no change has happened since its rebuild started, so after a delta sync searches
+ * go to Elasticsearch until the new snapshot is in. Catalogs above {@code max-courses} are not
+ * loaded.
+ *
+ * Totals follow {@code coursesearch.totals.policy} like the Elasticsearch path, so a search
+ * reports the same total whichever tier answers it.
+ */
+@Slf4j
+@Component
+public class CourseColumnarIndex {
+
+    private final ElasticsearchOperations elasticsearchOperations;
+    private final CourseQueryCompiler queryCompiler;
+    private final CourseSearchProperties.Columnar config;
+    private final CourseSearchProperties.Totals totals;
+
+    private final ExecutorService rebuilds = Executors.newSingleThreadExecutor(
+            Thread.ofVirtual().name("columnar-rebuild").factory());
+    private final AtomicBoolean rebuildQueued = new AtomicBoolean();
+    // Number of index changes seen; a snapshot is current while its generation matches
+    private final AtomicLong changes = new AtomicLong();
+    // Courses changed since the last rebuild started, or a full reload when the whole index may differ
+    private final Set<String> changedIds = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean fullReload = new AtomicBoolean(true);
+    private volatile Snapshot snapshot;
+
+    private record Snapshot(long generation, Map<String, CourseDocument> courses, CourseColumns columns) {
+    }
+
+    public CourseColumnarIndex(ElasticsearchOperations elasticsearchOperations, CourseQueryCompiler queryCompiler,
+                               CourseSearchProperties properties) {
+        this.elasticsearchOperations = elasticsearchOperations;
+        this.queryCompiler = queryCompiler;
+        this.config = properties.getColumnar();
+        this.totals = properties.getTotals();
+    }
+
+    /**
+     * Answers the search from memory, or returns null if it has to go to Elasticsearch: text
+     * queries, the relevance sort, facets, cursor paging, or no current snapshot.
+     */
+    @Nullable
+    public SearchResult search(SearchCriteria criteria) {
+        if (!config.isEnabled()
+                || StringUtils.hasText(criteria.getQuery())
+                || criteria.getCursor() != null
+                || "relevance".equals(CourseQueryCompiler.sortMode(criteria.getSort()))
+                || (criteria.getFacets() != null && !criteria.getFacets().isEmpty())) {
+            return null;
+        }
+        Snapshot current = snapshot;
+        if (current == null || current.generation() != changes.get()) {
+            return null;
+        }
+        int pageSize = queryCompiler.pageSize(criteria);
+        return applyTotalsPolicy(current.columns().search(criteria, pageSize), criteria, pageSize);
+    }
+
+    /**
+     * The scan counts every candidate anyway; this reports the total the way Elasticsearch would
+     * under the configured policy.
+     */
+    private SearchResult applyTotalsPolicy(SearchResult result, SearchCriteria criteria, int pageSize) {
+        return switch (totals.getPolicy()) {
+            case EXACT -> result;
+            case CAPPED -> result.getTotal() > totals.getThreshold()
+                    ? result.toBuilder().total(totals.getThreshold()).approximate(true).build()
+                    : result;
+            case NONE -> {
+                int returned = result.getCourses().size();
+                yield result.toBuilder()
+                        .total((long) Math.max(criteria.getPage(), 0) * pageSize + returned)
+                        .approximate(returned == pageSize)
+                        .build();
+            }
+        };
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onReady() {
+        scheduleRebuild();
+    }
+
+    @EventListener
+    public void onIndexChanged(CourseIndexChangedEvent event) {
+        if (event.ids() == null) {
+            fullReload.set(true);
+        } else {
+            changedIds.addAll(event.ids());
+        }
+        changes.incrementAndGet();
+        scheduleRebuild();
+    }
+
+    private void scheduleRebuild() {
+        if (config.isEnabled() && rebuildQueued.compareAndSet(false, true)) {
+            rebuilds.execute(() -> {
+                rebuildQueued.set(false);
+                rebuild();
+            });
+        }
+    }
+
+    private void rebuild() {
+        long generation = changes.get();
+        long started = System.nanoTime();
+        Set<String> ids = drainChangedIds();
+        Snapshot previous = snapshot;
+        boolean full = fullReload.getAndSet(false) || previous == null;
+        try {
+            Map<String, CourseDocument> courses = full ? load() : patch(previous.courses(), ids);
+            if (courses == null) {
+                return;
+            }
+            if (courses.size() > config.getMaxCourses()) {
+                log.warn("Catalog exceeds {} courses, columnar index stays disabled", config.getMaxCourses());
+                snapshot = null;
+                fullReload.set(true);
+                return;
+            }
+            snapshot = new Snapshot(generation, courses, CourseColumns.of(new ArrayList<>(courses.values())));
+            if (full) {
+                log.info("Columnar index loaded {} courses in {} ms", courses.size(),
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+            } else {
+                log.debug("Columnar index applied {} changed courses in {} ms", ids.size(),
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+            }
+        } catch (RuntimeException e) {
+            // The changed ids are gone; only a full load brings the snapshot back in line
+            fullReload.set(true);
+            log.warn("Columnar index not loaded, searches keep going to Elasticsearch: {}", e.getMessage());
+        }
+    }
+
+    private Set<String> drainChangedIds() {
+        Set<String> ids = new HashSet<>();
+        for (Iterator<String> it = changedIds.iterator(); it.hasNext(); ) {
+            ids.add(it.next());
+            it.remove();
+        }
+        return ids;
+    }
+
+    /**
+     * Copies the snapshot's courses and fetches the changed ids again; a course the alias no
+     * longer has is removed. Multi-get reads are real-time, so they see the synced writes.
+     */
+    private Map<String, CourseDocument> patch(Map<String, CourseDocument> courses, Set<String> ids) {
+        Map<String, CourseDocument> patched = new HashMap<>(courses);
+        if (ids.isEmpty()) {
+            return patched;
+        }
+        List<String> requested = List.copyOf(ids);
+        List<MultiGetItem<CourseDocument>> items = elasticsearchOperations.multiGet(
+                NativeQuery.builder().withIds(requested).build(), CourseDocument.class,
+                elasticsearchOperations.getIndexCoordinatesFor(CourseDocument.class));
+        if (items.size() != requested.size()) {
+            throw new IllegalStateException("Multi-get returned " + items.size() + " of " + requested.size() + " courses");
+        }
+        // Items come back in request order; a missing course has neither an item nor a failure
+        for (int i = 0; i < requested.size(); i++) {
+            MultiGetItem<CourseDocument> item = items.get(i);
+            if (item.isFailed()) {
+                throw new IllegalStateException("Multi-get failed for course " + requested.get(i),
+                        item.getFailure().getException());
+            }
+            if (item.hasItem()) {
+                patched.put(requested.get(i), item.getItem());
+            } else {
+                patched.remove(requested.get(i));
+            }
+        }
+        return patched;
+    }
+
+    @Nullable
+    private Map<String, CourseDocument> load() {
+        int batchSize = config.getLoadBatchSize();
+        Duration keepAlive = Duration.ofMinutes(1);
+        SearchCriteria all = SearchCriteria.withDefaults();
+        String pitId = elasticsearchOperations.openPointInTime(
+                elasticsearchOperations.getIndexCoordinatesFor(CourseDocument.class), keepAlive);
+        Map<String, CourseDocument> catalog = new LinkedHashMap<>();
+
+        try {
+            List<Object> searchAfter = null;
+            while (true) {
+                NativeQuery query = queryCompiler.compilePitPage(all, batchSize, pitId, keepAlive, searchAfter, false);
+                SearchHits<CourseDocument> searchHits = elasticsearchOperations.search(query, CourseDocument.class);
+                if (searchHits.getPointInTimeId() != null) {
+                    pitId = searchHits.getPointInTimeId();
+                }
+
+                List<SearchHit<CourseDocument>> hits = searchHits.getSearchHits();
+                hits.forEach(hit -> catalog.put(hit.getId(), hit.getContent()));
+                if (catalog.size() > config.getMaxCourses()) {
+                    return catalog;
+                }
+                if (hits.size() < batchSize) {
+                    return catalog;
+                }
+                searchAfter = hits.get(hits.size() - 1).getSortValues();
+            }
+        } finally {
+            elasticsearchOperations.closePointInTime(pitId);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        rebuilds.shutdownNow();
+    }
+}
@@ -0,0 +1,343 @@
+package org.undoschool.coursesearch.service;
+
+import org.springframework.util.StringUtils;
+import org.undoschool.coursesearch.document.CourseDocument;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.DoublePredicate;
+import java.util.stream.IntStream;
+
+/**
+ * Immutable column-oriented copy of the catalog, answering filter-only searches in process.
+ *
+ * For each of the three sort orders, every filterable attribute is held already permuted into
+ * that order: category and type as one bitset per value, price, ages and session time as
+ * primitive arrays. A search ANDs the bitsets of its sort 64 positions at a time, tests the
+ * numeric filters only on the remaining candidates, counts the matches and keeps only those on
+ * the requested page, so nothing is allocated per document. When the sort
+ * key is also filtered (a price range under a price sort, a start date under "upcoming"),
+ * binary search narrows the scan to the matching slice first.
+ *
+ * Semantics follow {@link CourseQueryCompiler}: exact category and type, inclusive price range,
+ * age overlap, sessions on or after startDate. A document missing a filtered field does not
+ * match, and missing sort values come last, as in Elasticsearch.
+ */
+public final class CourseColumns {
+
+    private final Map<String, Integer> categoryOrdinals = new HashMap<>();
+    private final Ordered upcoming;
+    private final Ordered priceAsc;
+    private final Ordered priceDesc;
+
+    private CourseColumns(List<CourseDocument> catalog) {
+        CourseDocument[] courses = catalog.toArray(CourseDocument[]::new);
+        int n = courses.length;
+        int[] category = new int[n];
+        int[] type = new int[n];
+        double[] price = new double[n];
+        int[] minAge = new int[n];
+        int[] maxAge = new int[n];
+        long[] session = new long[n];
+
+        for (int doc = 0; doc < n; doc++) {
+            CourseDocument course = courses[doc];
+            category[doc] = course.getCategory() != null
+                    ? categoryOrdinals.computeIfAbsent(course.getCategory(), c -> categoryOrdinals.size())
+                    : -1;
+            CourseType courseType = parseType(course.getType());
+            type[doc] = courseType != null ? courseType.ordinal() : -1;
+            price[doc] = course.getPrice() != null ? course.getPrice() : Double.NaN;
+            minAge[doc] = course.getMinAge() != null ? course.getMinAge() : Integer.MAX_VALUE;
+            maxAge[doc] = course.getMaxAge() != null ? course.getMaxAge() : Integer.MIN_VALUE;
+            session[doc] = course.getNextSessionDate() != null ? epochSeconds(course.getNextSessionDate()) : Long.MIN_VALUE;
+        }
+
+        // Same orders as CourseQueryCompiler.createSort, including the id tiebreaker
+        Comparator<Integer> byId = Comparator.comparing(doc -> courses[doc].getId(),
+                Comparator.nullsLast(Comparator.naturalOrder()));
+        Comparator<Integer> sessionMissingLast = Comparator.comparing(doc -> session[doc] == Long.MIN_VALUE);
+        Comparator<Integer> priceMissingLast = Comparator.comparing(doc -> Double.isNaN(price[doc]));
+        Columns columns = new Columns(courses, category, categoryOrdinals.size(), type, price, minAge, maxAge, session);
+        this.upcoming = columns.permute(sorted(n, sessionMissingLast
+                .thenComparingLong(doc -> session[doc])
+                .thenComparing(byId)));
+        this.priceAsc = columns.permute(sorted(n, priceMissingLast
+                .thenComparingDouble(doc -> price[doc])
+                .thenComparing(byId)));
+        this.priceDesc = columns.permute(sorted(n, priceMissingLast
+                .thenComparing(Comparator.<Integer>comparingDouble(doc -> price[doc]).reversed())
+                .thenComparing(byId)));
+    }
+
+    public static CourseColumns of(List<CourseDocument> catalog) {
+        return new CourseColumns(catalog);
+    }
+
+    public int size() {
+        return upcoming.courses.length;
+    }
+
+    /**
+     * One page of the courses matching the filters of the criteria, in the requested order.
+     * The text query, facets and cursor are not looked at; callers route those to Elasticsearch.
+     */
+    public SearchResult search(SearchCriteria criteria, int pageSize) {
+        int category = -1;
+        if (StringUtils.hasText(criteria.getCategory())) {
+            Integer ordinal = categoryOrdinals.get(criteria.getCategory().trim());
+            if (ordinal == null) {
+                return SearchResult.builder().total(0).courses(List.of()).build();
+            }
+            category = ordinal;
+        }
+        int type = criteria.getType() != null ? criteria.getType().ordinal() : -1;
+
+        // Bounds that every document passes stand in for absent filters; a missing value is
+        // stored so that it fails any real bound
+        boolean filterPrice = criteria.getMinPrice() != null || criteria.getMaxPrice() != null;
+        double minPrice = criteria.getMinPrice() != null ? criteria.getMinPrice() : Double.NEGATIVE_INFINITY;
+        double maxPrice = criteria.getMaxPrice() != null ? criteria.getMaxPrice() : Double.POSITIVE_INFINITY;
+        int minAge = criteria.getMinAge() != null ? criteria.getMinAge() : Integer.MIN_VALUE;
+        int maxAge = criteria.getMaxAge() != null ? criteria.getMaxAge() : Integer.MAX_VALUE;
+        boolean filterStart = criteria.getStartDate() != null;
+        long start = filterStart ? epochSeconds(criteria.getStartDate()) : Long.MIN_VALUE;
+
+        // A filter on the sort key becomes a slice of the order and needs no per-document test
+        Ordered ordered;
+        int from = 0;
+        int to;
+        switch (CourseQueryCompiler.sortMode(criteria.getSort())) {
+            case "priceasc" -> {
+                ordered = priceAsc;
+                to = ordered.courses.length;
+                if (filterPrice) {
+                    from = ordered.firstPrice(p -> p >= minPrice);
+                    to = ordered.firstPrice(p -> p > maxPrice);
+                    filterPrice = false;
+                }
+            }
+            case "pricedesc" -> {
+                ordered = priceDesc;
+                to = ordered.courses.length;
+                if (filterPrice) {
+                    from = ordered.firstPrice(p -> p <= maxPrice);
+                    to = ordered.firstPrice(p -> p < minPrice);
+                    filterPrice = false;
+                }
+            }
+            default -> {
+                ordered = upcoming;
+                to = ordered.courses.length;
+                if (filterStart) {
+                    from = ordered.firstSessionFrom(start);
+                    to = ordered.sessionCount;
+                    filterStart = false;
+                }
+            }
+        }
+
+        Ranges ranges = filterPrice || filterStart || criteria.getMinAge() != null || criteria.getMaxAge() != null
+                ? new Ranges(filterPrice, minPrice, maxPrice, minAge, maxAge, filterStart ? start : Long.MIN_VALUE)
+                : null;
+        return ordered.scan(from, to, category, type, ranges,
+                Math.max(criteria.getPage(), 0) * pageSize, pageSize, criteria.getFields());
+    }
+
+    /**
+     * Numeric filters tested per candidate document.
+     */
+    private record Ranges(boolean filterPrice, double minPrice, double maxPrice, int minAge, int maxAge, long start) {
+    }
+
+    /**
+     * Attribute columns in document order, before sorting.
+     */
+    private record Columns(CourseDocument[] courses, int[] category, int categories, int[] type, double[] price,
+                           int[] minAge, int[] maxAge, long[] session) {
+
+        Ordered permute(int[] order) {
+            int n = order.length;
+            Ordered ordered = new Ordered(n, categories);
+            for (int pos = 0; pos < n; pos++) {
+                int doc = order[pos];
+                ordered.courses[pos] = courses[doc];
+                ordered.all[pos >>> 6] |= 1L << pos;
+                if (category[doc] >= 0) {
+                    ordered.categoryBits[category[doc]][pos >>> 6] |= 1L << pos;
+                }
+                if (type[doc] >= 0) {
+                    ordered.typeBits[type[doc]][pos >>> 6] |= 1L << pos;
+                }
+                ordered.price[pos] = price[doc];
+                ordered.minAge[pos] = minAge[doc];
+                ordered.maxAge[pos] = maxAge[doc];
+                ordered.session[pos] = session[doc];
+                if (session[doc] != Long.MIN_VALUE) {
+                    ordered.sessionCount++;
+                }
+            }
+            return ordered;
+        }
+    }
+
+    /**
+     * The columns permuted into one sort order. Category and type are bitsets over positions.
+     */
+    private static final class Ordered {
+
+        final CourseDocument[] courses;
+        final long[] all;
+        final long[][] categoryBits;    // by category ordinal
+        final long[][] typeBits;        // by CourseType ordinal
+        final double[] price;           // NaN when missing; fails every comparison
+        final int[] minAge;             // Integer.MAX_VALUE when missing
+        final int[] maxAge;             // Integer.MIN_VALUE when missing
+        final long[] session;           // epoch seconds, Long.MIN_VALUE when missing
+        int sessionCount;               // courses with a session date; they come first in "upcoming"
+
+        Ordered(int n, int categories) {
+            int words = (n + 63) >>> 6;
+            courses = new CourseDocument[n];
+            all = new long[words];
+            categoryBits = new long[categories][words];
+            typeBits = new long[CourseType.values().length][words];
+            price = new double[n];
+            minAge = new int[n];
+            maxAge = new int[n];
+            session = new long[n];
+        }
+
+        /**
+         * Walks the positions in [from, to) that carry the category and type, 64 at a time.
+         * Without numeric filters, whole words before the page or after it are only counted.
+         */
+        SearchResult scan(int from, int to, int categoryFilter, int typeFilter, Ranges ranges,
+                          int offset, int pageSize, Set<String> fields) {
+            List<CourseDocument> page = new ArrayList<>(pageSize);
+            if (from >= to) {
+                return SearchResult.builder().total(0).courses(page).build();
+            }
+            long[] candidates = categoryFilter >= 0 ? categoryBits[categoryFilter] : all;
+            long[] types = typeFilter >= 0 ? typeBits[typeFilter] : null;
+            int end = offset + pageSize;
+            int firstWord = from >>> 6;
+            int lastWord = (to - 1) >>> 6;
+            int total = 0;
+
+            for (int w = firstWord; w <= lastWord; w++) {
+                long word = candidates[w];
+                if (types != null) {
+                    word &= types[w];
+                }
+                if (w == firstWord) {
+                    word &= -1L << from;
+                }
+                if (w == lastWord) {
+                    word &= -1L >>> (63 - ((to - 1) & 63));
+                }
+
+                if (ranges == null) {
+                    int matches = Long.bitCount(word);
+                    if (total + matches <= offset || total >= end) {
+                        total += matches;
+                        continue;
+                    }
+                }
+                while (word != 0) {
+                    int pos = (w << 6) + Long.numberOfTrailingZeros(word);
+                    word &= word - 1;
+                    if (ranges != null && !inRanges(pos, ranges)) {
+                        continue;
+                    }
+                    if (total >= offset && total < end) {
+                        page.add(fields != null ? SearchProjection.apply(courses[pos], fields) : courses[pos]);
+                    }
+                    total++;
+                }
+            }
+            return SearchResult.builder().total(total).courses(page).build();
+        }
+
+        private boolean inRanges(int pos, Ranges ranges) {
+            return (!ranges.filterPrice() || (price[pos] >= ranges.minPrice() && price[pos] <= ranges.maxPrice()))
+                    && maxAge[pos] >= ranges.minAge()
+                    && minAge[pos] <= ranges.maxAge()
+                    && session[pos] >= ranges.start();
+        }
+
+        // The searches below rely on the missing values (NaN, Long.MIN_VALUE) sorting last
+
+        int firstSessionFrom(long start) {
+            int lo = 0;
+            int hi = sessionCount;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (session[mid] < start) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+
+        /**
+         * First position among the priced courses where the condition holds; it must hold for
+         * every later priced course as well. Returns the end of the priced courses if none.
+         */
+        int firstPrice(DoublePredicate condition) {
+            int lo = 0;
+            int hi = pricedCount();
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (condition.test(price[mid])) {
+                    hi = mid;
+                } else {
+                    lo = mid + 1;
+                }
+            }
+            return lo;
+        }
+
+        private int pricedCount() {
+            int lo = 0;
+            int hi = price.length;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (Double.isNaN(price[mid])) {
+                    hi = mid;
+                } else {
+                    lo = mid + 1;
+                }
+            }
+            return lo;
+        }
+    }
+
+    private static int[] sorted(int n, Comparator<Integer> comparator) {
+        return IntStream.range(0, n).boxed().sorted(comparator).mapToInt(Integer::intValue).toArray();
+    }
+
+    private static long epochSeconds(LocalDateTime dateTime) {
+        // Stored without zone, like the index; only the order matters here
+        return dateTime.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    private static CourseType parseType(String type) {
+        if (type == null) {
+            return null;
+        }
+        try {
+            return CourseType.valueOf(type);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
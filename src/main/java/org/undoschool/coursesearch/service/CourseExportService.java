@@ -0,0 +1,122 @@
+package org.undoschool.coursesearch.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.elasticsearch.client.elc.NativeQuery;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.SearchHit;
+import org.springframework.data.elasticsearch.core.SearchHits;
+import org.springframework.stereotype.Service;
+import org.undoschool.coursesearch.config.CourseSearchProperties;
+import org.undoschool.coursesearch.document.CourseDocument;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Streams every course matching a {@link SearchCriteria} as NDJSON (one JSON document per line).
+ *
+ * The export walks a point-in-time with search_after and holds only one batch in memory at a
+ * time. Writes to the response block while the client is slow to read, so the next batch is
+ * only fetched once the previous one has been consumed. Each batch is one search through the
+ * {@link SearchCircuitBreaker} and {@link SearchExecutor}, so exports count against the same
+ * concurrency limit and deadline as searches, and the stream is flushed once per batch.
+ * With {@code max-courses} set, larger exports are rejected before anything is streamed.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class CourseExportService {
+
+    private final ElasticsearchOperations elasticsearchOperations;
+    private final CourseQueryCompiler queryCompiler;
+    private final ObjectMapper objectMapper;
+    private final CourseSearchProperties properties;
+    private final CourseSearchService searchService;
+    private final SearchExecutor searchExecutor;
+    private final SearchCircuitBreaker circuitBreaker;
+
+    /**
+     * Rejects the export if {@code max-courses} is set and more courses match. Call before the
+     * response is committed, so the rejection can still be answered with a 400.
+     */
+    public void checkSize(SearchCriteria criteria) {
+        long maxCourses = properties.getExport().getMaxCourses();
+        if (maxCourses <= 0) {
+            return;
+        }
+        long total = searchService.countCourses(criteria);
+        if (total > maxCourses) {
+            throw new IllegalArgumentException("Export matches " + total + " courses, more than the limit of "
+                    + maxCourses + "; narrow the filters");
+        }
+    }
+
+    /**
+     * Writes all matches to the stream, at most {@code max-courses} when set, and returns how
+     * many were written.
+     */
+    public long export(SearchCriteria criteria, OutputStream out) throws IOException {
+        int batchSize = properties.getExport().getBatchSize();
+        long maxCourses = properties.getExport().getMaxCourses();
+        long limit = maxCourses > 0 ? maxCourses : Long.MAX_VALUE;
+        Duration keepAlive = properties.getExport().getKeepAlive();
+        // Writing a value must not flush on its own; the stream is flushed once per batch
+        ObjectWriter writer = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+
+        String pitId = circuitBreaker.execute(() -> searchExecutor.execute(() -> elasticsearchOperations.openPointInTime(
+                elasticsearchOperations.getIndexCoordinatesFor(CourseDocument.class), keepAlive)));
+        long written = 0;
+        boolean cutOff = false;
+
+        try (JsonGenerator generator = objectMapper.createGenerator(out)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            // Lines are separated by the newline alone, not by Jackson's default space between root values
+            generator.setRootValueSeparator(null);
+            List<Object> searchAfter = null;
+
+            while (true) {
+                long remaining = limit - written;
+                // Near the limit, fetch one course more than may be written to tell whether any is cut off
+                int size = remaining < batchSize ? (int) remaining + 1 : batchSize;
+                NativeQuery query = queryCompiler.compilePitPage(criteria, size, pitId, keepAlive, searchAfter, false);
+                SearchHits<CourseDocument> searchHits = circuitBreaker.execute(() -> searchExecutor.execute(
+                        () -> elasticsearchOperations.search(query, CourseDocument.class)));
+                if (searchHits.getPointInTimeId() != null) {
+                    pitId = searchHits.getPointInTimeId();
+                }
+
+                List<SearchHit<CourseDocument>> hits = searchHits.getSearchHits();
+                cutOff = hits.size() > remaining;
+                List<SearchHit<CourseDocument>> page = cutOff ? hits.subList(0, (int) remaining) : hits;
+                for (SearchHit<CourseDocument> hit : page) {
+                    writer.writeValue(generator, hit.getContent());
+                    generator.writeRaw('\n');
+                }
+                generator.flush();
+                written += page.size();
+
+                if (cutOff || hits.size() < size) {
+                    break;
+                }
+                searchAfter = hits.get(hits.size() - 1).getSortValues();
+            }
+            if (cutOff) {
+                // Courses added between the size check and the point-in-time
+                log.warn("Export cut off at the limit of {} courses", maxCourses);
+            }
+        } finally {
+            // Also reached when the client disconnects mid-export
+            elasticsearchOperations.closePointInTime(pitId);
+        }
+
+        log.info("Exported {} courses", written);
+        return written;
+    }
+}
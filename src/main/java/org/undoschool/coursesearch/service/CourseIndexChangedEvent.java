@@ -0,0 +1,20 @@
+package org.undoschool.coursesearch.service;
+
+import org.springframework.lang.Nullable;
+
+import java.util.Set;
+
+/**
+ * Published after the ingestion path has changed what the read alias serves: an alias swap,
+ * a load into the live index or a delta sync flush. Listeners drop anything derived from
+ * the previous contents.
+ *
+ * @param source short description of the writer, for logging
+ * @param ids    the courses written or deleted, or null when the whole index may have changed
+ */
+public record CourseIndexChangedEvent(String source, @Nullable Set<String> ids) {
+
+    public CourseIndexChangedEvent(String source) {
+        this(source, null);
+    }
+}
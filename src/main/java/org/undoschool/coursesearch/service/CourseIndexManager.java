@@ -0,0 +1,289 @@
+package org.undoschool.coursesearch.service;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.aggregations.Aggregation;
+import co.elastic.clients.elasticsearch.core.bulk.BulkOperation;
+import co.elastic.clients.elasticsearch.core.bulk.BulkResponseItem;
+import co.elastic.clients.elasticsearch.indices.update_aliases.Action;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.elasticsearch.client.elc.NativeQuery;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.IndexOperations;
+import org.springframework.data.elasticsearch.core.SearchHit;
+import org.springframework.data.elasticsearch.core.SearchHitsIterator;
+import org.springframework.data.elasticsearch.core.document.Document;
+import org.springframework.data.elasticsearch.core.index.Settings;
+import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
+import org.springframework.data.elasticsearch.core.query.FetchSourceFilter;
+import org.springframework.stereotype.Service;
+import org.undoschool.coursesearch.config.CourseSearchProperties;
+import org.undoschool.coursesearch.document.CourseDocument;
+import org.undoschool.coursesearch.service.CourseQueryCompiler.TextMode;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Manages the versioned physical indices (courses_v1, courses_v2, ...) behind the read alias
+ * declared on {@link CourseDocument} ("courses").
+ *
+ * A rebuild never touches the index currently being served: it loads a new version with
+ * write-optimized settings, force-merges it, warms it with representative queries and only
+ * then moves the alias in a single atomic update. A legacy concrete "courses" index is
+ * replaced by the alias in that same update. Popularity, which only lives in the index, is
+ * copied over from the served version before the swap. A load with failed or no documents is not
+ * swapped in, and a version that fails at any step before the swap is deleted again. Each stage
+ * is published as a {@link CourseRebuildEvent}, so delta syncs made during the load can be
+ * replayed onto the new version.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class CourseIndexManager {
+
+    private final ElasticsearchOperations elasticsearchOperations;
+    private final ElasticsearchClient elasticsearchClient;
+    private final CourseIngestionPipeline ingestionPipeline;
+    private final CourseQueryCompiler queryCompiler;
+    private final CourseSearchProperties properties;
+    private final ApplicationEventPublisher eventPublisher;
+
+    /**
+     * Outcome of a rebuild.
+     */
+    public record RebuildReport(String index, Optional<String> previous, long indexed, long failed,
+                                double docsPerSecond, long elapsedMillis) {
+    }
+
+    /**
+     * Name of the read alias, as declared on the entity.
+     */
+    public String alias() {
+        return elasticsearchOperations.getIndexCoordinatesFor(CourseDocument.class).getIndexName();
+    }
+
+    /**
+     * The physical index the alias points to, if the alias exists.
+     */
+    public Optional<String> currentIndex() throws IOException {
+        String alias = alias();
+        if (!elasticsearchClient.indices().existsAlias(e -> e.name(alias)).value()) {
+            return Optional.empty();
+        }
+        return elasticsearchClient.indices().getAlias(a -> a.name(alias)).result().keySet().stream().findFirst();
+    }
+
+    /**
+     * Builds a new index version from the given source and swaps the alias to it.
+     * Rebuilds are serialized; searches keep hitting the current version throughout.
+     */
+    public synchronized RebuildReport rebuild(Callable<InputStream> source) throws Exception {
+        long started = System.currentTimeMillis();
+        String alias = alias();
+        Optional<String> previous = currentIndex();
+        List<Integer> versions = existingVersions();
+        int nextVersion = versions.isEmpty() ? 1 : versions.get(versions.size() - 1) + 1;
+        String index = alias + "_v" + nextVersion;
+
+        log.info("Rebuilding '{}' into new index '{}'", alias, index);
+        CourseIngestionPipeline.IngestionReport load;
+        createForLoad(index);
+        eventPublisher.publishEvent(new CourseRebuildEvent(index, CourseRebuildEvent.Stage.STARTED));
+        try {
+            try (InputStream json = source.call()) {
+                load = ingestionPipeline.bulkLoad(json, index);
+            }
+            // A partial or empty catalog must not replace the one being served
+            if (load.failed() > 0 || load.indexed() == 0) {
+                throw new IOException("Rebuild of '" + alias + "' aborted: " + load.indexed() + " courses indexed, "
+                        + load.failed() + " failed");
+            }
+            if (previous.isPresent()) {
+                carryOverPopularity(previous.get(), index);
+            }
+            forceMerge(index);
+            applyServingSettings(index);
+            warm(index);
+            swapAlias(alias, index, previous);
+        } catch (Exception e) {
+            log.error("Rebuild of '{}' failed, removing incomplete index '{}'", alias, index);
+            try {
+                elasticsearchOperations.indexOps(IndexCoordinates.of(index)).delete();
+            } catch (RuntimeException cleanup) {
+                e.addSuppressed(cleanup);
+            }
+            eventPublisher.publishEvent(new CourseRebuildEvent(index, CourseRebuildEvent.Stage.FAILED));
+            throw e;
+        }
+        eventPublisher.publishEvent(new CourseRebuildEvent(index, CourseRebuildEvent.Stage.SWAPPED));
+        eventPublisher.publishEvent(new CourseIndexChangedEvent("rebuild:" + index));
+        deleteOldVersions(alias, nextVersion);
+
+        RebuildReport report = new RebuildReport(index, previous, load.indexed(), load.failed(),
+                load.docsPerSecond(), System.currentTimeMillis() - started);
+        log.info("Alias '{}' now points to '{}' ({} courses, previous: {})",
+                alias, index, report.indexed(), previous.orElse("none"));
+        return report;
+    }
+
+    private void createForLoad(String index) {
+        IndexOperations indexOps = elasticsearchOperations.indexOps(IndexCoordinates.of(index));
+        Settings settings = indexOps.createSettings(CourseDocument.class);
+        // Write-optimized while loading: no periodic refresh, no replicas to copy every document to.
+        // Index sorting comes from the entity's @Setting and can only be set at creation.
+        settings.merge(new Settings(Map.of("index", Map.of(
+                "number_of_shards", properties.getIndex().getShards(),
+                "refresh_interval", "-1",
+                "number_of_replicas", 0))));
+        Document mapping = indexOps.createMapping(CourseDocument.class);
+        indexOps.create(settings, mapping);
+    }
+
+    /**
+     * Copies the popularity accumulated in the served version onto the same courses in the new
+     * one, which the source data does not carry. Courses no longer in the catalog are skipped.
+     * Signals flushed between this copy and the alias swap still go to the old version.
+     */
+    private void carryOverPopularity(String from, String to) throws IOException {
+        int batchSize = properties.getIngest().getBatchSize();
+        NativeQuery query = NativeQuery.builder()
+                .withQuery(q -> q.exists(e -> e.field("popularity")))
+                .withSourceFilter(new FetchSourceFilter(true, new String[]{"popularity"}, null))
+                .withPageable(PageRequest.of(0, batchSize))
+                .build();
+
+        long carried = 0;
+        try (SearchHitsIterator<CourseDocument> hits =
+                     elasticsearchOperations.searchForStream(query, CourseDocument.class, IndexCoordinates.of(from))) {
+            List<BulkOperation> batch = new ArrayList<>(batchSize);
+            while (hits.hasNext()) {
+                SearchHit<CourseDocument> hit = hits.next();
+                Map<String, Object> popularity = Map.of("popularity", hit.getContent().getPopularity());
+                batch.add(BulkOperation.of(op -> op.update(u -> u.index(to).id(hit.getId())
+                        .action(a -> a.doc(popularity)))));
+                if (batch.size() >= batchSize) {
+                    carried += writePopularity(batch);
+                    batch = new ArrayList<>(batchSize);
+                }
+            }
+            if (!batch.isEmpty()) {
+                carried += writePopularity(batch);
+            }
+        }
+        elasticsearchClient.indices().refresh(r -> r.index(to));
+        log.info("Carried popularity of {} courses over from '{}' to '{}'", carried, from, to);
+    }
+
+    private long writePopularity(List<BulkOperation> batch) throws IOException {
+        long written = 0;
+        for (BulkResponseItem item : elasticsearchClient.bulk(b -> b.operations(batch)).items()) {
+            if (item.error() == null) {
+                written++;
+            } else if (item.status() != 404) {
+                throw new IOException("Could not carry popularity over to course " + item.id() + ": "
+                        + item.error().reason());
+            }
+        }
+        return written;
+    }
+
+    private void forceMerge(String index) throws IOException, InterruptedException {
+        long segments = properties.getIndex().getForceMergeSegments();
+        // Run as a task and poll, so a long merge does not run into the client socket timeout
+        String task = elasticsearchClient.indices()
+                .forcemerge(f -> f.index(index).maxNumSegments(segments).waitForCompletion(false))
+                .task();
+        if (task == null) {
+            return;
+        }
+        while (!elasticsearchClient.tasks()
+                .get(t -> t.taskId(task).waitForCompletion(true).timeout(s -> s.time("20s")))
+                .completed()) {
+            log.debug("Waiting for force-merge of '{}'", index);
+        }
+    }
+
+    private void applyServingSettings(String index) throws IOException {
+        CourseSearchProperties.Index config = properties.getIndex();
+        elasticsearchClient.indices().putSettings(p -> p
+                .index(index)
+                .settings(s -> s
+                        .refreshInterval(t -> t.time(config.getRefreshInterval()))
+                        .numberOfReplicas(Integer.toString(config.getReplicas()))));
+        elasticsearchClient.indices().refresh(r -> r.index(index));
+    }
+
+    /**
+     * Runs the common query shapes once so that caches and global ordinals are loaded
+     * before the index takes traffic.
+     */
+    private void warm(String index) {
+        IndexCoordinates coordinates = IndexCoordinates.of(index);
+        for (String sort : List.of("upcoming", "priceAsc", "priceDesc")) {
+            SearchCriteria criteria = SearchCriteria.withDefaults();
+            criteria.setSort(sort);
+            elasticsearchOperations.search(queryCompiler.compile(criteria, TextMode.MATCH), CourseDocument.class, coordinates);
+        }
+
+        NativeQuery facets = NativeQuery.builder()
+                .withQuery(q -> q.matchAll(m -> m))
+                .withMaxResults(0)
+                .withAggregation("category", Aggregation.of(a -> a.terms(t -> t.field("category"))))
+                .withAggregation("type", Aggregation.of(a -> a.terms(t -> t.field("type"))))
+                .build();
+        elasticsearchOperations.search(facets, CourseDocument.class, coordinates);
+    }
+
+    private void swapAlias(String alias, String index, Optional<String> previous) throws IOException {
+        List<Action> actions = new ArrayList<>();
+        actions.add(Action.of(a -> a.add(add -> add.index(index).alias(alias))));
+
+        if (previous.isPresent()) {
+            actions.add(Action.of(a -> a.remove(remove -> remove.index(previous.get()).alias(alias))));
+        } else if (elasticsearchOperations.indexOps(IndexCoordinates.of(alias)).exists()) {
+            // A concrete index still carries the alias name; drop it in the same atomic update
+            log.info("Replacing legacy index '{}' with an alias", alias);
+            actions.add(Action.of(a -> a.removeIndex(remove -> remove.index(alias))));
+        }
+
+        elasticsearchClient.indices().updateAliases(u -> u.actions(actions));
+    }
+
+    private void deleteOldVersions(String alias, int currentVersion) throws IOException {
+        int oldestKept = currentVersion - properties.getIndex().getRetainedVersions();
+        for (int version : existingVersions()) {
+            if (version < oldestKept) {
+                String index = alias + "_v" + version;
+                log.info("Deleting old index version '{}'", index);
+                elasticsearchOperations.indexOps(IndexCoordinates.of(index)).delete();
+            }
+        }
+    }
+
+    private List<Integer> existingVersions() throws IOException {
+        String alias = alias();
+        Pattern versionPattern = Pattern.compile(Pattern.quote(alias) + "_v(\\d+)");
+        List<Integer> versions = new ArrayList<>();
+        for (String name : elasticsearchClient.indices()
+                .get(g -> g.index(alias + "_v*").allowNoIndices(true).ignoreUnavailable(true))
+                .result().keySet()) {
+            Matcher matcher = versionPattern.matcher(name);
+            if (matcher.matches()) {
+                versions.add(Integer.parseInt(matcher.group(1)));
+            }
+        }
+        versions.sort(Comparator.naturalOrder());
+        return versions;
+    }
+}
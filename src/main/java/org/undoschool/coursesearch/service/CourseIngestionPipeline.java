@@ -0,0 +1,138 @@
+package org.undoschool.coursesearch.service;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch.core.bulk.BulkOperation;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.undoschool.coursesearch.config.CourseSearchProperties;
+import org.undoschool.coursesearch.document.CourseDocument;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Loads a JSON array of courses into an index without materializing the whole file.
+ *
+ * Courses are parsed one at a time with Jackson's streaming parser and grouped into bulk
+ * requests bounded by document count and source bytes. Up to {@code concurrency} bulk requests
+ * run at once; the parser blocks when that many are in flight. The target index is created by
+ * {@link CourseIndexManager} with refresh and replicas turned off for the load.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class CourseIngestionPipeline {
+
+    private final ObjectMapper objectMapper;
+    private final ElasticsearchClient elasticsearchClient;
+    private final CourseBulkWriter bulkWriter;
+    private final CourseSearchProperties properties;
+
+    /**
+     * Summary of a completed load.
+     */
+    public record IngestionReport(long indexed, long failed, long bytes, long elapsedMillis) {
+        public double docsPerSecond() {
+            return elapsedMillis == 0 ? indexed : indexed * 1000.0 / elapsedMillis;
+        }
+    }
+
+    /**
+     * Loads into an index whose settings the caller manages, e.g. a freshly created
+     * index that was already created with refresh and replicas disabled.
+     */
+    public IngestionReport bulkLoad(InputStream json, String index) throws IOException {
+        CourseSearchProperties.Ingest config = properties.getIngest();
+        long started = System.nanoTime();
+
+        AtomicLong indexed = new AtomicLong();
+        AtomicLong failed = new AtomicLong();
+        long bytes = 0;
+
+        ExecutorService executor = Executors.newFixedThreadPool(config.getConcurrency());
+        Semaphore inFlight = new Semaphore(config.getConcurrency());
+        List<Future<?>> submitted = new ArrayList<>();
+
+        try (JsonParser parser = objectMapper.createParser(json)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IOException("Expected a JSON array of courses");
+            }
+
+            List<BulkOperation> batch = new ArrayList<>(config.getBatchSize());
+            long batchBytes = 0;
+
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                long start = parser.currentTokenLocation().getByteOffset();
+                CourseDocument course = objectMapper.readValue(parser, CourseDocument.class);
+                long size = parser.currentLocation().getByteOffset() - start;
+
+                batch.add(bulkWriter.indexOperation(index, course));
+                batchBytes += size;
+                bytes += size;
+
+                if (batch.size() >= config.getBatchSize() || batchBytes >= config.getBatchBytes().toBytes()) {
+                    submitted.add(submit(executor, inFlight, batch, indexed, failed));
+                    batch = new ArrayList<>(config.getBatchSize());
+                    batchBytes = 0;
+                }
+            }
+            if (!batch.isEmpty()) {
+                submitted.add(submit(executor, inFlight, batch, indexed, failed));
+            }
+
+            for (Future<?> future : submitted) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while loading courses", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Bulk load failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        elasticsearchClient.indices().refresh(r -> r.index(index));
+
+        IngestionReport report = new IngestionReport(indexed.get(), failed.get(), bytes,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+        log.info("Indexed {} courses into '{}' ({} failed, {} KB) in {} ms - {} docs/sec",
+                report.indexed(), index, report.failed(), report.bytes() / 1024, report.elapsedMillis(),
+                String.format("%.0f", report.docsPerSecond()));
+        return report;
+    }
+
+    private Future<?> submit(ExecutorService executor, Semaphore inFlight, List<BulkOperation> batch,
+                             AtomicLong indexed, AtomicLong failed) throws InterruptedException {
+        // Blocks the parser while the maximum number of bulk requests is in flight
+        inFlight.acquire();
+        try {
+            return executor.submit(() -> {
+                try {
+                    CourseBulkWriter.BulkOutcome outcome = bulkWriter.write(batch);
+                    indexed.addAndGet(outcome.succeeded());
+                    failed.addAndGet(outcome.failed());
+                    return null;
+                } finally {
+                    inFlight.release();
+                }
+            });
+        } catch (RuntimeException e) {
+            inFlight.release();
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package org.undoschool.coursesearch.service;
+
+import co.elastic.clients.elasticsearch.core.bulk.BulkOperation;
+import co.elastic.clients.json.JsonData;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+import org.undoschool.coursesearch.config.CourseSearchProperties;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.DoubleAdder;
+
+/**
+ * Counts click and enrolment signals per course and folds them into the "popularity" field.
+ *
+ * Recording a signal only adds its weight to a striped {@link DoubleAdder} for the course, so
+ * many threads can record signals for the same course without contending on a lock and
+ * without touching Elasticsearch. Every flush interval, the sum per course is taken and
+ * written as one scripted increment per course, in bulk requests. Deltas of a bulk request
+ * that fails are put back so they go out with the next flush.
+ *
+ * Popularity only affects scoring, so a flush does not publish an index-changed event; cached
+ * results pick up new scores when they expire.
+ */
+@Slf4j
+@Service
+public class CoursePopularityService {
+
+    static final String ADD_POPULARITY_SCRIPT =
+            "ctx._source.popularity = (ctx._source.popularity == null ? 0 : ctx._source.popularity) + params.delta";
+
+    // Full-document writes replace the stored source but keep the accumulated popularity
+    static final String REPLACE_KEEPING_POPULARITY_SCRIPT = """
+            def popularity = ctx._source.popularity;
+            ctx._source.clear();
+            ctx._source.putAll(params.doc);
+            if (popularity != null) { ctx._source.popularity = popularity; }
+            """;
+
+    private final CourseBulkWriter bulkWriter;
+    private final CourseIndexManager indexManager;
+    private final CourseSearchProperties.Popularity config;
+    private final int batchSize;
+
+    // Weighted signals per course id since the last flush
+    private final ConcurrentHashMap<String, DoubleAdder> counters = new ConcurrentHashMap<>();
+    private final Map<CourseSignal.Type, Counter> received = new EnumMap<>(CourseSignal.Type.class);
+    private final Counter dropped;
+
+    public CoursePopularityService(CourseBulkWriter bulkWriter, CourseIndexManager indexManager,
+                                   CourseSearchProperties properties, MeterRegistry meterRegistry) {
+        this.bulkWriter = bulkWriter;
+        this.indexManager = indexManager;
+        this.config = properties.getPopularity();
+        this.batchSize = properties.getIngest().getBatchSize();
+        for (CourseSignal.Type type : CourseSignal.Type.values()) {
+            received.put(type, meterRegistry.counter("popularity.signals", "type", type.name().toLowerCase(Locale.ROOT)));
+        }
+        this.dropped = meterRegistry.counter("popularity.signals.dropped");
+        meterRegistry.gaugeMapSize("popularity.tracked", List.of(), counters);
+    }
+
+    /**
+     * Counts a batch of signals. Invalid signals reject the whole batch before anything is
+     * counted; signals for new courses beyond {@code max-tracked} are dropped.
+     */
+    public void record(List<CourseSignal> signals) {
+        for (CourseSignal signal : signals) {
+            if (!StringUtils.hasText(signal.getId())) {
+                throw new IllegalArgumentException("Every signal needs a course id");
+            }
+            if (signal.getType() == null) {
+                throw new IllegalArgumentException("Signal for course " + signal.getId() + " has no type");
+            }
+        }
+
+        for (CourseSignal signal : signals) {
+            DoubleAdder counter = counters.get(signal.getId());
+            if (counter == null) {
+                if (counters.size() >= config.getMaxTracked()) {
+                    dropped.increment();
+                    continue;
+                }
+                counter = counters.computeIfAbsent(signal.getId(), id -> new DoubleAdder());
+            }
+            counter.add(weight(signal.getType()));
+            received.get(signal.getType()).increment();
+        }
+    }
+
+    public int trackedCount() {
+        return counters.size();
+    }
+
+    /**
+     * Writes the popularity gained since the last flush, one increment per course.
+     */
+    @Scheduled(fixedDelayString = "${coursesearch.popularity.flush-interval:30s}")
+    public synchronized void flush() {
+        Map<String, Double> deltas = new HashMap<>();
+        counters.forEach((id, counter) -> {
+            double delta = counter.sumThenReset();
+            if (delta > 0) {
+                deltas.put(id, delta);
+            } else {
+                // Idle for a whole interval; a signal racing with this removal may be lost
+                counters.remove(id, counter);
+            }
+        });
+        if (deltas.isEmpty()) {
+            return;
+        }
+
+        String index = indexManager.alias();
+        List<Map.Entry<String, Double>> pending = new ArrayList<>(deltas.entrySet());
+        int succeeded = 0;
+        int failed = 0;
+        for (int from = 0; from < pending.size(); from += batchSize) {
+            List<Map.Entry<String, Double>> batch = pending.subList(from, Math.min(from + batchSize, pending.size()));
+            List<BulkOperation> operations = batch.stream()
+                    .map(delta -> increment(index, delta.getKey(), delta.getValue()))
+                    .toList();
+            try {
+                CourseBulkWriter.BulkOutcome outcome = bulkWriter.write(operations);
+                succeeded += outcome.succeeded();
+                failed += outcome.failed();
+            } catch (Exception e) {
+                List<Map.Entry<String, Double>> unsent = pending.subList(from, pending.size());
+                log.warn("Popularity flush failed, keeping {} deltas for the next one: {}", unsent.size(), e.getMessage());
+                unsent.forEach(delta -> counters.computeIfAbsent(delta.getKey(), id -> new DoubleAdder()).add(delta.getValue()));
+                if (e instanceof InterruptedException) {
+                    Thread.currentThread().interrupt();
+                }
+                break;
+            }
+        }
+        log.debug("Popularity flush updated {} courses ({} failed)", succeeded, failed);
+    }
+
+    @PreDestroy
+    void flushOnShutdown() {
+        flush();
+    }
+
+    private double weight(CourseSignal.Type type) {
+        return switch (type) {
+            case CLICK -> config.getClickWeight();
+            case ENROLMENT -> config.getEnrolmentWeight();
+        };
+    }
+
+    private static BulkOperation increment(String index, String id, double delta) {
+        return BulkOperation.of(op -> op.update(u -> u.index(index).id(id)
+                // Concurrent delta syncs touch the same documents
+                .retryOnConflict(3)
+                .action(a -> a.script(s -> s
+                        .source(ADD_POPULARITY_SCRIPT)
+                        .params("delta", JsonData.of(delta))))));
+    }
+}
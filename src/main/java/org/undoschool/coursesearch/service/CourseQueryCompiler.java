@@ -0,0 +1,340 @@
+package org.undoschool.coursesearch.service;
+
+import co.elastic.clients.elasticsearch._types.aggregations.Aggregation;
+import co.elastic.clients.elasticsearch._types.query_dsl.Query;
+import co.elastic.clients.elasticsearch._types.query_dsl.QueryBuilders;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.elasticsearch.client.elc.NativeQuery;
+import org.springframework.data.elasticsearch.client.elc.NativeQueryBuilder;
+import org.springframework.data.elasticsearch.core.query.FetchSourceFilter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import org.undoschool.coursesearch.config.CourseSearchProperties;
+
+import java.time.Duration;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Compiles {@link SearchCriteria} into a native Elasticsearch bool query.
+ *
+ * Structured constraints (category, type, price, age, date) go into non-scoring
+ * filter clauses, which Elasticsearch can cache and skip when scoring. Only the
+ * full-text part is placed in must/should, and its shape depends on the {@link TextMode}.
+ *
+ * When facets are requested, the filters of faceted fields move to the post_filter so that
+ * each facet can be counted with every filter except its own.
+ *
+ * Offset searches count their total hits according to the configured totals policy, so broad
+ * queries can stop counting at a threshold instead of visiting every match.
+ *
+ * Text queries and the "relevance" sort also get an optional should clause on the
+ * popularity rank_feature, so that courses with more clicks and enrolments score higher.
+ */
+@Component
+public class CourseQueryCompiler {
+
+    // Must match the pattern declared on CourseDocument.nextSessionDate
+    private static final String SESSION_DATE_PATTERN = "yyyy-MM-dd'T'HH:mm:ss";
+    private static final DateTimeFormatter SESSION_DATE_FORMAT = DateTimeFormatter.ofPattern(SESSION_DATE_PATTERN);
+
+    static final int MAX_PAGE_SIZE = 100;
+
+    // Index-only fields that are never returned with hits
+    private static final String[] INTERNAL_FIELDS = {CourseSuggestService.SUGGEST_FIELD};
+
+    // Name of the bucketing sub-aggregation inside each facet's filter aggregation
+    static final String FACET_BUCKETS = "buckets";
+
+    static final String POPULARITY_FIELD = "popularity";
+
+    private final float popularityBoost;
+    private final CourseSearchProperties.Totals totals;
+
+    public CourseQueryCompiler() {
+        this(new CourseSearchProperties());
+    }
+
+    @Autowired
+    public CourseQueryCompiler(CourseSearchProperties properties) {
+        this.popularityBoost = properties.getPopularity().getBoost();
+        this.totals = properties.getTotals();
+    }
+
+    /**
+     * How the text part of the criteria is matched.
+     */
+    public enum TextMode {
+        MATCH,      // match on title or description
+        FUZZY,      // multi_match with fuzziness=AUTO
+        CONTAINS    // wildcard contains on title or description
+    }
+
+    /**
+     * Builds a complete search request: bool query, paging, sort, projection and any requested facets.
+     */
+    public NativeQuery compile(SearchCriteria criteria, TextMode mode) {
+        NativeQueryBuilder builder = NativeQuery.builder()
+                .withPageable(createPageable(criteria));
+        applyTotalHits(builder);
+        applyProjection(builder, criteria);
+
+        if (criteria.getFacets() == null || criteria.getFacets().isEmpty()) {
+            return builder.withQuery(compileQuery(criteria, mode)).build();
+        }
+
+        Map<String, List<Query>> groups = compileFilterGroups(criteria);
+        List<Query> queryFilters = new ArrayList<>();
+        List<Query> postFilters = new ArrayList<>();
+        groups.forEach((field, filters) ->
+                (isFaceted(criteria, field) ? postFilters : queryFilters).addAll(filters));
+
+        builder.withQuery(combine(criteria, mode, queryFilters));
+        if (!postFilters.isEmpty()) {
+            builder.withFilter(QueryBuilders.bool(b -> b.filter(postFilters)));
+        }
+
+        for (Facet facet : criteria.getFacets()) {
+            // Every faceted filter except the facet's own
+            List<Query> others = new ArrayList<>();
+            groups.forEach((field, filters) -> {
+                if (!field.equals(facet.param()) && isFaceted(criteria, field)) {
+                    others.addAll(filters);
+                }
+            });
+            Query scope = others.isEmpty()
+                    ? QueryBuilders.matchAll(m -> m)
+                    : QueryBuilders.bool(b -> b.filter(others));
+            builder.withAggregation(facet.param(), Aggregation.of(a -> a
+                    .filter(scope)
+                    .aggregations(FACET_BUCKETS, facet.aggregation())));
+        }
+        return builder.build();
+    }
+
+    /**
+     * Builds one page of a point-in-time walk. Paging is driven by search_after instead of
+     * an offset, so the cost of a page does not grow with its depth. The exact total is only
+     * counted on the first page; later pages carry it in the cursor.
+     */
+    public NativeQuery compileCursorPage(SearchCriteria criteria, String pitId, Duration keepAlive,
+                                         @Nullable List<Object> searchAfter) {
+        return compilePitPage(criteria, pageSize(criteria), pitId, keepAlive, searchAfter, searchAfter == null);
+    }
+
+    /**
+     * Builds a search_after page of any size against a point-in-time, e.g. for exports.
+     */
+    public NativeQuery compilePitPage(SearchCriteria criteria, int size, String pitId, Duration keepAlive,
+                                      @Nullable List<Object> searchAfter, boolean trackTotalHits) {
+        NativeQueryBuilder builder = NativeQuery.builder()
+                .withQuery(compileQuery(criteria, TextMode.MATCH))
+                .withPageable(PageRequest.of(0, size, createSort(criteria.getSort())))
+                .withPointInTime(new org.springframework.data.elasticsearch.core.query.Query.PointInTime(pitId, keepAlive))
+                .withTrackTotalHits(trackTotalHits);
+        applyProjection(builder, criteria);
+        if (searchAfter != null) {
+            builder.withSearchAfter(searchAfter);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Builds a request that only counts the matches of the criteria, exactly and without
+     * fetching any hits.
+     */
+    public NativeQuery compileCount(SearchCriteria criteria) {
+        return NativeQuery.builder()
+                .withQuery(compileQuery(criteria, TextMode.MATCH))
+                .withMaxResults(0)
+                .withTrackTotalHits(true)
+                .build();
+    }
+
+    /**
+     * Builds only the bool query, for callers that control paging themselves.
+     */
+    public Query compileQuery(SearchCriteria criteria, TextMode mode) {
+        return combine(criteria, mode, compileFilters(criteria));
+    }
+
+    private Query combine(SearchCriteria criteria, TextMode mode, List<Query> filters) {
+        String query = criteria.getQuery();
+        List<Query> boosts = popularityBoost > 0 && (StringUtils.hasText(query) || isRelevanceSort(criteria))
+                ? List.of(QueryBuilders.rankFeature(r -> r.field(POPULARITY_FIELD).saturation(s -> s).boost(popularityBoost)))
+                : List.of();
+
+        if (!StringUtils.hasText(query)) {
+            if (filters.isEmpty() && boosts.isEmpty()) {
+                return QueryBuilders.matchAll(m -> m);
+            }
+            // The should clause only adds to the score. A bool without must or filter clauses
+            // would require it to match, so match_all keeps courses without popularity
+            if (filters.isEmpty()) {
+                return QueryBuilders.bool(b -> b.must(QueryBuilders.matchAll(m -> m)).should(boosts));
+            }
+            return QueryBuilders.bool(b -> b.filter(filters).should(boosts));
+        }
+
+        Query text = compileText(query, mode);
+        return QueryBuilders.bool(b -> b.must(text).filter(filters).should(boosts));
+    }
+
+    private static boolean isRelevanceSort(SearchCriteria criteria) {
+        return "relevance".equals(sortMode(criteria.getSort()));
+    }
+
+    /**
+     * Non-scoring filter clauses for every structured constraint in the criteria.
+     */
+    public List<Query> compileFilters(SearchCriteria criteria) {
+        List<Query> filters = new ArrayList<>();
+        compileFilterGroups(criteria).values().forEach(filters::addAll);
+        return filters;
+    }
+
+    /**
+     * Filter clauses grouped by the constraint they implement, keyed by the matching
+     * {@link Facet#param()} (or "startDate", which is not a facet).
+     */
+    private Map<String, List<Query>> compileFilterGroups(SearchCriteria criteria) {
+        Map<String, List<Query>> groups = new LinkedHashMap<>();
+
+        if (StringUtils.hasText(criteria.getCategory())) {
+            groups.put("category", List.of(
+                    QueryBuilders.term(t -> t.field("category").value(criteria.getCategory().trim()))));
+        }
+
+        if (criteria.getType() != null) {
+            groups.put("type", List.of(
+                    QueryBuilders.term(t -> t.field("type").value(criteria.getType().name()))));
+        }
+
+        if (criteria.getMinPrice() != null || criteria.getMaxPrice() != null) {
+            groups.put("price", List.of(QueryBuilders.range(r -> r.number(n -> n
+                    .field("price")
+                    .gte(criteria.getMinPrice())
+                    .lte(criteria.getMaxPrice())))));
+        }
+
+        // Age overlap: course.maxAge >= minAge and course.minAge <= maxAge
+        List<Query> age = new ArrayList<>(2);
+        if (criteria.getMinAge() != null) {
+            age.add(QueryBuilders.range(r -> r.number(n -> n
+                    .field("maxAge")
+                    .gte(criteria.getMinAge().doubleValue()))));
+        }
+        if (criteria.getMaxAge() != null) {
+            age.add(QueryBuilders.range(r -> r.number(n -> n
+                    .field("minAge")
+                    .lte(criteria.getMaxAge().doubleValue()))));
+        }
+        if (!age.isEmpty()) {
+            groups.put("age", age);
+        }
+
+        if (criteria.getStartDate() != null) {
+            groups.put("startDate", List.of(QueryBuilders.range(r -> r.date(d -> d
+                    .field("nextSessionDate")
+                    .gte(SESSION_DATE_FORMAT.format(criteria.getStartDate()))
+                    .format(SESSION_DATE_PATTERN)))));
+        }
+
+        return groups;
+    }
+
+    private void applyTotalHits(NativeQueryBuilder builder) {
+        switch (totals.getPolicy()) {
+            case EXACT -> builder.withTrackTotalHits(true);
+            case CAPPED -> builder.withTrackTotalHitsUpTo(totals.getThreshold());
+            case NONE -> builder.withTrackTotalHits(false);
+        }
+    }
+
+    private static void applyProjection(NativeQueryBuilder builder, SearchCriteria criteria) {
+        String[] includes = criteria.getFields() != null ? criteria.getFields().toArray(String[]::new) : null;
+        builder.withSourceFilter(new FetchSourceFilter(true, includes, INTERNAL_FIELDS));
+    }
+
+    private static boolean isFaceted(SearchCriteria criteria, String field) {
+        return criteria.getFacets().stream().anyMatch(facet -> facet.param().equals(field));
+    }
+
+    private Query compileText(String text, TextMode mode) {
+        return switch (mode) {
+            case MATCH -> QueryBuilders.bool(b -> b
+                    .should(QueryBuilders.match(m -> m.field("title").query(text)))
+                    .should(QueryBuilders.match(m -> m.field("description").query(text)))
+                    .minimumShouldMatch("1"));
+            case FUZZY -> QueryBuilders.multiMatch(mm -> mm
+                    .query(text)
+                    .fields("title", "description")
+                    .fuzziness("AUTO"));
+            case CONTAINS -> {
+                String pattern = '*' + escapeQueryString(text) + '*';
+                yield QueryBuilders.bool(b -> b
+                        .should(QueryBuilders.queryString(qs -> qs.fields("title").query(pattern).analyzeWildcard(true)))
+                        .should(QueryBuilders.queryString(qs -> qs.fields("description").query(pattern).analyzeWildcard(true)))
+                        .minimumShouldMatch("1"));
+            }
+        };
+    }
+
+    /**
+     * Escapes query_string syntax characters, the same set Spring Data escapes for Criteria contains().
+     */
+    private static String escapeQueryString(String text) {
+        StringBuilder sb = new StringBuilder(text.length() + 8);
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if ("\\+-!():^[]\"{}~*?|&/".indexOf(c) >= 0) {
+                sb.append('\\');
+            }
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+
+    public Pageable createPageable(SearchCriteria criteria) {
+        int page = Math.max(criteria.getPage(), 0);
+        Sort sort = createSort(criteria.getSort());
+        return PageRequest.of(page, pageSize(criteria), sort);
+    }
+
+    public int pageSize(SearchCriteria criteria) {
+        return Math.min(Math.max(criteria.getSize(), 1), MAX_PAGE_SIZE);
+    }
+
+    /**
+     * Sort for the requested mode, always ending with the id as tiebreaker so that
+     * the order is total and search_after positions are stable.
+     */
+    public Sort createSort(String sortParam) {
+        Sort sort = switch (sortMode(sortParam)) {
+            case "priceasc" -> Sort.by(Sort.Direction.ASC, "price");
+            case "pricedesc" -> Sort.by(Sort.Direction.DESC, "price");
+            case "relevance" -> Sort.by(Sort.Direction.DESC, "_score");
+            default -> Sort.by(Sort.Direction.ASC, "nextSessionDate");
+        };
+        return sort.and(Sort.by(Sort.Direction.ASC, "id"));
+    }
+
+    /**
+     * Canonical name of the sort mode: priceasc, pricedesc, relevance or upcoming (anything else).
+     */
+    public static String sortMode(@Nullable String sortParam) {
+        String key = sortParam != null ? sortParam.toLowerCase(Locale.ROOT) : "upcoming";
+        return switch (key) {
+            case "priceasc", "pricedesc", "relevance" -> key;
+            default -> "upcoming";
+        };
+    }
+}
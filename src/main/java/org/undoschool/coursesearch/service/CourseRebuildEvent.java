@@ -0,0 +1,17 @@
+package org.undoschool.coursesearch.service;
+
+/**
+ * Published by {@link CourseIndexManager} as a rebuild progresses. Writers that keep changing
+ * the served index while a new version loads use it to carry those changes over to the new one.
+ *
+ * @param index the new physical index
+ * @param stage how far the rebuild got
+ */
+public record CourseRebuildEvent(String index, Stage stage) {
+
+    public enum Stage {
+        STARTED,    // the new index is about to be loaded from the source
+        SWAPPED,    // the alias now points to the new index
+        FAILED      // the new index was deleted again; the alias did not move
+    }
+}
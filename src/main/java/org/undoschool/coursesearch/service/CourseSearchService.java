@@ -1,21 +1,27 @@
 package org.undoschool.coursesearch.service;
 
+import io.micrometer.core.instrument.Timer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.undoschool.coursesearch.config.CourseSearchProperties;
 import org.undoschool.coursesearch.document.CourseDocument;
-import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Pageable;
-import org.springframework.data.domain.Sort;
+import org.undoschool.coursesearch.service.CourseQueryCompiler.TextMode;
+import org.springframework.data.elasticsearch.client.elc.ElasticsearchAggregation;
+import org.springframework.data.elasticsearch.client.elc.ElasticsearchAggregations;
 import org.springframework.data.elasticsearch.client.elc.NativeQuery;
 import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
 import org.springframework.data.elasticsearch.core.SearchHit;
 import org.springframework.data.elasticsearch.core.SearchHits;
-import org.springframework.data.elasticsearch.core.query.Criteria;
-import org.springframework.data.elasticsearch.core.query.CriteriaQuery;
+import org.springframework.data.elasticsearch.core.query.Query;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -23,190 +29,333 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class CourseSearchService {
 
+    // Order of the fuzzy-mode tiers in the _msearch request
+    private static final List<TextMode> FUZZY_TIERS = List.of(TextMode.MATCH, TextMode.FUZZY, TextMode.CONTAINS);
+
     private final ElasticsearchOperations elasticsearchOperations;
+    private final CourseQueryCompiler queryCompiler;
+    private final CourseSearchProperties properties;
+    private final SearchResultCache resultCache;
+    private final SearchCoalescer coalescer;
+    private final SearchExecutor searchExecutor;
+    private final SearchCircuitBreaker circuitBreaker;
+    private final CourseColumnarIndex columnarIndex;
+    private final SearchMetrics metrics;
+    private final SlowQueryLog slowQueryLog;
 
     public SearchResult searchCourses(SearchCriteria criteria) {
         log.debug("Searching courses with criteria: {}", criteria);
 
-        Pageable pageable = createPageable(criteria);
-
-        org.springframework.data.elasticsearch.core.query.Query searchQuery = buildSpringDataQuery(criteria, pageable);
-
-        SearchHits<CourseDocument> searchHits =
-                elasticsearchOperations.search(searchQuery, CourseDocument.class);
-
-        List<CourseDocument> courses = searchHits.getSearchHits().stream()
-                .map(SearchHit::getContent)
-                .collect(Collectors.toList());
-
-        // If fuzzy is requested and there are no hits, retry with fuzziness, then a contains fallback
-        if (criteria.isFuzzy() && StringUtils.hasText(criteria.getQuery()) && searchHits.getTotalHits() == 0) {
-            log.debug("Fuzzy fallback engaged for query: {}", criteria.getQuery());
-            org.springframework.data.elasticsearch.core.query.Query fuzzyNative = buildFuzzyNativeTextQuery(criteria, pageable);
-            SearchHits<CourseDocument> fuzzyHits = elasticsearchOperations.search(fuzzyNative, CourseDocument.class);
-            if (fuzzyHits.getTotalHits() > 0) {
-                courses = fuzzyHits.getSearchHits().stream().map(SearchHit::getContent).collect(Collectors.toList());
-                return SearchResult.builder().total(fuzzyHits.getTotalHits()).courses(courses).build();
-            }
+        // Cursor pages are tied to a point-in-time and never cached
+        if (criteria.getCursor() != null) {
+            return circuitBreaker.execute(() -> searchExecutor.execute(() -> searchAfter(criteria)));
+        }
 
-            org.springframework.data.elasticsearch.core.query.Query containsFallback = buildContainsFallbackQuery(criteria, pageable);
-            SearchHits<CourseDocument> fallbackHits = elasticsearchOperations.search(containsFallback, CourseDocument.class);
-            if (fallbackHits.getTotalHits() > 0) {
-                courses = fallbackHits.getSearchHits().stream().map(SearchHit::getContent).collect(Collectors.toList());
-                return SearchResult.builder().total(fallbackHits.getTotalHits()).courses(courses).build();
-            }
+        // Searches without a text query can be answered from the in-process columnar copy
+        Timer.Sample sample = metrics.start();
+        SearchResult inMemory = columnarIndex.search(criteria);
+        if (inMemory != null) {
+            metrics.executed(sample, CourseQueryCompiler.sortMode(criteria.getSort()), "columnar");
+            return inMemory;
         }
 
-        return SearchResult.builder()
-                .total(searchHits.getTotalHits())
-                .courses(courses)
-                .build();
+        // Cache hits return straight away; identical concurrent misses share one search
+        SearchCacheKey key = SearchCacheKey.of(criteria);
+        SearchResult cached = resultCache.getIfPresent(key);
+        if (cached != null) {
+            return cached;
+        }
+        try {
+            return coalescer.execute(key, () -> resultCache.get(key, () -> circuitBreaker.execute(
+                    () -> searchExecutor.executeHedged(() -> executeSearch(criteria)))));
+        } catch (IllegalArgumentException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            return staleOrThrow(key, e);
+        }
     }
 
-    private org.springframework.data.elasticsearch.core.query.Query buildSpringDataQuery(SearchCriteria criteria, Pageable pageable) {
-        Criteria root = new Criteria();
-
-        boolean any = false;
+    /**
+     * Exact number of courses matching the filters and text query of the criteria, without
+     * fetching any of them. Paging, sort, fuzzy, facets and cursor are ignored.
+     */
+    public long countCourses(SearchCriteria criteria) {
+        Query query = queryCompiler.compileCount(criteria);
+        return circuitBreaker.execute(() -> searchExecutor.execute(() -> metrics.roundTrip("count",
+                () -> elasticsearchOperations.count(query, CourseDocument.class))));
+    }
 
-        if (StringUtils.hasText(criteria.getQuery())) {
-            Criteria title = new Criteria("title").matches(criteria.getQuery());
-            Criteria description = new Criteria("description").matches(criteria.getQuery());
-            Criteria text = title.or(description);
-            root = root.and(text);
-            any = true;
+    /**
+     * While the cluster is failing, slow or shedding load, a search that succeeded before is
+     * answered with its last good result, marked as stale.
+     */
+    private SearchResult staleOrThrow(SearchCacheKey key, RuntimeException e) {
+        SearchResult stale = resultCache.getStale(key);
+        if (stale == null) {
+            throw e;
         }
+        log.debug("Serving stale result for {} after: {}", key, e.getMessage());
+        return stale;
+    }
 
-        if (StringUtils.hasText(criteria.getCategory())) {
-            root = root.and(new Criteria("category").is(criteria.getCategory()));
-            any = true;
+    /**
+     * Runs a batch of searches and returns one outcome per criteria, in order. Results from
+     * the columnar index or the cache are served as is; the remaining offset searches are
+     * compiled and sent in a single _msearch. Cursor and fuzzy searches need their own requests
+     * and run one by one. A failing item does not fail the others.
+     */
+    public List<SearchOutcome> searchBatch(List<SearchCriteria> batch) {
+        int maxSize = properties.getBatch().getMaxSize();
+        if (batch.size() > maxSize) {
+            throw new IllegalArgumentException("A batch holds at most " + maxSize + " searches, got " + batch.size());
         }
 
-        if (criteria.getType() != null) {
-            root = root.and(new Criteria("type").is(criteria.getType().name()));
-            any = true;
-        }
+        SearchOutcome[] outcomes = new SearchOutcome[batch.size()];
+        List<Integer> positions = new ArrayList<>();
+        List<SearchCacheKey> keys = new ArrayList<>();
+        List<Query> queries = new ArrayList<>();
 
-        if (criteria.getMinPrice() != null) {
-            root = root.and(new Criteria("price").greaterThanEqual(criteria.getMinPrice()));
-            any = true;
-        }
-        if (criteria.getMaxPrice() != null) {
-            root = root.and(new Criteria("price").lessThanEqual(criteria.getMaxPrice()));
-            any = true;
+        for (int i = 0; i < batch.size(); i++) {
+            SearchCriteria criteria = batch.get(i);
+            if (criteria.getCursor() != null || (criteria.isFuzzy() && StringUtils.hasText(criteria.getQuery()))) {
+                continue;
+            }
+            try {
+                SearchResult inMemory = columnarIndex.search(criteria);
+                if (inMemory != null) {
+                    outcomes[i] = SearchOutcome.success(inMemory);
+                    continue;
+                }
+                SearchCacheKey key = SearchCacheKey.of(criteria);
+                SearchResult cached = resultCache.getIfPresent(key);
+                if (cached != null) {
+                    outcomes[i] = SearchOutcome.success(cached);
+                    continue;
+                }
+                queries.add(queryCompiler.compile(criteria, TextMode.MATCH));
+                keys.add(key);
+                positions.add(i);
+            } catch (RuntimeException e) {
+                outcomes[i] = SearchOutcome.failure(e);
+            }
         }
 
-        if (criteria.getMinAge() != null) {
-            root = root.and(new Criteria("maxAge").greaterThanEqual(criteria.getMinAge()));
-            any = true;
+        if (!queries.isEmpty()) {
+            executeBatch(batch, positions, keys, queries, outcomes);
         }
-        if (criteria.getMaxAge() != null) {
-            root = root.and(new Criteria("minAge").lessThanEqual(criteria.getMaxAge()));
-            any = true;
+
+        for (int i = 0; i < batch.size(); i++) {
+            if (outcomes[i] == null) {
+                SearchCriteria criteria = batch.get(i);
+                outcomes[i] = SearchOutcome.of(() -> searchCourses(criteria));
+            }
         }
+        return List.of(outcomes);
+    }
 
-        if (criteria.getStartDate() != null) {
-            root = root.and(new Criteria("nextSessionDate").greaterThanEqual(criteria.getStartDate()));
-            any = true;
+    private void executeBatch(List<SearchCriteria> batch, List<Integer> positions, List<SearchCacheKey> keys,
+                              List<Query> queries, SearchOutcome[] outcomes) {
+        List<SearchHits<CourseDocument>> searchHits;
+        try {
+            searchHits = circuitBreaker.execute(() -> searchExecutor.executeHedged(() -> metrics.roundTrip("msearch",
+                    () -> elasticsearchOperations.multiSearch(queries, CourseDocument.class))));
+        } catch (RuntimeException e) {
+            // The whole request failed; retrying item by item would only multiply the load
+            for (int j = 0; j < positions.size(); j++) {
+                SearchResult stale = resultCache.getStale(keys.get(j));
+                outcomes[positions.get(j)] = stale != null ? SearchOutcome.success(stale) : SearchOutcome.failure(e);
+            }
+            return;
         }
 
-        if (!any) {
-            return NativeQuery.builder()
-                    .withQuery(q -> q.matchAll(m -> m))
-                    .withTrackTotalHits(true)
-                    .withPageable(pageable)
-                    .build();
+        // Failed items are left out of the response, so hits can no longer be matched to
+        // their queries; leave the outcomes empty and let each search run on its own
+        if (searchHits.size() != queries.size()) {
+            log.warn("Batch _msearch returned {} of {} responses, running the searches individually",
+                    searchHits.size(), queries.size());
+            return;
         }
 
-        CriteriaQuery criteriaQuery = new CriteriaQuery(root);
-        criteriaQuery.setPageable(pageable);
-        return criteriaQuery;
+        for (int j = 0; j < searchHits.size(); j++) {
+            int i = positions.get(j);
+            SearchHits<CourseDocument> hits = searchHits.get(j);
+            metrics.took(tierName(TextMode.MATCH), hits.getExecutionDuration());
+            SearchResult result = toSearchResult(hits, batch.get(i));
+            resultCache.put(keys.get(j), result);
+            outcomes[i] = SearchOutcome.success(result);
+        }
     }
 
-    private org.springframework.data.elasticsearch.core.query.Query buildContainsFallbackQuery(SearchCriteria criteria, Pageable pageable) {
-        Criteria root = new Criteria();
-
-        boolean any = false;
-
-        if (StringUtils.hasText(criteria.getQuery())) {
-            Criteria title = new Criteria("title").contains(criteria.getQuery());
-            Criteria description = new Criteria("description").contains(criteria.getQuery());
-            Criteria text = title.or(description);
-            root = root.and(text);
-            any = true;
+    private SearchResult executeSearch(SearchCriteria criteria) {
+        Timer.Sample sample = metrics.start();
+        long started = System.nanoTime();
+        String sort = CourseQueryCompiler.sortMode(criteria.getSort());
+
+        if (!criteria.isFuzzy() || !StringUtils.hasText(criteria.getQuery())) {
+            String tier = tierName(TextMode.MATCH);
+            Query searchQuery = metrics.stage("compile", tier, sort, () -> queryCompiler.compile(criteria, TextMode.MATCH));
+            SearchHits<CourseDocument> searchHits = metrics.stage("es", tier, sort, () -> metrics.roundTrip("search",
+                    () -> elasticsearchOperations.search(searchQuery, CourseDocument.class)));
+            metrics.took(tier, searchHits.getExecutionDuration());
+
+            SearchResult result = metrics.stage("map", tier, sort, () -> toSearchResult(searchHits, criteria));
+            metrics.executed(sample, sort, tier);
+            slowQueryLog.record(criteria, searchQuery, tier, System.nanoTime() - started, searchHits.getExecutionDuration());
+            return result;
         }
 
-        if (StringUtils.hasText(criteria.getCategory())) {
-            root = root.and(new Criteria("category").is(criteria.getCategory()));
-            any = true;
+        // Fuzzy mode: send the exact, fuzzy and contains tiers in a single _msearch round trip.
+        // Tiers are listed in order of precedence; the first one with hits wins.
+        List<Query> tiers = metrics.stage("compile", "fuzzy", sort, () -> List.of(
+                queryCompiler.compile(criteria, TextMode.MATCH),
+                queryCompiler.compile(criteria, TextMode.FUZZY),
+                queryCompiler.compile(criteria, TextMode.CONTAINS)
+        ));
+        List<SearchHits<CourseDocument>> tierHits = metrics.stage("es", "fuzzy", sort, () -> metrics.roundTrip("msearch",
+                () -> elasticsearchOperations.multiSearch(tiers, CourseDocument.class)));
+        // Failed items are left out of the response, so the hits can no longer be matched to
+        // their tiers; an earlier tier's failure would otherwise be read as a later tier's hits
+        if (tierHits.size() != tiers.size()) {
+            throw new IllegalStateException("Fuzzy _msearch returned " + tierHits.size() + " of "
+                    + tiers.size() + " tier responses");
         }
 
-        if (criteria.getType() != null) {
-            root = root.and(new Criteria("type").is(criteria.getType().name()));
-            any = true;
+        for (int i = 0; i < tierHits.size(); i++) {
+            metrics.took(tierName(FUZZY_TIERS.get(i)), tierHits.get(i).getExecutionDuration());
         }
 
-        if (criteria.getMinPrice() != null) {
-            root = root.and(new Criteria("price").greaterThanEqual(criteria.getMinPrice()));
-            any = true;
-        }
-        if (criteria.getMaxPrice() != null) {
-            root = root.and(new Criteria("price").lessThanEqual(criteria.getMaxPrice()));
-            any = true;
+        for (int i = 0; i < tierHits.size(); i++) {
+            SearchHits<CourseDocument> hits = tierHits.get(i);
+            // Without total counting (totals policy "none") the total is 0 even when there are hits
+            if (hits.getTotalHits() > 0 || hits.hasSearchHits()) {
+                if (i > 0) {
+                    log.debug("Fuzzy fallback tier {} matched for query: {}", i, criteria.getQuery());
+                }
+                String tier = tierName(FUZZY_TIERS.get(i));
+                SearchResult result = metrics.stage("map", tier, sort, () -> toSearchResult(hits, criteria));
+                metrics.executed(sample, sort, tier);
+                slowQueryLog.record(criteria, tiers.get(i), tier, System.nanoTime() - started, hits.getExecutionDuration());
+                return result;
+            }
         }
 
-        if (criteria.getMinAge() != null) {
-            root = root.and(new Criteria("maxAge").greaterThanEqual(criteria.getMinAge()));
-            any = true;
-        }
-        if (criteria.getMaxAge() != null) {
-            root = root.and(new Criteria("minAge").lessThanEqual(criteria.getMaxAge()));
-            any = true;
-        }
+        SearchResult result = metrics.stage("map", "none", sort, () -> toSearchResult(tierHits.get(0), criteria));
+        metrics.executed(sample, sort, "none");
+        slowQueryLog.record(criteria, tiers.get(tiers.size() - 1), "none", System.nanoTime() - started,
+                tierHits.get(tierHits.size() - 1).getExecutionDuration());
+        return result;
+    }
 
-        if (criteria.getStartDate() != null) {
-            root = root.and(new Criteria("nextSessionDate").greaterThanEqual(criteria.getStartDate()));
-            any = true;
-        }
+    private static String tierName(TextMode mode) {
+        return mode.name().toLowerCase(Locale.ROOT);
+    }
 
-        if (!any) {
-            return NativeQuery.builder()
-                    .withQuery(q -> q.matchAll(m -> m))
-                    .withTrackTotalHits(true)
-                    .withPageable(pageable)
-                    .build();
+    /**
+     * Cursor mode: walks a point-in-time snapshot with search_after, so each page costs the
+     * same regardless of depth and is not limited by max_result_window. Fuzzy tiers and facets
+     * are not applied; the walk always uses the exact text match.
+     */
+    private SearchResult searchAfter(SearchCriteria criteria) {
+        Timer.Sample sample = metrics.start();
+        long started = System.nanoTime();
+        String sort = CourseQueryCompiler.sortMode(criteria.getSort());
+        Duration keepAlive = properties.getCursor().getKeepAlive();
+        boolean firstPage = SearchCursor.START.equals(criteria.getCursor());
+        SearchCursor cursor = firstPage ? null : SearchCursor.decode(criteria.getCursor());
+
+        String pitId = firstPage
+                ? elasticsearchOperations.openPointInTime(
+                        elasticsearchOperations.getIndexCoordinatesFor(CourseDocument.class), keepAlive)
+                : cursor.pit();
+
+        NativeQuery query;
+        SearchHits<CourseDocument> searchHits;
+        try {
+            query = queryCompiler.compileCursorPage(criteria, pitId, keepAlive, firstPage ? null : cursor.after());
+            searchHits = metrics.stage("es", "cursor", sort, () -> metrics.roundTrip("search",
+                    () -> elasticsearchOperations.search(query, CourseDocument.class)));
+        } catch (RuntimeException e) {
+            // Nobody gets a cursor for a point-in-time opened here, so nobody else would close it
+            if (firstPage) {
+                closeAfterFailure(pitId, e);
+            }
+            throw e;
+        }
+        if (firstPage && Thread.currentThread().isInterrupted()) {
+            // The executor abandoned this search at its deadline; the caller never sees the cursor
+            elasticsearchOperations.closePointInTime(searchHits.getPointInTimeId() != null
+                    ? searchHits.getPointInTimeId() : pitId);
+            throw new SearchTimeoutException("Cursor search abandoned");
+        }
+        metrics.took("cursor", searchHits.getExecutionDuration());
+
+        long total = firstPage ? searchHits.getTotalHits() : cursor.total();
+        List<SearchHit<CourseDocument>> hits = searchHits.getSearchHits();
+        // Elasticsearch may hand back a new PIT id; later pages must use the latest one
+        String latestPit = searchHits.getPointInTimeId() != null ? searchHits.getPointInTimeId() : pitId;
+
+        String nextCursor = null;
+        if (hits.size() < queryCompiler.pageSize(criteria)) {
+            elasticsearchOperations.closePointInTime(latestPit);
+        } else {
+            List<Object> lastSortValues = hits.get(hits.size() - 1).getSortValues();
+            nextCursor = new SearchCursor(latestPit, lastSortValues, total).encode();
         }
 
-        CriteriaQuery criteriaQuery = new CriteriaQuery(root);
-        criteriaQuery.setPageable(pageable);
-        return criteriaQuery;
+        SearchResult result = SearchResult.builder()
+                .total(total)
+                .courses(hits.stream().map(SearchHit::getContent).collect(Collectors.toList()))
+                .nextCursor(nextCursor)
+                .build();
+        metrics.executed(sample, sort, "cursor");
+        slowQueryLog.record(criteria, query, "cursor", System.nanoTime() - started, searchHits.getExecutionDuration());
+        return result;
     }
 
-    private org.springframework.data.elasticsearch.core.query.Query buildFuzzyNativeTextQuery(SearchCriteria criteria, Pageable pageable) {
-        // Only apply multi_match fuzzy on text fields; keep pagination & total hits tracking
-        return NativeQuery.builder()
-                .withQuery(q -> q.multiMatch(mm -> mm
-                        .query(criteria.getQuery())
-                        .fields("title", "description")
-                        .fuzziness("AUTO")
-                ))
-                .withTrackTotalHits(true)
-                .withPageable(pageable)
-                .build();
+    private void closeAfterFailure(String pitId, RuntimeException failure) {
+        try {
+            elasticsearchOperations.closePointInTime(pitId);
+        } catch (RuntimeException cleanup) {
+            failure.addSuppressed(cleanup);
+        }
     }
 
-    private Pageable createPageable(SearchCriteria criteria) {
-        int size = Math.min(Math.max(criteria.getSize(), 1), 100);
-        int page = Math.max(criteria.getPage(), 0);
-        Sort sort = createSort(criteria.getSort());
-        return PageRequest.of(page, size, sort);
+    private SearchResult toSearchResult(SearchHits<CourseDocument> searchHits, SearchCriteria criteria) {
+        List<CourseDocument> courses = searchHits.getSearchHits().stream()
+                .map(SearchHit::getContent)
+                .collect(Collectors.toList());
+
+        SearchResult.SearchResultBuilder result = SearchResult.builder()
+                .courses(courses)
+                .facets(toFacets(searchHits, criteria));
+        switch (searchHits.getTotalHitsRelation()) {
+            case EQUAL_TO -> result.total(searchHits.getTotalHits());
+            // Counting stopped at the totals threshold
+            case GREATER_THAN_OR_EQUAL_TO -> result.total(searchHits.getTotalHits()).approximate(true);
+            // Not counted: everything up to this page exists, and a full page means there may be more
+            case OFF -> {
+                int pageSize = queryCompiler.pageSize(criteria);
+                result.total((long) Math.max(criteria.getPage(), 0) * pageSize + courses.size())
+                        .approximate(courses.size() == pageSize);
+            }
+        }
+        return result.build();
     }
 
-    private Sort createSort(String sortParam) {
-        String key = sortParam != null ? sortParam.toLowerCase() : "upcoming";
-        return switch (key) {
-            case "priceasc" -> Sort.by(Sort.Direction.ASC, "price");
-            case "pricedesc" -> Sort.by(Sort.Direction.DESC, "price");
-            default -> Sort.by(Sort.Direction.ASC, "nextSessionDate");
-        };
+    private Map<String, List<FacetBucket>> toFacets(SearchHits<CourseDocument> searchHits, SearchCriteria criteria) {
+        if (criteria.getFacets() == null || criteria.getFacets().isEmpty()
+                || !(searchHits.getAggregations() instanceof ElasticsearchAggregations aggregations)) {
+            return null;
+        }
+
+        Map<String, List<FacetBucket>> facets = new LinkedHashMap<>();
+        for (Facet facet : criteria.getFacets()) {
+            ElasticsearchAggregation scoped = aggregations.get(facet.param());
+            if (scoped != null) {
+                facets.put(facet.param(), facet.buckets(scoped.aggregation().getAggregate()
+                        .filter().aggregations().get(CourseQueryCompiler.FACET_BUCKETS)));
+            }
+        }
+        return facets;
     }
 }
@@ -0,0 +1,22 @@
+package org.undoschool.coursesearch.service;
+
+import lombok.Builder;
+import lombok.Data;
+import lombok.extern.jackson.Jacksonized;
+
+/**
+ * One user interaction with a course, counted towards its popularity.
+ */
+@Data
+@Builder
+@Jacksonized
+public class CourseSignal {
+
+    public enum Type {
+        CLICK,
+        ENROLMENT
+    }
+
+    private String id;
+    private Type type;
+}
@@ -0,0 +1,142 @@
+package org.undoschool.coursesearch.service;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch.core.SearchResponse;
+import co.elastic.clients.elasticsearch.core.search.CompletionSuggestOption;
+import co.elastic.clients.elasticsearch.core.search.Suggestion;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.elasticsearch.core.suggest.Completion;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+import org.undoschool.coursesearch.document.CourseDocument;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Search-as-you-type suggestions from the "suggest" completion field.
+ *
+ * The completion field is an in-memory FST per segment, so a prefix lookup does not run a
+ * full-text query and returns only the matched input plus id, title and category. Its inputs
+ * (title and category) are derived from the course whenever a full document is written, and
+ * recomputed by script when a partial update touches either field. Duplicate texts are
+ * skipped, so a category is suggested once and without a course.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class CourseSuggestService {
+
+    static final String SUGGEST_FIELD = "suggest";
+
+    static final int MAX_SIZE = 20;
+
+    // Applied to partial updates of title or category, so the completion inputs follow the new values
+    static final String UPDATE_WITH_SUGGEST_SCRIPT = """
+            ctx._source.putAll(params.doc);
+            def input = [];
+            if (ctx._source.title != null) { input.add(ctx._source.title); }
+            if (ctx._source.category != null) { input.add(ctx._source.category); }
+            ctx._source.suggest = ['input': input];
+            """;
+
+    private static final String SUGGESTION_NAME = "courses";
+
+    private final ElasticsearchClient elasticsearchClient;
+    private final CourseIndexManager indexManager;
+
+    /**
+     * One suggestion: the matched text and the course it came from. A category suggestion
+     * names only the category; it is shared by many courses, so it carries no course id or title.
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public record CourseSuggestion(String text, String id, String title, String category) {
+
+        static CourseSuggestion ofCategory(String category) {
+            return new CourseSuggestion(category, null, null, category);
+        }
+    }
+
+    /**
+     * Completion inputs for a course: its title and its category.
+     */
+    public static Completion completionFor(CourseDocument course) {
+        List<String> input = new ArrayList<>(2);
+        if (StringUtils.hasText(course.getTitle())) {
+            input.add(course.getTitle());
+        }
+        if (StringUtils.hasText(course.getCategory())) {
+            input.add(course.getCategory());
+        }
+        return new Completion(input);
+    }
+
+    /**
+     * Whether a partial update changes a field the completion inputs are derived from.
+     */
+    static boolean affectsSuggest(Map<String, Object> fields) {
+        return fields.containsKey("title") || fields.containsKey("category");
+    }
+
+    /**
+     * The stored suggest value for a document source, computed like {@link #UPDATE_WITH_SUGGEST_SCRIPT}.
+     */
+    static Map<String, Object> suggestSourceFor(Map<String, Object> source) {
+        List<Object> input = new ArrayList<>(2);
+        if (source.get("title") != null) {
+            input.add(source.get("title"));
+        }
+        if (source.get("category") != null) {
+            input.add(source.get("category"));
+        }
+        return Map.of("input", input);
+    }
+
+    @SuppressWarnings("rawtypes")
+    public List<CourseSuggestion> suggest(String prefix, int size) {
+        if (!StringUtils.hasText(prefix)) {
+            throw new IllegalArgumentException("prefix must not be empty");
+        }
+        int limit = Math.min(Math.max(size, 1), MAX_SIZE);
+
+        SearchResponse<Map> response;
+        try {
+            response = elasticsearchClient.search(s -> s
+                            .index(indexManager.alias())
+                            // Only the suggester runs: no hits and no counting
+                            .size(0)
+                            .trackTotalHits(t -> t.enabled(false))
+                            .source(src -> src.filter(f -> f.includes("title", "category")))
+                            .suggest(sg -> sg.suggesters(SUGGESTION_NAME, fs -> fs
+                                    .prefix(prefix.trim())
+                                    .completion(c -> c
+                                            .field(SUGGEST_FIELD)
+                                            .size(limit)
+                                            .skipDuplicates(true)))),
+                    Map.class);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        List<CourseSuggestion> suggestions = new ArrayList<>(limit);
+        for (Suggestion<Map> suggestion : response.suggest().getOrDefault(SUGGESTION_NAME, List.of())) {
+            for (CompletionSuggestOption<Map> option : suggestion.completion().options()) {
+                Map source = option.source();
+                String title = source != null ? (String) source.get("title") : null;
+                String category = source != null ? (String) source.get("category") : null;
+                // The category input of whichever course Elasticsearch picked for it
+                if (!option.text().equals(title) && option.text().equals(category)) {
+                    suggestions.add(CourseSuggestion.ofCategory(category));
+                } else {
+                    suggestions.add(new CourseSuggestion(option.text(), option.id(), title, category));
+                }
+            }
+        }
+        return suggestions;
+    }
+}
@@ -2,74 +2,86 @@ package org.undoschool.coursesearch.service;
 
 import org.undoschool.coursesearch.document.CourseDocument;
 import org.undoschool.coursesearch.repository.CourseRepository;
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.boot.ApplicationRunner;
-import org.springframework.context.annotation.Bean;
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.stereotype.Service;
 import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
 import org.springframework.data.elasticsearch.core.IndexOperations;
-import org.springframework.data.elasticsearch.core.document.Document;
+import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
 
 import java.io.IOException;
-import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class DataLoaderService {
 
+    private static final String SAMPLE_DATA = "sample_courses.json";
+
     private final CourseRepository courseRepository;
-    private final ObjectMapper objectMapper;
+    private final CourseIndexManager indexManager;
     private final ElasticsearchOperations elasticsearchOperations;
 
-    @Bean
-    public ApplicationRunner loadSampleData() {
-        return args -> {
-            log.info("Starting sample data loading...");
-
-            try {
-                // Ensure index exists with mappings derived from entity
-                IndexOperations indexOps = elasticsearchOperations.indexOps(org.undoschool.coursesearch.document.CourseDocument.class);
-                if (!indexOps.exists()) {
-                    boolean created = indexOps.create();
-                    if (created) {
-                        Document mapping = indexOps.createMapping(org.undoschool.coursesearch.document.CourseDocument.class);
-                        indexOps.putMapping(mapping);
-                        log.info("Created Elasticsearch index 'courses' with mappings");
-                    } else {
-                        log.warn("Failed to create index 'courses' or it already exists");
-                    }
-                }
+    /**
+     * Loads the bundled sample data when the alias has no data yet. Called by
+     * {@link CatalogBootstrap} once the context has started.
+     *
+     * An index that already holds courses is never replaced here, even when it predates the
+     * current mapping and settings: it may hold production data and delta-synced edits. It is
+     * served as it is and a warning asks for an explicit rebuild through /api/admin/reindex.
+     */
+    public void loadSampleData() throws Exception {
+        log.info("Starting sample data loading...");
 
-                // Check if data already exists
-                long existingCount = courseRepository.count();
-                if (existingCount > 0) {
+        // The alias (or a legacy concrete index) already serves data: nothing to do
+        IndexOperations indexOps = elasticsearchOperations.indexOps(CourseDocument.class);
+        if (indexOps.exists()) {
+            long existingCount = courseRepository.count();
+            if (existingCount > 0) {
+                if (hasCurrentLayout()) {
                     log.info("Found {} existing courses, skipping data load", existingCount);
-                    return;
+                } else {
+                    log.warn("Found {} existing courses in an index that predates the current mapping and"
+                            + " settings; serving it as is. Suggestions, popularity and index sorting need"
+                            + " a rebuild: POST /api/admin/reindex", existingCount);
                 }
+                return;
+            }
+        }
 
-                // Load JSON file from classpath
-                ClassPathResource resource = new ClassPathResource("sample_courses.json");
-
-                // Parse JSON into Java objects
-                List<CourseDocument> courses = objectMapper.readValue(
-                        resource.getInputStream(),
-                        new TypeReference<List<CourseDocument>>() {}
-                );
+        CourseIndexManager.RebuildReport report = rebuildFromSampleData();
 
-                // Bulk save to Elasticsearch
-                List<CourseDocument> savedCourses = (List<CourseDocument>) courseRepository.saveAll(courses);
+        log.info("Successfully indexed {} courses into Elasticsearch index '{}'",
+                report.indexed(), report.index());
+    }
 
-                log.info("Successfully indexed {} courses into Elasticsearch", savedCourses.size());
+    /**
+     * Whether the index has the completion and popularity fields and index sorting; index
+     * sorting can only be added by creating a new index version.
+     *
+     * Read from the physical index behind the alias: the settings response is keyed by the
+     * physical name, and Spring Data looks it up by the name it was asked for, so settings read
+     * through the alias come back empty.
+     */
+    private boolean hasCurrentLayout() throws IOException {
+        Optional<String> current = indexManager.currentIndex();
+        IndexOperations indexOps = current.isPresent()
+                ? elasticsearchOperations.indexOps(IndexCoordinates.of(current.get()))
+                : elasticsearchOperations.indexOps(CourseDocument.class);
+        Object properties = indexOps.getMapping().get("properties");
+        boolean hasFields = properties instanceof Map<?, ?> fields
+                && fields.containsKey(CourseSuggestService.SUGGEST_FIELD)
+                && fields.containsKey("popularity");
+        return hasFields && indexOps.getSettings().flatten().containsKey("index.sort.field");
+    }
 
-            } catch (IOException e) {
-                log.error("Failed to load sample data: {}", e.getMessage(), e);
-                throw new RuntimeException("Could not initialize sample data", e);
-            }
-        };
+    /**
+     * Builds a new index version from the bundled sample file and swaps the alias to it.
+     */
+    public CourseIndexManager.RebuildReport rebuildFromSampleData() throws Exception {
+        return indexManager.rebuild(() -> new ClassPathResource(SAMPLE_DATA).getInputStream());
     }
-}
\ No newline at end of file
+}
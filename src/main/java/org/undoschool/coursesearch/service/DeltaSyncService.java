@@ -0,0 +1,281 @@
+package org.undoschool.coursesearch.service;
+
+import co.elastic.clients.elasticsearch._types.Refresh;
+import co.elastic.clients.elasticsearch.core.bulk.BulkOperation;
+import co.elastic.clients.json.JsonData;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+import org.undoschool.coursesearch.config.CourseSearchProperties;
+import org.undoschool.coursesearch.document.CourseDocument;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Applies incremental course changes without reindexing the catalog.
+ *
+ * Incoming changes are coalesced per course id: within one sync window only the net effect
+ * of all changes to an id is written. Full upserts replace the stored document except for its
+ * popularity, field-only changes are partial updates (dropped for a course the index does not
+ * have) and deletes are deletes, all in one bulk request per flush. Submitting never writes on the
+ * caller's thread; too many pending ids only schedule an early flush.
+ *
+ * While a rebuild loads a new index version, everything written to the served one is also kept
+ * in a journal, coalesced per id, and written again to the new version right after the alias
+ * swap, so those changes are not lost with the old version.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class DeltaSyncService {
+
+    // Fields a partial change may touch; the id is the key and cannot be changed
+    private static final Set<String> UPDATABLE_FIELDS = Set.of(
+            "title", "description", "category", "type", "gradeRange",
+            "minAge", "maxAge", "price", "nextSessionDate");
+
+    // Must match the pattern declared on CourseDocument.nextSessionDate
+    private static final DateTimeFormatter SESSION_DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss");
+
+    private final CourseBulkWriter bulkWriter;
+    private final CourseIndexManager indexManager;
+    private final ElasticsearchOperations elasticsearchOperations;
+    private final CourseSearchProperties properties;
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final ConcurrentHashMap<String, PendingChange> pending = new ConcurrentHashMap<>();
+    private final Object flushLock = new Object();
+    private final ExecutorService earlyFlushes = Executors.newSingleThreadExecutor(
+            Thread.ofVirtual().name("delta-sync-flush").factory());
+    private final AtomicBoolean earlyFlushQueued = new AtomicBoolean();
+    // Changes written since the running rebuild started; null while no rebuild runs. Guarded by flushLock
+    private Map<String, PendingChange> journal;
+
+    private enum Kind {
+        INDEX,      // full document replaces whatever is stored, popularity aside
+        UPDATE,     // partial document merged into the stored one
+        DELETE
+    }
+
+    private record PendingChange(Kind kind, Map<String, Object> source) {
+    }
+
+    /**
+     * Queues a batch of changes and returns how many distinct ids are now pending.
+     * Invalid changes reject the whole batch before anything is queued.
+     */
+    public int submit(List<CourseChange> changes) {
+        List<PendingChange> converted = new ArrayList<>(changes.size());
+        for (CourseChange change : changes) {
+            converted.add(toPending(change));
+        }
+
+        for (int i = 0; i < changes.size(); i++) {
+            pending.merge(changes.get(i).getId(), converted.get(i), DeltaSyncService::coalesce);
+        }
+
+        if (pending.size() >= properties.getSync().getMaxPending() && earlyFlushQueued.compareAndSet(false, true)) {
+            earlyFlushes.execute(() -> {
+                earlyFlushQueued.set(false);
+                flush();
+            });
+        }
+        return pending.size();
+    }
+
+    public int pendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * Writes everything pending as one bulk request. Runs once per sync window and whenever
+     * too many ids are pending. Operations that could not be sent are re-queued.
+     */
+    @Scheduled(fixedDelayString = "${coursesearch.sync.window:1s}")
+    public void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        synchronized (flushLock) {
+            String index = indexManager.alias();
+            Map<String, PendingChange> drained = new HashMap<>();
+            for (String id : pending.keySet()) {
+                PendingChange change = pending.remove(id);
+                if (change != null) {
+                    drained.put(id, change);
+                }
+            }
+            if (drained.isEmpty()) {
+                return;
+            }
+            if (write(index, drained, "Delta sync") && journal != null) {
+                drained.forEach((id, change) -> journal.merge(id, change, DeltaSyncService::coalesce));
+            }
+        }
+    }
+
+    /**
+     * Starts journaling when a rebuild starts and replays the journal onto the new version once
+     * the alias points to it. Runs on the rebuild's thread, before the rebuild returns.
+     */
+    @EventListener
+    public void onRebuild(CourseRebuildEvent event) {
+        synchronized (flushLock) {
+            switch (event.stage()) {
+                case STARTED -> journal = new HashMap<>();
+                case FAILED -> journal = null;
+                case SWAPPED -> {
+                    Map<String, PendingChange> replay = journal;
+                    journal = null;
+                    if (replay != null && !replay.isEmpty()) {
+                        write(event.index(), replay, "Replay onto " + event.index());
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the changes as one bulk request and returns whether it was sent. On failure the
+     * changes are re-queued for the next flush.
+     */
+    private boolean write(String index, Map<String, PendingChange> changes, String description) {
+        List<BulkOperation> operations = new ArrayList<>(changes.size());
+        changes.forEach((id, change) -> operations.add(toOperation(index, id, change)));
+
+        try {
+            // Wait until the changes are searchable so cached results are not rebuilt from stale hits
+            CourseBulkWriter.BulkOutcome outcome = bulkWriter.write(operations, Refresh.WaitFor);
+            log.info("{} applied {} changes ({} failed, {} dropped for unknown courses)",
+                    description, outcome.succeeded(), outcome.failed(), outcome.missing());
+            eventPublisher.publishEvent(new CourseIndexChangedEvent("delta-sync", Set.copyOf(changes.keySet())));
+            return true;
+        } catch (Exception e) {
+            log.error("{} failed, re-queueing {} changes: {}", description, changes.size(), e.getMessage());
+            // Anything that arrived meanwhile is newer and takes precedence
+            changes.forEach((id, change) -> pending.merge(id, change, (newer, failed) -> coalesce(failed, newer)));
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Net effect of an earlier change followed by a later one to the same id.
+     */
+    private static PendingChange coalesce(PendingChange earlier, PendingChange later) {
+        if (later.kind() != Kind.UPDATE) {
+            return later;
+        }
+        return switch (earlier.kind()) {
+            case INDEX, UPDATE -> {
+                Map<String, Object> merged = new HashMap<>(earlier.source());
+                merged.putAll(later.source());
+                // A full document carries its suggest input, which must follow a new title or category;
+                // merged partial updates get theirs from the update script
+                if (earlier.kind() == Kind.INDEX && CourseSuggestService.affectsSuggest(later.source())) {
+                    merged.put("suggest", CourseSuggestService.suggestSourceFor(merged));
+                }
+                yield new PendingChange(earlier.kind(), merged);
+            }
+            // A partial update cannot bring back a deleted course
+            case DELETE -> earlier;
+        };
+    }
+
+    private PendingChange toPending(CourseChange change) {
+        if (!StringUtils.hasText(change.getId())) {
+            throw new IllegalArgumentException("Every change needs an id");
+        }
+        if (change.getOp() == null) {
+            throw new IllegalArgumentException("Change for course " + change.getId() + " has no op");
+        }
+
+        if (change.getOp() == CourseChange.Op.DELETE) {
+            return new PendingChange(Kind.DELETE, Map.of());
+        }
+
+        CourseDocument course = change.getCourse();
+        if (course != null) {
+            if (course.getId() != null && !Objects.equals(course.getId(), change.getId())) {
+                throw new IllegalArgumentException("Course id " + course.getId() + " does not match change id " + change.getId());
+            }
+            course.setId(change.getId());
+            course.setSuggest(CourseSuggestService.completionFor(course));
+            return new PendingChange(Kind.INDEX, elasticsearchOperations.getElasticsearchConverter().mapObject(course));
+        }
+
+        if (change.getFields() == null || change.getFields().isEmpty()) {
+            throw new IllegalArgumentException("Upsert for course " + change.getId() + " has neither course nor fields");
+        }
+        Map<String, Object> fields = new HashMap<>();
+        change.getFields().forEach((field, value) -> fields.put(field, normalizeField(field, value)));
+        return new PendingChange(Kind.UPDATE, fields);
+    }
+
+    private static Object normalizeField(String field, Object value) {
+        if (!UPDATABLE_FIELDS.contains(field)) {
+            throw new IllegalArgumentException("Field '" + field + "' cannot be updated");
+        }
+        if ("nextSessionDate".equals(field) && value != null) {
+            try {
+                return SESSION_DATE_FORMAT.format(LocalDateTime.parse(value.toString()));
+            } catch (DateTimeParseException e) {
+                throw new IllegalArgumentException("nextSessionDate must be an ISO date-time: " + value);
+            }
+        }
+        if ("type".equals(field) && value != null) {
+            return CourseType.valueOf(value.toString()).name();
+        }
+        return value;
+    }
+
+    private static BulkOperation toOperation(String index, String id, PendingChange change) {
+        return switch (change.kind()) {
+            // A scripted upsert rather than an index operation, so the popularity counted so far survives
+            case INDEX -> BulkOperation.of(op -> op.update(u -> u.index(index).id(id)
+                    .retryOnConflict(3)
+                    .action(a -> a
+                            .scriptedUpsert(true)
+                            .upsert(Map.of())
+                            .script(s -> s
+                                    .source(CoursePopularityService.REPLACE_KEEPING_POPULARITY_SCRIPT)
+                                    .params("doc", JsonData.of(change.source()))))));
+            // Plain partial updates: fields alone cannot make a valid course, so a change for an id
+            // the index does not have is dropped (404) rather than creating one
+            case UPDATE -> CourseSuggestService.affectsSuggest(change.source())
+                    ? BulkOperation.of(op -> op.update(u -> u.index(index).id(id)
+                            .action(a -> a.script(s -> s
+                                    .source(CourseSuggestService.UPDATE_WITH_SUGGEST_SCRIPT)
+                                    .params("doc", JsonData.of(change.source()))))))
+                    : BulkOperation.of(op -> op.update(u -> u.index(index).id(id)
+                            .action(a -> a.doc(change.source()))));
+            case DELETE -> BulkOperation.of(op -> op.delete(d -> d.index(index).id(id)));
+        };
+    }
+
+    @PreDestroy
+    void shutdown() {
+        earlyFlushes.shutdownNow();
+    }
+}
@@ -0,0 +1,110 @@
+package org.undoschool.coursesearch.service;
+
+import co.elastic.clients.elasticsearch._types.aggregations.Aggregate;
+import co.elastic.clients.elasticsearch._types.aggregations.Aggregation;
+import co.elastic.clients.elasticsearch._types.aggregations.AggregationRange;
+import co.elastic.clients.elasticsearch._types.aggregations.Buckets;
+import co.elastic.clients.elasticsearch._types.aggregations.FiltersBucket;
+import co.elastic.clients.elasticsearch._types.query_dsl.Query;
+import co.elastic.clients.elasticsearch._types.query_dsl.QueryBuilders;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Facets the search API can count alongside the hits, with the aggregation each one runs
+ * and how its buckets are read back. Price and age use fixed bands that match the UI.
+ */
+public enum Facet {
+
+    CATEGORY("category"),
+    TYPE("type"),
+    PRICE("price"),
+    AGE("age"),
+    GRADE_RANGE("gradeRange");
+
+    private static final List<AggregationRange> PRICE_BANDS = List.of(
+            AggregationRange.of(r -> r.key("under-50").to(50.0)),
+            AggregationRange.of(r -> r.key("50-100").from(50.0).to(100.0)),
+            AggregationRange.of(r -> r.key("100-200").from(100.0).to(200.0)),
+            AggregationRange.of(r -> r.key("200-plus").from(200.0)));
+
+    // Age bands as [lowest, highest] age; a course counts in every band its age range overlaps
+    private static final Map<String, int[]> AGE_BANDS = ageBands();
+
+    private final String param;
+
+    Facet(String param) {
+        this.param = param;
+    }
+
+    /**
+     * Name used in the facets request parameter and as key in {@link SearchResult#getFacets()}.
+     */
+    public String param() {
+        return param;
+    }
+
+    public static Facet fromParam(String name) {
+        for (Facet facet : values()) {
+            if (facet.param.equalsIgnoreCase(name.trim())) {
+                return facet;
+            }
+        }
+        throw new IllegalArgumentException("Unknown facet '" + name + "', expected one of "
+                + List.of(values()).stream().map(Facet::param).toList());
+    }
+
+    /**
+     * The bucketing aggregation for this facet, without any filtering.
+     */
+    Aggregation aggregation() {
+        return switch (this) {
+            case CATEGORY -> terms("category", 50);
+            case TYPE -> terms("type", CourseType.values().length);
+            case GRADE_RANGE -> terms("gradeRange", 50);
+            case PRICE -> Aggregation.of(a -> a.range(r -> r.field("price").ranges(PRICE_BANDS)));
+            case AGE -> {
+                Map<String, Query> bands = new LinkedHashMap<>();
+                AGE_BANDS.forEach((key, band) -> bands.put(key, QueryBuilders.bool(b -> b
+                        .filter(QueryBuilders.range(r -> r.number(n -> n.field("maxAge").gte((double) band[0]))))
+                        .filter(QueryBuilders.range(r -> r.number(n -> n.field("minAge").lte((double) band[1])))))));
+                yield Aggregation.of(a -> a.filters(f -> f.filters(Buckets.of(b -> b.keyed(bands)))));
+            }
+        };
+    }
+
+    /**
+     * Reads the buckets of this facet's aggregation result, in display order.
+     */
+    List<FacetBucket> buckets(Aggregate aggregate) {
+        return switch (this) {
+            case CATEGORY, TYPE, GRADE_RANGE -> aggregate.sterms().buckets().array().stream()
+                    .map(b -> new FacetBucket(b.key().stringValue(), b.docCount()))
+                    .toList();
+            case PRICE -> aggregate.range().buckets().array().stream()
+                    .map(b -> new FacetBucket(b.key(), b.docCount()))
+                    .toList();
+            case AGE -> {
+                Map<String, FiltersBucket> keyed = aggregate.filters().buckets().keyed();
+                yield AGE_BANDS.keySet().stream()
+                        .map(key -> new FacetBucket(key, keyed.containsKey(key) ? keyed.get(key).docCount() : 0))
+                        .toList();
+            }
+        };
+    }
+
+    private static Aggregation terms(String field, int size) {
+        return Aggregation.of(a -> a.terms(t -> t.field(field).size(size)));
+    }
+
+    private static Map<String, int[]> ageBands() {
+        Map<String, int[]> bands = new LinkedHashMap<>();
+        bands.put("3-5", new int[]{3, 5});
+        bands.put("6-8", new int[]{6, 8});
+        bands.put("9-12", new int[]{9, 12});
+        bands.put("13-18", new int[]{13, 18});
+        return bands;
+    }
+}
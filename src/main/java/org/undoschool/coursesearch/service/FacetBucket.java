@@ -0,0 +1,7 @@
+package org.undoschool.coursesearch.service;
+
+/**
+ * One value of a facet and the number of matching courses that have it.
+ */
+public record FacetBucket(String key, long count) {
+}
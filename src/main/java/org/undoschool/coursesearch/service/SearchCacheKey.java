@@ -0,0 +1,55 @@
+package org.undoschool.coursesearch.service;
+
+import org.springframework.util.StringUtils;
+
+import java.time.LocalDateTime;
+import java.util.EnumSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Normalized form of a {@link SearchCriteria}: requests that Elasticsearch would answer
+ * identically map to equal keys. The text query is trimmed and lowercased (the analyzer
+ * lowercases anyway), defaults are applied, paging is clamped and sort names are canonical.
+ */
+public record SearchCacheKey(
+        String query,
+        String category,
+        CourseType type,
+        Integer minAge,
+        Integer maxAge,
+        Double minPrice,
+        Double maxPrice,
+        LocalDateTime startDate,
+        String sort,
+        int page,
+        int size,
+        boolean fuzzy,
+        Set<Facet> facets,
+        Set<String> fields) {
+
+    public static SearchCacheKey of(SearchCriteria criteria) {
+        String query = StringUtils.hasText(criteria.getQuery())
+                ? criteria.getQuery().trim().toLowerCase(Locale.ROOT)
+                : null;
+        String category = StringUtils.hasText(criteria.getCategory()) ? criteria.getCategory().trim() : null;
+
+        return new SearchCacheKey(
+                query,
+                category,
+                criteria.getType(),
+                criteria.getMinAge(),
+                criteria.getMaxAge(),
+                criteria.getMinPrice(),
+                criteria.getMaxPrice(),
+                criteria.getStartDate(),
+                CourseQueryCompiler.sortMode(criteria.getSort()),
+                Math.max(criteria.getPage(), 0),
+                Math.min(Math.max(criteria.getSize(), 1), CourseQueryCompiler.MAX_PAGE_SIZE),
+                query != null && criteria.isFuzzy(),
+                criteria.getFacets() == null || criteria.getFacets().isEmpty()
+                        ? Set.of()
+                        : EnumSet.copyOf(criteria.getFacets()),
+                criteria.getFields() == null ? null : Set.copyOf(criteria.getFields()));
+    }
+}
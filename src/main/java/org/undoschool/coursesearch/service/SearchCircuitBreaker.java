@@ -0,0 +1,161 @@
+package org.undoschool.coursesearch.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.undoschool.coursesearch.config.CourseSearchProperties;
+
+import java.util.Arrays;
+import java.util.function.Supplier;
+
+/**
+ * Circuit breaker around Elasticsearch searches.
+ *
+ * The outcomes of the last {@code window-size} searches are kept; once at least
+ * {@code minimum-calls} are recorded and the share of failures (errors and timeouts) reaches
+ * {@code failure-rate-threshold}, the breaker opens. While open, searches fail fast with a
+ * {@link SearchRejectedException} instead of waiting on a struggling cluster. After
+ * {@code open-duration} a single probe search is let through: success closes the breaker,
+ * failure keeps it open for another period. Rejections by the concurrency limit and invalid
+ * requests say nothing about the cluster and are not recorded.
+ */
+@Slf4j
+@Component
+public class SearchCircuitBreaker {
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN   // open period is over and one probe search is allowed
+    }
+
+    private final boolean enabled;
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final long openNanos;
+    private final Counter shortCircuited;
+
+    // Ring buffer of recent outcomes, true for a failure; guarded by this
+    private final boolean[] outcomes;
+    private int next;
+    private int recorded;
+    private int failures;
+    private State state = State.CLOSED;
+    private long openedAt;
+    private boolean probing;
+
+    public SearchCircuitBreaker(CourseSearchProperties properties, MeterRegistry meterRegistry) {
+        CourseSearchProperties.Breaker config = properties.getBreaker();
+        this.enabled = config.isEnabled();
+        this.outcomes = new boolean[config.getWindowSize()];
+        this.minimumCalls = Math.min(config.getMinimumCalls(), config.getWindowSize());
+        this.failureRateThreshold = config.getFailureRateThreshold();
+        this.openNanos = config.getOpenDuration().toNanos();
+        this.shortCircuited = meterRegistry.counter("search.breaker.rejected");
+        meterRegistry.gauge("search.breaker.open", this, breaker -> breaker.state() == State.CLOSED ? 0 : 1);
+    }
+
+    public <T> T execute(Supplier<T> search) {
+        if (!enabled) {
+            return search.get();
+        }
+        if (!tryAcquire()) {
+            shortCircuited.increment();
+            throw new SearchRejectedException("Search is temporarily unavailable, try again shortly");
+        }
+
+        T result;
+        try {
+            result = search.get();
+        } catch (IllegalArgumentException | SearchRejectedException e) {
+            release();
+            throw e;
+        } catch (RuntimeException | Error e) {
+            onFailure();
+            throw e;
+        }
+        onSuccess();
+        return result;
+    }
+
+    public synchronized State state() {
+        if (state == State.OPEN && System.nanoTime() - openedAt >= openNanos) {
+            return State.HALF_OPEN;
+        }
+        return state;
+    }
+
+    private synchronized boolean tryAcquire() {
+        return switch (state()) {
+            case CLOSED -> true;
+            case HALF_OPEN -> {
+                if (probing) {
+                    yield false;
+                }
+                state = State.HALF_OPEN;
+                probing = true;
+                yield true;
+            }
+            case OPEN -> false;
+        };
+    }
+
+    /**
+     * Gives back a probe that ended without telling whether the cluster recovered.
+     */
+    private synchronized void release() {
+        probing = false;
+    }
+
+    private synchronized void onSuccess() {
+        if (state == State.HALF_OPEN) {
+            log.info("Search circuit breaker closed, probe search succeeded");
+            reset(State.CLOSED);
+            return;
+        }
+        record(false);
+    }
+
+    private synchronized void onFailure() {
+        if (state == State.HALF_OPEN) {
+            log.warn("Search circuit breaker stays open, probe search failed");
+            open();
+            return;
+        }
+        record(true);
+        if (state == State.CLOSED && recorded >= minimumCalls && failures >= failureRateThreshold * recorded) {
+            log.warn("Search circuit breaker opened: {} of the last {} searches failed", failures, recorded);
+            open();
+        }
+    }
+
+    private void record(boolean failure) {
+        if (recorded == outcomes.length) {
+            if (outcomes[next]) {
+                failures--;
+            }
+        } else {
+            recorded++;
+        }
+        outcomes[next] = failure;
+        if (failure) {
+            failures++;
+        }
+        next = (next + 1) % outcomes.length;
+    }
+
+    private void open() {
+        reset(State.OPEN);
+        openedAt = System.nanoTime();
+    }
+
+    private void reset(State newState) {
+        state = newState;
+        probing = false;
+        next = 0;
+        recorded = 0;
+        failures = 0;
+        Arrays.fill(outcomes, false);
+    }
+}
@@ -0,0 +1,96 @@
+package org.undoschool.coursesearch.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.undoschool.coursesearch.config.CourseSearchProperties;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Single-flight layer for searches: while a search for a key is running, identical requests
+ * wait for its result instead of sending their own query.
+ *
+ * The first request for a key (the leader) runs the search on its own thread; requests that
+ * arrive before it finishes (followers) share its result or exception. Followers give up after
+ * {@code coursesearch.coalesce.timeout}. The "search.coalesce.requests" counter is tagged by
+ * role, so followers / (leaders + followers) is the coalescing ratio.
+ */
+@Slf4j
+@Component
+public class SearchCoalescer {
+
+    private final boolean enabled;
+    private final Duration timeout;
+    private final Counter leaders;
+    private final Counter followers;
+    private final Counter timeouts;
+
+    private final ConcurrentHashMap<SearchCacheKey, CompletableFuture<SearchResult>> inFlight = new ConcurrentHashMap<>();
+
+    public SearchCoalescer(CourseSearchProperties properties, MeterRegistry meterRegistry) {
+        this.enabled = properties.getCoalesce().isEnabled();
+        this.timeout = properties.getCoalesce().getTimeout();
+        this.leaders = meterRegistry.counter("search.coalesce.requests", "role", "leader");
+        this.followers = meterRegistry.counter("search.coalesce.requests", "role", "follower");
+        this.timeouts = meterRegistry.counter("search.coalesce.timeouts");
+    }
+
+    public SearchResult execute(SearchCacheKey key, Supplier<SearchResult> search) {
+        if (!enabled) {
+            return search.get();
+        }
+
+        CompletableFuture<SearchResult> flight = new CompletableFuture<>();
+        CompletableFuture<SearchResult> existing = inFlight.putIfAbsent(key, flight);
+        if (existing != null) {
+            followers.increment();
+            return await(key, existing);
+        }
+
+        leaders.increment();
+        try {
+            SearchResult result = search.get();
+            flight.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, flight);
+        }
+    }
+
+    /**
+     * Number of distinct searches currently running.
+     */
+    public int inFlightCount() {
+        return inFlight.size();
+    }
+
+    private SearchResult await(SearchCacheKey key, CompletableFuture<SearchResult> flight) {
+        try {
+            return flight.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            timeouts.increment();
+            log.warn("Gave up waiting {} ms for in-flight search {}", timeout.toMillis(), key);
+            throw new SearchTimeoutException("Search did not complete within " + timeout.toMillis() + " ms");
+        } catch (ExecutionException e) {
+            // Followers see the same failure as the leader
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SearchTimeoutException("Interrupted while waiting for an in-flight search");
+        }
+    }
+}
@@ -5,6 +5,7 @@ import lombok.Data;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.Set;
 
 /**
  * Search criteria - captures all possible search parameters.
@@ -25,10 +26,13 @@ public class SearchCriteria {
     private Double minPrice;        // Price range filters
     private Double maxPrice;
     private LocalDateTime startDate;    // Show courses on/after this date (changed to LocalDate)
-    private String sort;            // Sort option: upcoming, priceAsc, priceDesc
+    private String sort;            // Sort option: upcoming, priceAsc, priceDesc, relevance
     private int page;               // Pagination
     private int size;
     private boolean fuzzy;          // Enable fuzzy matching for typos
+    private String cursor;          // Opaque search_after cursor; "*" starts a new walk, null means offset paging
+    private Set<Facet> facets;      // Facet counts to return with the hits; null or empty for none
+    private Set<String> fields;     // _source fields to return per course; null for the full document
 
     // Default values helper method
     public static SearchCriteria withDefaults() {
@@ -0,0 +1,45 @@
+package org.undoschool.coursesearch.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Position of a cursor-paged search: the point-in-time to read from, the sort values
+ * of the last hit returned and the total computed on the first page.
+ *
+ * Clients only ever see the opaque, URL-safe string produced by {@link #encode()}.
+ */
+public record SearchCursor(String pit, List<Object> after, long total) {
+
+    /**
+     * Cursor value a client sends to start a new walk.
+     */
+    public static final String START = "*";
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    public String encode() {
+        try {
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(MAPPER.writeValueAsBytes(this));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not encode search cursor", e);
+        }
+    }
+
+    public static SearchCursor decode(String value) {
+        SearchCursor cursor;
+        try {
+            cursor = MAPPER.readValue(Base64.getUrlDecoder().decode(value), SearchCursor.class);
+        } catch (IOException | IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+        if (cursor.pit() == null || cursor.after() == null || cursor.after().isEmpty()) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+        return cursor;
+    }
+}
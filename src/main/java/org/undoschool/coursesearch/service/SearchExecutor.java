@@ -0,0 +1,155 @@
+package org.undoschool.coursesearch.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.undoschool.coursesearch.config.CourseSearchProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Runs Elasticsearch searches on virtual threads with a bound on concurrency and a deadline.
+ *
+ * Request threads are virtual as well (spring.threads.virtual.enabled), so blocking on the
+ * cluster no longer ties up a pooled platform thread. The limit here protects the cluster
+ * instead: at most {@code max-concurrent} searches run at once, a request waits up to
+ * {@code acquire-timeout} for a slot and is rejected otherwise, and a running search is
+ * abandoned after {@code timeout}. An abandoned search keeps its slot until it actually ends.
+ * Searches that are safe to repeat can be hedged against slow nodes with {@link #executeHedged}.
+ */
+@Slf4j
+@Component
+public class SearchExecutor {
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Semaphore permits;
+    private final Duration acquireTimeout;
+    private final Duration timeout;
+    private final Counter rejected;
+    private final Counter timedOut;
+    private final boolean hedge;
+    private final Duration hedgeDelay;
+    private final Counter hedges;
+
+    public SearchExecutor(CourseSearchProperties properties, MeterRegistry meterRegistry) {
+        CourseSearchProperties.Execution config = properties.getExecution();
+        this.permits = new Semaphore(config.getMaxConcurrent());
+        this.acquireTimeout = config.getAcquireTimeout();
+        this.timeout = config.getTimeout();
+        this.rejected = meterRegistry.counter("search.execution.rejected");
+        this.timedOut = meterRegistry.counter("search.execution.timeouts");
+        this.hedge = config.isHedge();
+        this.hedgeDelay = config.getHedgeDelay();
+        this.hedges = meterRegistry.counter("search.execution.hedges");
+        meterRegistry.gauge("search.execution.active", permits,
+                p -> config.getMaxConcurrent() - p.availablePermits());
+    }
+
+    public <T> T execute(Supplier<T> search) {
+        return run(search, false);
+    }
+
+    /**
+     * Like {@link #execute}, but when hedging is enabled and the search has not answered within
+     * {@code hedge-delay}, a second copy is started and the first answer wins. The client spreads
+     * requests over the configured nodes, so the copy usually lands on another node. Only for
+     * searches that are safe to send twice.
+     */
+    public <T> T executeHedged(Supplier<T> search) {
+        return run(search, hedge);
+    }
+
+    private <T> T run(Supplier<T> search, boolean hedged) {
+        try {
+            if (!permits.tryAcquire(acquireTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                rejected.increment();
+                throw new SearchRejectedException("Too many concurrent searches, try again shortly");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SearchRejectedException("Interrupted while waiting for a search slot");
+        }
+
+        long deadline = System.nanoTime() + timeout.toNanos();
+        CompletableFuture<T> result = new CompletableFuture<>();
+        AtomicInteger running = new AtomicInteger(1);
+        List<Future<?>> attempts = new ArrayList<>(2);
+        attempts.add(attempt(search, result, running));
+
+        try {
+            if (hedged) {
+                try {
+                    return result.get(hedgeDelay.toMillis(), TimeUnit.MILLISECONDS);
+                } catch (TimeoutException slow) {
+                    // Hedge only with a spare slot, so hedging never pushes past the concurrency limit
+                    if (permits.tryAcquire()) {
+                        hedges.increment();
+                        running.incrementAndGet();
+                        attempts.add(attempt(search, result, running));
+                    }
+                }
+            }
+            return result.get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            timedOut.increment();
+            log.warn("Search abandoned after {} ms", timeout.toMillis());
+            throw new SearchTimeoutException("Search did not complete within " + timeout.toMillis() + " ms");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SearchTimeoutException("Interrupted while waiting for a search");
+        } finally {
+            // Stops the losing copy of a hedged search, or a search past its deadline
+            attempts.forEach(attempt -> attempt.cancel(true));
+        }
+    }
+
+    /**
+     * Starts one copy of the search on a slot the caller has already acquired. A failure only
+     * decides the result once no other copy is still running.
+     */
+    private <T> Future<?> attempt(Supplier<T> search, CompletableFuture<T> result, AtomicInteger running) {
+        try {
+            return executor.submit(() -> {
+                try {
+                    result.complete(search.get());
+                } catch (RuntimeException | Error e) {
+                    if (running.decrementAndGet() == 0) {
+                        result.completeExceptionally(e);
+                    }
+                } finally {
+                    permits.release();
+                }
+            });
+        } catch (RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+}
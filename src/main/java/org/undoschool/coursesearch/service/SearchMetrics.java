@@ -0,0 +1,57 @@
+package org.undoschool.coursesearch.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.function.Supplier;
+
+/**
+ * Timers for the stages of a search, published with percentile histograms:
+ *
+ * - search.stage{stage=compile|es|map, tier, sort}: time spent in each stage
+ * - search.es.took{tier}: server-side time reported by Elasticsearch ("took")
+ * - search.es.client{request=search|msearch}: round trip observed by the client, including
+ *   transport, response parsing and entity mapping; the gap to "took" is what the cluster
+ *   does not see
+ * - search.execute{sort, tier}: a whole search, tagged by the tier whose hits were returned
+ *   (match, fuzzy, contains, cursor or none), or "columnar" when answered from memory
+ */
+@Component
+@RequiredArgsConstructor
+public class SearchMetrics {
+
+    private final MeterRegistry meterRegistry;
+
+    public <T> T stage(String stage, String tier, String sort, Supplier<T> work) {
+        return timer("search.stage", "stage", stage, "tier", tier, "sort", sort).record(work);
+    }
+
+    public <T> T roundTrip(String request, Supplier<T> work) {
+        return timer("search.es.client", "request", request).record(work);
+    }
+
+    public void took(String tier, @Nullable Duration took) {
+        if (took != null) {
+            timer("search.es.took", "tier", tier).record(took);
+        }
+    }
+
+    public Timer.Sample start() {
+        return Timer.start(meterRegistry);
+    }
+
+    public void executed(Timer.Sample sample, String sort, String tier) {
+        sample.stop(timer("search.execute", "sort", sort, "tier", tier));
+    }
+
+    private Timer timer(String name, String... tags) {
+        return Timer.builder(name)
+                .tags(tags)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,25 @@
+package org.undoschool.coursesearch.service;
+
+import java.util.function.Supplier;
+
+/**
+ * Result of one search in a batch, or the exception that search failed with.
+ */
+public record SearchOutcome(SearchResult result, RuntimeException error) {
+
+    public static SearchOutcome success(SearchResult result) {
+        return new SearchOutcome(result, null);
+    }
+
+    public static SearchOutcome failure(RuntimeException error) {
+        return new SearchOutcome(null, error);
+    }
+
+    static SearchOutcome of(Supplier<SearchResult> search) {
+        try {
+            return success(search.get());
+        } catch (RuntimeException e) {
+            return failure(e);
+        }
+    }
+}
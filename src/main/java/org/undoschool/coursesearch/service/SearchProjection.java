@@ -0,0 +1,98 @@
+package org.undoschool.coursesearch.service;
+
+import org.springframework.lang.Nullable;
+import org.springframework.util.StringUtils;
+import org.undoschool.coursesearch.document.CourseDocument;
+
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Resolves the fields a search returns per course, either from a named view or an explicit
+ * field list. The result is sent to Elasticsearch as _source includes, so omitted fields are
+ * neither transferred nor mapped; they are absent from the JSON response.
+ */
+public final class SearchProjection {
+
+    // Fields of CourseDocument that can be projected
+    private static final List<String> FIELDS = List.of(
+            "id", "title", "description", "category", "type", "gradeRange",
+            "minAge", "maxAge", "price", "nextSessionDate", "popularity");
+
+    private static final Map<String, Set<String>> VIEWS = Map.of(
+            "card", Set.of("id", "title", "price", "nextSessionDate"));
+
+    private SearchProjection() {
+    }
+
+    /**
+     * Fields to include, or null for the full document ("full" view or nothing requested).
+     */
+    @Nullable
+    public static Set<String> resolve(@Nullable String view, @Nullable Collection<String> fields) {
+        boolean hasFields = fields != null && fields.stream().anyMatch(StringUtils::hasText);
+        if (StringUtils.hasText(view) && hasFields) {
+            throw new IllegalArgumentException("Use either view or fields, not both");
+        }
+
+        if (hasFields) {
+            Set<String> included = new LinkedHashSet<>();
+            for (String value : fields) {
+                for (String field : value.split(",")) {
+                    if (!field.isBlank()) {
+                        included.add(field(field.trim()));
+                    }
+                }
+            }
+            // The id identifies the course in every projection
+            included.add("id");
+            return Set.copyOf(included);
+        }
+
+        if (!StringUtils.hasText(view) || "full".equalsIgnoreCase(view)) {
+            return null;
+        }
+        Set<String> viewFields = VIEWS.get(view.toLowerCase(Locale.ROOT));
+        if (viewFields == null) {
+            throw new IllegalArgumentException("Unknown view '" + view + "', expected card or full");
+        }
+        return viewFields;
+    }
+
+    /**
+     * Copy of the course with only the given fields set, for results not read from _source.
+     */
+    public static CourseDocument apply(CourseDocument course, Set<String> fields) {
+        CourseDocument.CourseDocumentBuilder projected = CourseDocument.builder();
+        for (String field : fields) {
+            switch (field) {
+                case "id" -> projected.id(course.getId());
+                case "title" -> projected.title(course.getTitle());
+                case "description" -> projected.description(course.getDescription());
+                case "category" -> projected.category(course.getCategory());
+                case "type" -> projected.type(course.getType());
+                case "gradeRange" -> projected.gradeRange(course.getGradeRange());
+                case "minAge" -> projected.minAge(course.getMinAge());
+                case "maxAge" -> projected.maxAge(course.getMaxAge());
+                case "price" -> projected.price(course.getPrice());
+                case "nextSessionDate" -> projected.nextSessionDate(course.getNextSessionDate());
+                case "popularity" -> projected.popularity(course.getPopularity());
+                default -> throw new IllegalArgumentException("Unknown field '" + field + "', expected one of " + FIELDS);
+            }
+        }
+        return projected.build();
+    }
+
+    private static String field(String name) {
+        for (String field : FIELDS) {
+            if (field.equalsIgnoreCase(name)) {
+                return field;
+            }
+        }
+        throw new IllegalArgumentException("Unknown field '" + name + "', expected one of " + FIELDS);
+    }
+}
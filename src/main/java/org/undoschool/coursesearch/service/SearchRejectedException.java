@@ -0,0 +1,12 @@
+package org.undoschool.coursesearch.service;
+
+/**
+ * A search was not started, because the service is already running as many searches as it allows
+ * or because the circuit breaker is open.
+ */
+public class SearchRejectedException extends RuntimeException {
+
+    public SearchRejectedException(String message) {
+        super(message);
+    }
+}
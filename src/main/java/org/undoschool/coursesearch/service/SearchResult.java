@@ -1,17 +1,31 @@
 package org.undoschool.coursesearch.service;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import org.undoschool.coursesearch.document.CourseDocument;
 import lombok.Builder;
 import lombok.Data;
 
 import java.util.List;
+import java.util.Map;
 
 /**
  * Search response - what we return to the API caller.
  */
 @Data
-@Builder
+@Builder(toBuilder = true)
 public class SearchResult {
-    private long total;                    // Total number of matching documents
+    private long total;                    // Total number of matching documents; a lower bound when approximate
+
+    @JsonInclude(JsonInclude.Include.NON_DEFAULT)
+    private boolean approximate;           // Counting stopped early (totals policy), there may be more matches
     private List<CourseDocument> courses;  // Current page of results
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String nextCursor;             // Cursor for the next page; null in offset mode or after the last page
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Map<String, List<FacetBucket>> facets;  // Counts per requested facet, each ignoring its own filter
+
+    @JsonInclude(JsonInclude.Include.NON_DEFAULT)
+    private boolean stale;                 // Last good result served while Elasticsearch is unavailable
 }
\ No newline at end of file
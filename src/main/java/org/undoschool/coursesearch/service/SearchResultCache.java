@@ -0,0 +1,124 @@
+package org.undoschool.coursesearch.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.undoschool.coursesearch.config.CourseSearchProperties;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Bounded in-process cache of search results keyed by {@link SearchCacheKey}.
+ *
+ * Entries are weighed by the number of courses they hold, expire after a TTL and are all
+ * dropped whenever the ingestion path changes the served index. Hit, miss and eviction
+ * counts are published to Micrometer as the "search.results" cache.
+ *
+ * Next to it, the last good result of each search is kept much longer and survives index
+ * changes. It is only read when a search fails, to answer with a result marked as stale rather
+ * than an error. Caffeine admits entries by how often their key is requested, so under memory
+ * pressure this keeps the popular searches.
+ */
+@Slf4j
+@Component
+public class SearchResultCache {
+
+    private final boolean enabled;
+    private final Cache<SearchCacheKey, SearchResult> cache;
+    private final Cache<SearchCacheKey, SearchResult> lastGood;
+    private final Counter staleServed;
+    // Bumped on every index change, so results searched before it are not cached after it
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public SearchResultCache(CourseSearchProperties properties, MeterRegistry meterRegistry) {
+        CourseSearchProperties.Cache config = properties.getCache();
+        this.enabled = config.isEnabled();
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(config.getMaxWeight())
+                .weigher((SearchCacheKey key, SearchResult result) -> 1 + result.getCourses().size())
+                .expireAfterWrite(config.getTtl())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "search.results");
+
+        this.lastGood = config.isStaleEnabled()
+                ? Caffeine.newBuilder()
+                        .maximumWeight(config.getStaleMaxWeight())
+                        .weigher((SearchCacheKey key, SearchResult result) -> 1 + result.getCourses().size())
+                        .expireAfterWrite(config.getStaleTtl())
+                        .build()
+                : null;
+        this.staleServed = meterRegistry.counter("search.results.stale");
+    }
+
+    /**
+     * Returns the cached result for the key, or runs the search and caches its result.
+     *
+     * The search runs outside the cache, so a slow search holds no cache lock and its
+     * exception reaches the caller unchanged. Concurrent misses on the same key are collapsed
+     * by {@link SearchCoalescer} in front of this call. The lookup here does not count towards
+     * the hit and miss statistics: callers check {@link #getIfPresent} first, which does. A
+     * result is not cached if the index changed while it was searched.
+     */
+    public SearchResult get(SearchCacheKey key, Supplier<SearchResult> search) {
+        if (!enabled) {
+            return remember(key, search.get());
+        }
+        SearchResult cached = cache.policy().getIfPresentQuietly(key);
+        if (cached != null) {
+            return cached;
+        }
+        long generation = invalidations.get();
+        SearchResult result = search.get();
+        if (invalidations.get() == generation) {
+            cache.put(key, result);
+        }
+        return remember(key, result);
+    }
+
+    /**
+     * Cached result for the key, without searching on a miss.
+     */
+    public SearchResult getIfPresent(SearchCacheKey key) {
+        return enabled ? cache.getIfPresent(key) : null;
+    }
+
+    public void put(SearchCacheKey key, SearchResult result) {
+        if (enabled) {
+            cache.put(key, result);
+        }
+        remember(key, result);
+    }
+
+    /**
+     * The last good result for the key, marked as stale, or null if there is none.
+     */
+    public SearchResult getStale(SearchCacheKey key) {
+        SearchResult result = lastGood != null ? lastGood.getIfPresent(key) : null;
+        if (result == null) {
+            return null;
+        }
+        staleServed.increment();
+        return result.toBuilder().stale(true).build();
+    }
+
+    private SearchResult remember(SearchCacheKey key, SearchResult result) {
+        if (lastGood != null) {
+            lastGood.put(key, result);
+        }
+        return result;
+    }
+
+    @EventListener
+    public void onIndexChanged(CourseIndexChangedEvent event) {
+        log.debug("Invalidating search result cache after {}", event.source());
+        invalidations.incrementAndGet();
+        cache.invalidateAll();
+    }
+}
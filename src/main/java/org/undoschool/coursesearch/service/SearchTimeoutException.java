@@ -0,0 +1,11 @@
+package org.undoschool.coursesearch.service;
+
+/**
+ * A search did not produce a result within its configured time budget.
+ */
+public class SearchTimeoutException extends RuntimeException {
+
+    public SearchTimeoutException(String message) {
+        super(message);
+    }
+}
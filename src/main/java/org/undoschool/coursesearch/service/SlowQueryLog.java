@@ -0,0 +1,219 @@
+package org.undoschool.coursesearch.service;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.FieldValue;
+import co.elastic.clients.elasticsearch._types.SortOptions;
+import co.elastic.clients.elasticsearch._types.SortOrder;
+import co.elastic.clients.elasticsearch.core.SearchRequest;
+import co.elastic.clients.elasticsearch.core.SearchResponse;
+import co.elastic.clients.json.JsonData;
+import co.elastic.clients.json.JsonpUtils;
+import com.fasterxml.jackson.annotation.JsonRawValue;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.elasticsearch.client.elc.NativeQuery;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.query.Query;
+import org.springframework.data.elasticsearch.core.query.SourceFilter;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+import org.undoschool.coursesearch.config.CourseSearchProperties;
+import org.undoschool.coursesearch.document.CourseDocument;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Keeps the most recent searches that took longer than {@code threshold}.
+ *
+ * Each entry holds the normalized criteria, the request body sent to Elasticsearch, the tier
+ * that answered and the client and server times. A sampled share of the entries is re-run
+ * once with {@code profile: true} in the background, and the profile is attached to the entry
+ * when it arrives; at most one profile runs at a time. Entries live in a fixed ring buffer, so
+ * old ones are overwritten. A search under the threshold costs one comparison.
+ */
+@Slf4j
+@Component
+public class SlowQueryLog {
+
+    /**
+     * One slow search. The request and profile are raw Elasticsearch JSON.
+     */
+    public record SlowQuery(Instant at, SearchCacheKey criteria, String tier, long elapsedMillis,
+                            @Nullable Long tookMillis, @JsonRawValue String request,
+                            @JsonRawValue @Nullable String profile) {
+
+        SlowQuery withProfile(String profile) {
+            return new SlowQuery(at, criteria, tier, elapsedMillis, tookMillis, request, profile);
+        }
+    }
+
+    private final ElasticsearchClient elasticsearchClient;
+    private final ElasticsearchOperations elasticsearchOperations;
+    private final CourseSearchProperties.SlowLog config;
+    private final long thresholdNanos;
+    private final Counter slowSearches;
+
+    private final AtomicReferenceArray<SlowQuery> entries;
+    private final AtomicLong recorded = new AtomicLong();
+    private final Semaphore profiling = new Semaphore(1);
+    private final ExecutorService profiles = Executors.newVirtualThreadPerTaskExecutor();
+
+    public SlowQueryLog(ElasticsearchClient elasticsearchClient, ElasticsearchOperations elasticsearchOperations,
+                        CourseSearchProperties properties, MeterRegistry meterRegistry) {
+        this.elasticsearchClient = elasticsearchClient;
+        this.elasticsearchOperations = elasticsearchOperations;
+        this.config = properties.getSlowLog();
+        this.thresholdNanos = config.getThreshold().toNanos();
+        this.entries = new AtomicReferenceArray<>(Math.max(config.getCapacity(), 1));
+        this.slowSearches = meterRegistry.counter("search.slow");
+    }
+
+    /**
+     * Records the search if it took at least the threshold.
+     */
+    public void record(SearchCriteria criteria, Query query, String tier, long elapsedNanos, @Nullable Duration took) {
+        if (!config.isEnabled() || elapsedNanos < thresholdNanos || !(query instanceof NativeQuery nativeQuery)) {
+            return;
+        }
+        slowSearches.increment();
+
+        String index = elasticsearchOperations.getIndexCoordinatesFor(CourseDocument.class).getIndexName();
+        SearchRequest request = toSearchRequest(nativeQuery, index, false);
+        SlowQuery entry = new SlowQuery(Instant.now(), SearchCacheKey.of(criteria), tier,
+                TimeUnit.NANOSECONDS.toMillis(elapsedNanos), took != null ? took.toMillis() : null,
+                JsonpUtils.toJsonString(request, elasticsearchClient._jsonpMapper()), null);
+        int slot = (int) (recorded.getAndIncrement() % entries.length());
+        entries.set(slot, entry);
+        log.warn("Slow search: {} ms (took {} ms, tier {}) for {}",
+                entry.elapsedMillis(), entry.tookMillis(), tier, entry.criteria());
+
+        if (ThreadLocalRandom.current().nextDouble() < config.getProfileSampleRate() && profiling.tryAcquire()) {
+            profiles.execute(() -> {
+                try {
+                    profile(slot, entry, toSearchRequest(nativeQuery, index, true));
+                } finally {
+                    profiling.release();
+                }
+            });
+        }
+    }
+
+    /**
+     * The recorded slow searches, newest first.
+     */
+    public List<SlowQuery> recent(int limit) {
+        long last = recorded.get();
+        int available = (int) Math.min(last, entries.length());
+        List<SlowQuery> recent = new ArrayList<>(Math.min(Math.max(limit, 0), available));
+        for (long i = last - 1; i >= last - available && recent.size() < limit; i--) {
+            SlowQuery entry = entries.get((int) (i % entries.length()));
+            if (entry != null) {
+                recent.add(entry);
+            }
+        }
+        return recent;
+    }
+
+    private void profile(int slot, SlowQuery entry, SearchRequest request) {
+        try {
+            SearchResponse<Void> response = elasticsearchClient.search(request, Void.class);
+            if (response.profile() != null) {
+                String profile = JsonpUtils.toJsonString(response.profile(), elasticsearchClient._jsonpMapper());
+                // Unless the entry has been overwritten meanwhile
+                entries.compareAndSet(slot, entry, entry.withProfile(profile));
+            }
+        } catch (Exception e) {
+            log.debug("Could not profile slow search {}: {}", entry.criteria(), e.getMessage());
+        }
+    }
+
+    /**
+     * The body Spring Data sends for the query, rebuilt with the Elasticsearch client so that it
+     * can be rendered and re-run with profiling: query, post_filter, aggregations, sort, paging,
+     * _source filtering and, for cursor pages, the point-in-time and search_after. A point-in-time
+     * request names no index.
+     */
+    static SearchRequest toSearchRequest(NativeQuery query, String index, boolean profile) {
+        List<SortOptions> sort = new ArrayList<>();
+        for (Sort.Order order : query.getSort()) {
+            SortOrder direction = order.isAscending() ? SortOrder.Asc : SortOrder.Desc;
+            sort.add("_score".equals(order.getProperty())
+                    ? SortOptions.of(o -> o.score(s -> s.order(direction)))
+                    : SortOptions.of(o -> o.field(f -> f.field(order.getProperty()).order(direction))));
+        }
+        Pageable pageable = query.getPageable();
+
+        return SearchRequest.of(s -> {
+            Query.PointInTime pointInTime = query.getPointInTime();
+            if (pointInTime != null) {
+                s.pit(p -> p.id(pointInTime.id()).keepAlive(k -> k.time(pointInTime.keepAlive().toMillis() + "ms")));
+            } else {
+                s.index(index);
+            }
+            s.query(query.getQuery())
+                    .sort(sort)
+                    .from((int) pageable.getOffset())
+                    .size(pageable.getPageSize())
+                    .profile(profile);
+            if (query.getFilter() != null) {
+                s.postFilter(query.getFilter());
+            }
+            if (!query.getAggregations().isEmpty()) {
+                s.aggregations(query.getAggregations());
+            }
+            if (query.getTrackTotalHits() != null) {
+                s.trackTotalHits(t -> t.enabled(query.getTrackTotalHits()));
+            } else if (query.getTrackTotalHitsUpTo() != null) {
+                s.trackTotalHits(t -> t.count(query.getTrackTotalHitsUpTo()));
+            }
+            SourceFilter sourceFilter = query.getSourceFilter();
+            if (sourceFilter != null) {
+                s.source(src -> src.filter(f -> {
+                    if (sourceFilter.getIncludes() != null) {
+                        f.includes(Arrays.asList(sourceFilter.getIncludes()));
+                    }
+                    if (sourceFilter.getExcludes() != null) {
+                        f.excludes(Arrays.asList(sourceFilter.getExcludes()));
+                    }
+                    return f;
+                }));
+            }
+            if (query.getSearchAfter() != null) {
+                s.searchAfter(query.getSearchAfter().stream().map(SlowQueryLog::toFieldValue).toList());
+            }
+            return s;
+        });
+    }
+
+    private static FieldValue toFieldValue(@Nullable Object value) {
+        return switch (value) {
+            case null -> FieldValue.NULL;
+            case String text -> FieldValue.of(text);
+            case Boolean bool -> FieldValue.of(bool);
+            case Long number -> FieldValue.of(number);
+            case Integer number -> FieldValue.of(number.longValue());
+            case Number number -> FieldValue.of(number.doubleValue());
+            default -> FieldValue.of(JsonData.of(value));
+        };
+    }
+
+    @PreDestroy
+    void shutdown() {
+        profiles.shutdownNow();
+    }
+}
@@ -17,7 +17,9 @@ import java.util.Map;
 import static org.assertj.core.api.Assertions.assertThat;
 
 @Import(TestcontainersConfiguration.class)
-@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+// Load the sample data before the tests run, as a blocking startup step
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+		properties = "coursesearch.bootstrap.async=false")
 class ApiIntegrationTests {
 
 	@LocalServerPort
@@ -0,0 +1,106 @@
+package org.undoschool.coursesearch;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.boot.actuate.health.Status;
+import org.undoschool.coursesearch.config.CourseSearchProperties;
+import org.undoschool.coursesearch.service.CatalogBootstrap;
+import org.undoschool.coursesearch.service.CourseSearchService;
+import org.undoschool.coursesearch.service.CourseType;
+import org.undoschool.coursesearch.service.DataLoaderService;
+import org.undoschool.coursesearch.service.Facet;
+import org.undoschool.coursesearch.service.SearchCriteria;
+import org.undoschool.coursesearch.service.SearchRejectedException;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CatalogBootstrapTests {
+
+    private final DataLoaderService dataLoader = mock(DataLoaderService.class);
+    private final CourseSearchService searchService = mock(CourseSearchService.class);
+    private final CourseSearchProperties properties = new CourseSearchProperties();
+
+    @Test
+    void readyOnlyOnceTheCatalogIsLoadedAndTheWarmUpHasRun() throws Exception {
+        properties.getBootstrap().setAsync(false);
+        properties.getBootstrap().setWarmQueries(List.of(warmQuery("priceAsc", null), warmQuery("upcoming", "club")));
+        properties.getBootstrap().getWarmQueries().get(1).setFacets(List.of("category", "type"));
+        CatalogBootstrap bootstrap = bootstrap();
+        assertThat(bootstrap.health().getStatus()).isEqualTo(Status.OUT_OF_SERVICE);
+
+        bootstrap.start();
+
+        verify(dataLoader).loadSampleData();
+        ArgumentCaptor<SearchCriteria> captor = ArgumentCaptor.forClass(SearchCriteria.class);
+        verify(searchService, times(2)).searchCourses(captor.capture());
+        assertThat(captor.getAllValues()).extracting(SearchCriteria::getSort).containsExactly("priceAsc", "upcoming");
+        assertThat(captor.getAllValues().get(1).getType()).isEqualTo(CourseType.CLUB);
+        assertThat(captor.getAllValues().get(1).getFacets()).containsExactlyInAnyOrder(Facet.CATEGORY, Facet.TYPE);
+        assertThat(bootstrap.health().getStatus()).isEqualTo(Status.UP);
+    }
+
+    @Test
+    void backgroundBootstrapRetriesUntilElasticsearchIsReachable() throws Exception {
+        properties.getBootstrap().setRetryBackoff(Duration.ofMillis(10));
+        doThrow(new IOException("connection refused"))
+                .doThrow(new IOException("connection refused"))
+                .doNothing()
+                .when(dataLoader).loadSampleData();
+        CatalogBootstrap bootstrap = bootstrap();
+
+        bootstrap.start();
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (bootstrap.phase() != CatalogBootstrap.Phase.READY && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(bootstrap.health().getStatus()).isEqualTo(Status.UP);
+        verify(dataLoader, times(3)).loadSampleData();
+    }
+
+    @Test
+    void failedWarmUpSearchesDoNotHoldBackReadiness() throws Exception {
+        properties.getBootstrap().setAsync(false);
+        properties.getBootstrap().setWarmQueries(List.of(warmQuery("priceAsc", null), warmQuery("priceDesc", null)));
+        when(searchService.searchCourses(any())).thenThrow(new SearchRejectedException("busy"));
+        CatalogBootstrap bootstrap = bootstrap();
+
+        bootstrap.start();
+
+        verify(searchService, times(2)).searchCourses(any());
+        assertThat(bootstrap.phase()).isEqualTo(CatalogBootstrap.Phase.READY);
+    }
+
+    @Test
+    void blockingBootstrapFailsStartup() throws Exception {
+        properties.getBootstrap().setAsync(false);
+        doThrow(new IOException("connection refused")).when(dataLoader).loadSampleData();
+
+        assertThatThrownBy(() -> bootstrap().start())
+                .hasMessage("Could not initialize sample data")
+                .hasCauseInstanceOf(IOException.class);
+    }
+
+    private CatalogBootstrap bootstrap() {
+        return new CatalogBootstrap(dataLoader, searchService, properties);
+    }
+
+    private static CourseSearchProperties.WarmQuery warmQuery(String sort, String type) {
+        CourseSearchProperties.WarmQuery warmQuery = new CourseSearchProperties.WarmQuery();
+        warmQuery.setSort(sort);
+        warmQuery.setType(type);
+        return warmQuery;
+    }
+}
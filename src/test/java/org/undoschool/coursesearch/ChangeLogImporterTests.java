@@ -0,0 +1,67 @@
+package org.undoschool.coursesearch;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.undoschool.coursesearch.config.CourseSearchProperties;
+import org.undoschool.coursesearch.service.ChangeLogImporter;
+import org.undoschool.coursesearch.service.CourseChange;
+import org.undoschool.coursesearch.service.DeltaSyncService;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+class ChangeLogImporterTests {
+
+    @TempDir
+    Path dir;
+
+    private final DeltaSyncService deltaSyncService = mock(DeltaSyncService.class);
+    private final CourseSearchProperties properties = new CourseSearchProperties();
+
+    @Test
+    void aFileWithABadLineIsNotAppliedAtAll() throws Exception {
+        // The bad line comes after more changes than the importer used to submit per chunk
+        String lines = IntStream.range(0, 1500)
+                .mapToObj(i -> "{\"op\":\"DELETE\",\"id\":\"" + i + "\"}")
+                .collect(Collectors.joining("\n")) + "\n{\"op\":";
+        Files.writeString(dir.resolve("001.ndjson"), lines);
+
+        importer().poll();
+
+        verify(deltaSyncService, never()).submit(any());
+        assertThat(dir.resolve("001.ndjson.failed")).exists();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void aValidFileIsSubmittedInOneCall() throws Exception {
+        Files.writeString(dir.resolve("001.ndjson"), """
+                {"op":"DELETE","id":"1"}
+
+                {"op":"UPSERT","id":"2","fields":{"price":10.0}}
+                """);
+
+        importer().poll();
+
+        ArgumentCaptor<List<CourseChange>> captor = ArgumentCaptor.forClass(List.class);
+        verify(deltaSyncService).submit(captor.capture());
+        assertThat(captor.getValue()).extracting(CourseChange::getId).containsExactly("1", "2");
+        assertThat(dir.resolve("001.ndjson.done")).exists();
+    }
+
+    private ChangeLogImporter importer() {
+        properties.getSync().setChangeLogDir(dir.toString());
+        return new ChangeLogImporter(deltaSyncService, new ObjectMapper(), properties);
+    }
+}
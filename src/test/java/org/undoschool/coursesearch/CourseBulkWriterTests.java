@@ -0,0 +1,113 @@
+package org.undoschool.coursesearch;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch.core.BulkRequest;
+import co.elastic.clients.elasticsearch.core.BulkResponse;
+import co.elastic.clients.elasticsearch.core.bulk.BulkOperation;
+import co.elastic.clients.elasticsearch.core.bulk.BulkResponseItem;
+import co.elastic.clients.elasticsearch.core.bulk.OperationType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.undoschool.coursesearch.config.CourseSearchProperties;
+import org.undoschool.coursesearch.service.CourseBulkWriter;
+import org.undoschool.coursesearch.service.CourseBulkWriter.BulkOutcome;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class CourseBulkWriterTests {
+
+    private final ElasticsearchClient elasticsearchClient = mock(ElasticsearchClient.class,
+            // The lambda overloads build the request and call the stubbed overloads below
+            Mockito.CALLS_REAL_METHODS);
+    private final CourseSearchProperties properties = new CourseSearchProperties();
+    private final CourseBulkWriter bulkWriter = new CourseBulkWriter(elasticsearchClient,
+            mock(ElasticsearchOperations.class), properties);
+
+    @BeforeEach
+    void setUp() {
+        properties.getIngest().setRetryBackoff(Duration.ofMillis(20));
+    }
+
+    @Test
+    void rejectedOperationsAreRetriedAloneAfterABackoff() throws Exception {
+        doReturn(response(ok("1"), status("2", 429), ok("3")))
+                .doReturn(response(ok("2")))
+                .when(elasticsearchClient).bulk(any(BulkRequest.class));
+
+        long started = System.nanoTime();
+        BulkOutcome outcome = bulkWriter.write(List.of(index("1"), index("2"), index("3")));
+
+        assertThat(outcome).isEqualTo(new BulkOutcome(3, 0, 0));
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started)).isGreaterThanOrEqualTo(20);
+        ArgumentCaptor<BulkRequest> requests = ArgumentCaptor.forClass(BulkRequest.class);
+        verify(elasticsearchClient, times(2)).bulk(requests.capture());
+        assertThat(requests.getAllValues().get(1).operations())
+                .singleElement()
+                .satisfies(op -> assertThat(op.index().id()).isEqualTo("2"));
+    }
+
+    @Test
+    void partialFailuresAreCountedWithoutRetrying() throws Exception {
+        doReturn(response(ok("1"), status("2", 400), missingUpdate("3")))
+                .when(elasticsearchClient).bulk(any(BulkRequest.class));
+
+        BulkOutcome outcome = bulkWriter.write(List.of(index("1"), index("2"), update("3")));
+
+        // A mapping error is permanent; an update of a course the index does not have is missing, not failed
+        assertThat(outcome).isEqualTo(new BulkOutcome(1, 1, 1));
+        verify(elasticsearchClient, times(1)).bulk(any(BulkRequest.class));
+    }
+
+    @Test
+    void operationsStillRejectedAfterTheLastRetryFail() throws Exception {
+        properties.getIngest().setMaxRetries(2);
+        doReturn(response(status("1", 503)))
+                .when(elasticsearchClient).bulk(any(BulkRequest.class));
+
+        BulkOutcome outcome = bulkWriter.write(List.of(index("1")));
+
+        assertThat(outcome).isEqualTo(new BulkOutcome(0, 1, 0));
+        verify(elasticsearchClient, times(3)).bulk(any(BulkRequest.class));
+    }
+
+    private static BulkOperation index(String id) {
+        return BulkOperation.of(op -> op.index(i -> i.index("courses").id(id).document(Map.of("id", id))));
+    }
+
+    private static BulkOperation update(String id) {
+        return BulkOperation.of(op -> op.update(u -> u.index("courses").id(id).action(a -> a.doc(Map.of("price", 1.0)))));
+    }
+
+    private static BulkResponse response(BulkResponseItem... items) {
+        boolean errors = List.of(items).stream().anyMatch(item -> item.error() != null);
+        return BulkResponse.of(r -> r.errors(errors).took(1).items(List.of(items)));
+    }
+
+    private static BulkResponseItem ok(String id) {
+        return BulkResponseItem.of(i -> i.operationType(OperationType.Index).index("courses").id(id).status(201));
+    }
+
+    private static BulkResponseItem status(String id, int status) {
+        return BulkResponseItem.of(i -> i.operationType(OperationType.Index).index("courses").id(id).status(status)
+                .error(e -> e.type(status == 400 ? "mapper_parsing_exception" : "es_rejected_execution_exception")
+                        .reason("status " + status)));
+    }
+
+    private static BulkResponseItem missingUpdate(String id) {
+        return BulkResponseItem.of(i -> i.operationType(OperationType.Update).index("courses").id(id).status(404)
+                .error(e -> e.type("document_missing_exception").reason("document missing")));
+    }
+}
@@ -0,0 +1,132 @@
+package org.undoschool.coursesearch;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.MultiGetItem;
+import org.springframework.data.elasticsearch.core.SearchHit;
+import org.springframework.data.elasticsearch.core.SearchHits;
+import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
+import org.springframework.data.elasticsearch.core.query.Query;
+import org.undoschool.coursesearch.config.CourseSearchProperties;
+import org.undoschool.coursesearch.document.CourseDocument;
+import org.undoschool.coursesearch.service.CourseColumnarIndex;
+import org.undoschool.coursesearch.service.CourseIndexChangedEvent;
+import org.undoschool.coursesearch.service.CourseQueryCompiler;
+import org.undoschool.coursesearch.service.SearchCriteria;
+import org.undoschool.coursesearch.service.SearchResult;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CourseColumnarIndexTests {
+
+    private static final IndexCoordinates ALIAS = IndexCoordinates.of("courses");
+
+    private final ElasticsearchOperations operations = mock(ElasticsearchOperations.class);
+    private final CourseSearchProperties properties = new CourseSearchProperties();
+    private CourseColumnarIndex index;
+
+    @Test
+    void deltaSyncsAreAppliedWithoutReloadingTheCatalog() throws Exception {
+        index = columnarIndex(List.of(course("c1", 10.0), course("c2", 20.0), course("c3", 30.0)));
+        awaitResult(criteria(10), result -> result.getTotal() == 3);
+        // c1 gets cheaper, c2 is deleted, c4 is new
+        when(operations.multiGet(any(Query.class), eq(CourseDocument.class), eq(ALIAS))).thenAnswer(invocation -> {
+            Collection<String> ids = ((Query) invocation.getArgument(0)).getIds();
+            List<MultiGetItem<CourseDocument>> items = new ArrayList<>();
+            for (String id : ids) {
+                items.add(MultiGetItem.of(switch (id) {
+                    case "c1" -> course("c1", 5.0);
+                    case "c4" -> course("c4", 40.0);
+                    default -> null;
+                }, null));
+            }
+            return items;
+        });
+
+        index.onIndexChanged(new CourseIndexChangedEvent("delta-sync", Set.of("c1", "c2", "c4")));
+
+        SearchResult result = awaitResult(criteria(10), updated -> updated.getTotal() == 3
+                && updated.getCourses().get(0).getPrice() == 5.0);
+        assertThat(result.getCourses()).extracting(CourseDocument::getId).containsExactly("c1", "c3", "c4");
+        verify(operations, times(1)).openPointInTime(any(), any());
+    }
+
+    @Test
+    void totalsFollowTheConfiguredPolicy() throws Exception {
+        properties.getTotals().setThreshold(2);
+        index = columnarIndex(List.of(course("c1", 10.0), course("c2", 20.0), course("c3", 30.0)));
+
+        SearchResult capped = awaitResult(criteria(10), result -> true);
+        assertThat(capped.getTotal()).isEqualTo(2);
+        assertThat(capped.isApproximate()).isTrue();
+
+        properties.getTotals().setPolicy(CourseSearchProperties.Totals.Policy.NONE);
+        SearchResult uncounted = index.search(criteria(2));
+        assertThat(uncounted.getTotal()).isEqualTo(2);
+        assertThat(uncounted.isApproximate()).isTrue();
+
+        properties.getTotals().setPolicy(CourseSearchProperties.Totals.Policy.EXACT);
+        SearchResult exact = index.search(criteria(10));
+        assertThat(exact.getTotal()).isEqualTo(3);
+        assertThat(exact.isApproximate()).isFalse();
+    }
+
+    private CourseColumnarIndex columnarIndex(List<CourseDocument> catalog) {
+        properties.getColumnar().setEnabled(true);
+        List<SearchHit<CourseDocument>> hits = catalog.stream().map(CourseColumnarIndexTests::hit).toList();
+        @SuppressWarnings("unchecked")
+        SearchHits<CourseDocument> searchHits = mock(SearchHits.class);
+        when(searchHits.getSearchHits()).thenReturn(hits);
+        when(operations.getIndexCoordinatesFor(CourseDocument.class)).thenReturn(ALIAS);
+        when(operations.openPointInTime(any(IndexCoordinates.class), any(Duration.class))).thenReturn("pit");
+        when(operations.search(any(Query.class), eq(CourseDocument.class))).thenReturn(searchHits);
+        when(operations.closePointInTime(anyString())).thenReturn(true);
+
+        CourseColumnarIndex columnarIndex = new CourseColumnarIndex(operations, new CourseQueryCompiler(properties), properties);
+        columnarIndex.onReady();
+        return columnarIndex;
+    }
+
+    private SearchResult awaitResult(SearchCriteria criteria, Predicate<SearchResult> condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (System.nanoTime() < deadline) {
+            SearchResult result = index.search(criteria);
+            if (result != null && condition.test(result)) {
+                return result;
+            }
+            Thread.sleep(10);
+        }
+        throw new AssertionError("Columnar index did not reach the expected state");
+    }
+
+    private static SearchCriteria criteria(int size) {
+        return SearchCriteria.builder().sort("priceAsc").page(0).size(size).build();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static SearchHit<CourseDocument> hit(CourseDocument course) {
+        SearchHit<CourseDocument> hit = mock(SearchHit.class);
+        when(hit.getId()).thenReturn(course.getId());
+        when(hit.getContent()).thenReturn(course);
+        return hit;
+    }
+
+    private static CourseDocument course(String id, Double price) {
+        return CourseDocument.builder().id(id).title("Course " + id).price(price).build();
+    }
+}
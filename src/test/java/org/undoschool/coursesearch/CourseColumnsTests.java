@@ -0,0 +1,106 @@
+package org.undoschool.coursesearch;
+
+import org.junit.jupiter.api.Test;
+import org.undoschool.coursesearch.document.CourseDocument;
+import org.undoschool.coursesearch.service.CourseColumns;
+import org.undoschool.coursesearch.service.CourseType;
+import org.undoschool.coursesearch.service.SearchCriteria;
+import org.undoschool.coursesearch.service.SearchResult;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CourseColumnsTests {
+
+    private static final LocalDateTime SEPTEMBER = LocalDateTime.of(2025, 9, 1, 10, 0);
+
+    private final CourseColumns columns = CourseColumns.of(List.of(
+            course("c1", "Art", "CLUB", 50.0, 6, 9, SEPTEMBER.plusDays(3)),
+            course("c2", "Art", "COURSE", 20.0, 8, 12, SEPTEMBER.plusDays(1)),
+            course("c3", "Music", "CLUB", 80.0, 10, 14, SEPTEMBER.plusDays(2)),
+            course("c4", "Art", "CLUB", null, 7, 10, null),
+            course("c5", null, "ONE_TIME", 20.0, null, null, SEPTEMBER)));
+
+    @Test
+    void filtersFollowTheQuerySemantics() {
+        assertThat(ids(criteria().category("Art").build())).containsExactly("c2", "c1", "c4");
+        assertThat(ids(criteria().category("Art").type(CourseType.CLUB).build())).containsExactly("c1", "c4");
+        assertThat(ids(criteria().category("Science").build())).isEmpty();
+        // Inclusive bounds; a course without a price never matches a price filter
+        assertThat(ids(criteria().minPrice(20.0).maxPrice(50.0).build())).containsExactly("c5", "c2", "c1");
+        // Age ranges overlap; a course without ages never matches an age filter
+        assertThat(ids(criteria().minAge(10).maxAge(11).build())).containsExactly("c2", "c3", "c4");
+        assertThat(ids(criteria().startDate(SEPTEMBER.plusDays(2)).build())).containsExactly("c3", "c1");
+    }
+
+    @Test
+    void sortsPutMissingValuesLastAndBreakTiesById() {
+        assertThat(ids(criteria().build())).containsExactly("c5", "c2", "c3", "c1", "c4");
+        assertThat(ids(criteria().sort("priceAsc").build())).containsExactly("c2", "c5", "c1", "c3", "c4");
+        assertThat(ids(criteria().sort("priceDesc").build())).containsExactly("c3", "c1", "c2", "c5", "c4");
+        assertThat(ids(criteria().sort("priceDesc").minPrice(20.0).maxPrice(50.0).type(CourseType.COURSE).build()))
+                .containsExactly("c2");
+    }
+
+    @Test
+    void pagesAreCutFromTheCountedMatches() {
+        SearchResult second = columns.search(criteria().page(1).build(), 2);
+
+        assertThat(second.getTotal()).isEqualTo(5);
+        assertThat(second.getCourses()).extracting(CourseDocument::getId).containsExactly("c3", "c1");
+        assertThat(columns.search(criteria().page(3).build(), 2).getCourses()).isEmpty();
+    }
+
+    @Test
+    void scanCrossesWordBoundaries() {
+        List<CourseDocument> catalog = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            catalog.add(course("id%03d".formatted(i), i % 3 == 0 ? "Art" : "Music", "CLUB", (double) i, 5, 10,
+                    SEPTEMBER.plusMinutes(i)));
+        }
+        CourseColumns large = CourseColumns.of(catalog);
+
+        SearchResult art = large.search(criteria().category("Art").page(20).build(), 3);
+        assertThat(art.getTotal()).isEqualTo(67);
+        assertThat(art.getCourses()).extracting(CourseDocument::getId).containsExactly("id180", "id183", "id186");
+
+        SearchResult slice = large.search(criteria().sort("priceAsc").minPrice(60.0).maxPrice(130.0).minAge(6).build(), 100);
+        assertThat(slice.getTotal()).isEqualTo(71);
+        assertThat(slice.getCourses().get(70).getId()).isEqualTo("id130");
+    }
+
+    @Test
+    void projectionKeepsOnlyTheRequestedFields() {
+        CourseDocument first = columns.search(criteria().fields(Set.of("id", "title")).build(), 1).getCourses().get(0);
+
+        assertThat(first.getId()).isEqualTo("c5");
+        assertThat(first.getTitle()).isEqualTo("Course c5");
+        assertThat(first.getPrice()).isNull();
+    }
+
+    private List<String> ids(SearchCriteria criteria) {
+        return columns.search(criteria, 10).getCourses().stream().map(CourseDocument::getId).toList();
+    }
+
+    private static SearchCriteria.SearchCriteriaBuilder criteria() {
+        return SearchCriteria.builder().page(0);
+    }
+
+    private static CourseDocument course(String id, String category, String type, Double price,
+                                         Integer minAge, Integer maxAge, LocalDateTime session) {
+        return CourseDocument.builder()
+                .id(id)
+                .title("Course " + id)
+                .category(category)
+                .type(type)
+                .price(price)
+                .minAge(minAge)
+                .maxAge(maxAge)
+                .nextSessionDate(session)
+                .build();
+    }
+}
@@ -0,0 +1,150 @@
+package org.undoschool.coursesearch;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.boot.test.system.CapturedOutput;
+import org.springframework.boot.test.system.OutputCaptureExtension;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.SearchHit;
+import org.springframework.data.elasticsearch.core.SearchHits;
+import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
+import org.springframework.data.elasticsearch.core.query.Query;
+import org.undoschool.coursesearch.config.CourseSearchProperties;
+import org.undoschool.coursesearch.document.CourseDocument;
+import org.undoschool.coursesearch.service.CourseExportService;
+import org.undoschool.coursesearch.service.CourseQueryCompiler;
+import org.undoschool.coursesearch.service.CourseSearchService;
+import org.undoschool.coursesearch.service.SearchCircuitBreaker;
+import org.undoschool.coursesearch.service.SearchCriteria;
+import org.undoschool.coursesearch.service.SearchExecutor;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(OutputCaptureExtension.class)
+class CourseExportServiceTests {
+
+    private final CourseSearchProperties properties = new CourseSearchProperties();
+    private final ElasticsearchOperations elasticsearchOperations = mock(ElasticsearchOperations.class);
+    private final CourseSearchService searchService = mock(CourseSearchService.class);
+    private final SearchExecutor searchExecutor = spy(new SearchExecutor(properties, new SimpleMeterRegistry()));
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    private final CourseExportService exportService = new CourseExportService(elasticsearchOperations,
+            new CourseQueryCompiler(properties), objectMapper, properties, searchService,
+            searchExecutor, new SearchCircuitBreaker(properties, new SimpleMeterRegistry()));
+
+    @Test
+    void batchesRunThroughTheExecutorAndAreFlushedOncePerBatch() throws Exception {
+        properties.getExport().setBatchSize(2);
+        SearchHits<CourseDocument> first = page("1", "2");
+        SearchHits<CourseDocument> last = page("3");
+        when(elasticsearchOperations.search(any(Query.class), eq(CourseDocument.class))).thenReturn(first, last);
+        FlushCountingStream out = new FlushCountingStream();
+
+        long written = exportService.export(SearchCriteria.withDefaults(), out);
+
+        assertThat(written).isEqualTo(3);
+        // Exactly one JSON document per line, without a separator space before the next one
+        assertThat(out.toString(StandardCharsets.UTF_8)).isEqualTo(ndjson("1", "2", "3"));
+        // Once per batch and once when the generator is closed, not once per course
+        assertThat(out.flushes).isEqualTo(3);
+        // Opening the point-in-time and both pages
+        verify(searchExecutor, times(3)).execute(any());
+        verify(elasticsearchOperations).closePointInTime("pit");
+    }
+
+    @Test
+    void onlyCoursesBeyondTheLimitAreCutOff(CapturedOutput output) throws Exception {
+        properties.getExport().setBatchSize(10);
+        properties.getExport().setMaxCourses(2);
+        SearchHits<CourseDocument> exactlyTheLimit = page("1", "2");
+        when(elasticsearchOperations.search(any(Query.class), eq(CourseDocument.class))).thenReturn(exactlyTheLimit);
+
+        assertThat(exportService.export(SearchCriteria.withDefaults(), new ByteArrayOutputStream())).isEqualTo(2);
+        assertThat(output).doesNotContain("cut off");
+
+        SearchHits<CourseDocument> overTheLimit = page("1", "2", "3");
+        when(elasticsearchOperations.search(any(Query.class), eq(CourseDocument.class))).thenReturn(overTheLimit);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        assertThat(exportService.export(SearchCriteria.withDefaults(), out)).isEqualTo(2);
+        assertThat(out.toString(StandardCharsets.UTF_8)).isEqualTo(ndjson("1", "2"));
+        assertThat(output).contains("Export cut off at the limit of 2 courses");
+    }
+
+    @Test
+    void exportsAreUnlimitedByDefault() {
+        exportService.checkSize(SearchCriteria.withDefaults());
+
+        verify(searchService, never()).countCourses(any());
+    }
+
+    @Test
+    void exportsOverTheLimitAreRejected() {
+        properties.getExport().setMaxCourses(1000);
+        when(searchService.countCourses(any())).thenReturn(1001L);
+
+        assertThatThrownBy(() -> exportService.checkSize(SearchCriteria.withDefaults()))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("more than the limit of 1000");
+    }
+
+    @BeforeEach
+    void setUp() {
+        when(elasticsearchOperations.getIndexCoordinatesFor(CourseDocument.class)).thenReturn(IndexCoordinates.of("courses"));
+        when(elasticsearchOperations.openPointInTime(any(IndexCoordinates.class), any(Duration.class))).thenReturn("pit");
+        when(elasticsearchOperations.closePointInTime(anyString())).thenReturn(true);
+    }
+
+    private String ndjson(String... ids) throws Exception {
+        StringBuilder lines = new StringBuilder();
+        for (String id : ids) {
+            lines.append(objectMapper.writeValueAsString(course(id))).append('\n');
+        }
+        return lines.toString();
+    }
+
+    private static CourseDocument course(String id) {
+        return CourseDocument.builder().id(id).title("Course " + id).build();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static SearchHits<CourseDocument> page(String... ids) {
+        List<SearchHit<CourseDocument>> hits = IntStream.range(0, ids.length).mapToObj(i -> {
+            SearchHit<CourseDocument> hit = mock(SearchHit.class);
+            when(hit.getContent()).thenReturn(course(ids[i]));
+            when(hit.getSortValues()).thenReturn(List.of(ids[i]));
+            return hit;
+        }).toList();
+        SearchHits<CourseDocument> searchHits = mock(SearchHits.class);
+        when(searchHits.getSearchHits()).thenReturn(hits);
+        return searchHits;
+    }
+
+    private static final class FlushCountingStream extends ByteArrayOutputStream {
+        private int flushes;
+
+        @Override
+        public void flush() {
+            flushes++;
+        }
+    }
+}
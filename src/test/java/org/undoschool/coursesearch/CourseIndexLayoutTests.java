@@ -0,0 +1,46 @@
+package org.undoschool.coursesearch;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.elasticsearch.annotations.Setting;
+import org.springframework.data.elasticsearch.client.ClientConfiguration;
+import org.springframework.data.elasticsearch.client.elc.ElasticsearchClients;
+import org.springframework.data.elasticsearch.client.elc.ElasticsearchTemplate;
+import org.springframework.data.elasticsearch.core.IndexOperations;
+import org.springframework.data.elasticsearch.core.document.Document;
+import org.springframework.data.elasticsearch.core.index.Settings;
+import org.undoschool.coursesearch.document.CourseDocument;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks the settings and mapping derived from {@link CourseDocument}; nothing is sent to Elasticsearch.
+ */
+class CourseIndexLayoutTests {
+
+    private final IndexOperations indexOps = new ElasticsearchTemplate(
+            ElasticsearchClients.createImperative(ClientConfiguration.create("localhost:9200")))
+            .indexOps(CourseDocument.class);
+
+    @Test
+    void indexIsSortedInUpcomingOrder() {
+        Settings settings = indexOps.createSettings(CourseDocument.class).flatten();
+
+        assertThat((String[]) settings.get("index.sort.field")).containsExactly("nextSessionDate", "id");
+        assertThat((Setting.SortOrder[]) settings.get("index.sort.order"))
+                .containsExactly(Setting.SortOrder.asc, Setting.SortOrder.asc);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void facetKeywordsLoadGlobalOrdinalsEagerly() {
+        Document mapping = indexOps.createMapping(CourseDocument.class);
+        Map<String, Map<String, Object>> properties = (Map<String, Map<String, Object>>) mapping.get("properties");
+
+        assertThat(properties.get("category")).containsEntry("eager_global_ordinals", true);
+        assertThat(properties.get("type")).containsEntry("eager_global_ordinals", true);
+        assertThat(properties.get("gradeRange")).containsEntry("index", false);
+        assertThat(properties.get("title")).doesNotContainKey("index");
+    }
+}
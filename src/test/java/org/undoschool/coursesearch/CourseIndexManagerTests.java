@@ -0,0 +1,86 @@
+package org.undoschool.coursesearch;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch.indices.ElasticsearchIndicesClient;
+import co.elastic.clients.elasticsearch.indices.ExistsAliasRequest;
+import co.elastic.clients.elasticsearch.indices.GetIndexRequest;
+import co.elastic.clients.elasticsearch.indices.GetIndexResponse;
+import co.elastic.clients.elasticsearch.indices.UpdateAliasesRequest;
+import co.elastic.clients.transport.endpoints.BooleanResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.IndexOperations;
+import org.springframework.data.elasticsearch.core.document.Document;
+import org.springframework.data.elasticsearch.core.index.Settings;
+import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
+import org.undoschool.coursesearch.config.CourseSearchProperties;
+import org.undoschool.coursesearch.document.CourseDocument;
+import org.undoschool.coursesearch.service.CourseIndexManager;
+import org.undoschool.coursesearch.service.CourseIngestionPipeline;
+import org.undoschool.coursesearch.service.CourseIngestionPipeline.IngestionReport;
+import org.undoschool.coursesearch.service.CourseQueryCompiler;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CourseIndexManagerTests {
+
+    private final ElasticsearchOperations elasticsearchOperations = mock(ElasticsearchOperations.class);
+    private final ElasticsearchClient elasticsearchClient = mock(ElasticsearchClient.class);
+    private final ElasticsearchIndicesClient indices = mock(ElasticsearchIndicesClient.class,
+            // The lambda overloads build the request and call the stubbed overloads below
+            Mockito.CALLS_REAL_METHODS);
+    private final CourseIngestionPipeline ingestionPipeline = mock(CourseIngestionPipeline.class);
+    private final ApplicationEventPublisher eventPublisher = mock(ApplicationEventPublisher.class);
+    private final IndexOperations newVersion = mock(IndexOperations.class);
+    private final CourseIndexManager indexManager = new CourseIndexManager(elasticsearchOperations,
+            elasticsearchClient, ingestionPipeline, new CourseQueryCompiler(), new CourseSearchProperties(), eventPublisher);
+
+    @BeforeEach
+    void setUp() throws Exception {
+        when(elasticsearchOperations.getIndexCoordinatesFor(CourseDocument.class)).thenReturn(IndexCoordinates.of("courses"));
+        when(elasticsearchOperations.indexOps(IndexCoordinates.of("courses_v1"))).thenReturn(newVersion);
+        when(newVersion.createSettings(CourseDocument.class)).thenReturn(new Settings());
+        when(newVersion.createMapping(CourseDocument.class)).thenReturn(Document.create());
+        when(elasticsearchClient.indices()).thenReturn(indices);
+        doReturn(new BooleanResponse(false)).when(indices).existsAlias(any(ExistsAliasRequest.class));
+        doReturn(GetIndexResponse.of(g -> g.result(Map.of()))).when(indices).get(any(GetIndexRequest.class));
+    }
+
+    @Test
+    void aLoadWithFailedCoursesIsNotSwappedInAndIsDeleted() throws Exception {
+        when(ingestionPipeline.bulkLoad(any(), eq("courses_v1"))).thenReturn(new IngestionReport(990, 10, 1000, 100));
+
+        assertThatThrownBy(() -> indexManager.rebuild(() -> new ByteArrayInputStream(new byte[0])))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("10 failed");
+
+        verify(indices, never()).updateAliases(any(UpdateAliasesRequest.class));
+        verify(newVersion).delete();
+        verify(eventPublisher, never()).publishEvent(any());
+    }
+
+    @Test
+    void anEmptyLoadIsNotSwappedIn() throws Exception {
+        when(ingestionPipeline.bulkLoad(any(), eq("courses_v1"))).thenReturn(new IngestionReport(0, 0, 2, 10));
+
+        assertThatThrownBy(() -> indexManager.rebuild(() -> new ByteArrayInputStream(new byte[0])))
+                .hasMessageContaining("0 courses indexed");
+
+        verify(indices, never()).updateAliases(any(UpdateAliasesRequest.class));
+        verify(newVersion).delete();
+    }
+}
@@ -0,0 +1,149 @@
+package org.undoschool.coursesearch;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch.core.bulk.BulkOperation;
+import co.elastic.clients.elasticsearch.indices.ElasticsearchIndicesClient;
+import co.elastic.clients.elasticsearch.indices.RefreshRequest;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.util.unit.DataSize;
+import org.undoschool.coursesearch.config.CourseSearchProperties;
+import org.undoschool.coursesearch.document.CourseDocument;
+import org.undoschool.coursesearch.service.CourseBulkWriter;
+import org.undoschool.coursesearch.service.CourseBulkWriter.BulkOutcome;
+import org.undoschool.coursesearch.service.CourseIngestionPipeline;
+import org.undoschool.coursesearch.service.CourseIngestionPipeline.IngestionReport;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CourseIngestionPipelineTests {
+
+    private final ElasticsearchClient elasticsearchClient = mock(ElasticsearchClient.class);
+    private final ElasticsearchIndicesClient indices = mock(ElasticsearchIndicesClient.class,
+            // The lambda overloads build the request and call the stubbed overloads below
+            Mockito.CALLS_REAL_METHODS);
+    private final CourseBulkWriter bulkWriter = mock(CourseBulkWriter.class);
+    private final CourseSearchProperties properties = new CourseSearchProperties();
+    private final CourseIngestionPipeline pipeline = new CourseIngestionPipeline(
+            new ObjectMapper().findAndRegisterModules(), elasticsearchClient, bulkWriter, properties);
+
+    private final List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        when(elasticsearchClient.indices()).thenReturn(indices);
+        doReturn(null).when(indices).refresh(any(RefreshRequest.class));
+        when(bulkWriter.indexOperation(eq("courses-v2"), any(CourseDocument.class))).thenAnswer(invocation -> {
+            CourseDocument course = invocation.getArgument(1);
+            return BulkOperation.of(op -> op.index(i -> i.index("courses-v2").id(course.getId()).document(course)));
+        });
+        when(bulkWriter.write(anyList())).thenAnswer(invocation -> {
+            List<BulkOperation> batch = invocation.getArgument(0);
+            batchSizes.add(batch.size());
+            return new BulkOutcome(batch.size(), 0);
+        });
+    }
+
+    @Test
+    void coursesAreSentInBatchesOfTheConfiguredSize() throws Exception {
+        properties.getIngest().setBatchSize(2);
+
+        IngestionReport report = pipeline.bulkLoad(courses(5), "courses-v2");
+
+        assertThat(batchSizes).containsExactlyInAnyOrder(2, 2, 1);
+        assertThat(report.indexed()).isEqualTo(5);
+        verify(indices).refresh(any(RefreshRequest.class));
+    }
+
+    @Test
+    void aBatchIsSentOnceItReachesTheByteLimit() throws Exception {
+        // Every course is larger than the limit, so each one is a batch of its own
+        properties.getIngest().setBatchBytes(DataSize.ofBytes(10));
+
+        pipeline.bulkLoad(courses(3), "courses-v2");
+
+        assertThat(batchSizes).containsExactly(1, 1, 1);
+    }
+
+    @Test
+    void noMoreThanTheConfiguredNumberOfBatchesAreInFlight() throws Exception {
+        properties.getIngest().setBatchSize(1);
+        properties.getIngest().setConcurrency(2);
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        // The first two batches wait for each other, so both are in flight when the third is parsed
+        CountDownLatch firstTwo = new CountDownLatch(2);
+        when(bulkWriter.write(anyList())).thenAnswer(invocation -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                firstTwo.countDown();
+                firstTwo.await(5, TimeUnit.SECONDS);
+                Thread.sleep(20);
+                List<BulkOperation> batch = invocation.getArgument(0);
+                return new BulkOutcome(batch.size(), 0);
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        });
+
+        IngestionReport report = pipeline.bulkLoad(courses(6), "courses-v2");
+
+        assertThat(report.indexed()).isEqualTo(6);
+        assertThat(maxInFlight).hasValue(2);
+    }
+
+    @Test
+    void outcomesOfAllBatchesAreSummed() throws Exception {
+        properties.getIngest().setBatchSize(2);
+        when(bulkWriter.write(anyList())).thenAnswer(invocation -> {
+            List<BulkOperation> batch = invocation.getArgument(0);
+            // One document of every batch is rejected
+            return new BulkOutcome(batch.size() - 1, 1);
+        });
+
+        IngestionReport report = pipeline.bulkLoad(courses(5), "courses-v2");
+
+        assertThat(report.indexed()).isEqualTo(2);
+        assertThat(report.failed()).isEqualTo(3);
+    }
+
+    @Test
+    void inputThatIsNotAnArrayIsRejected() throws Exception {
+        InputStream json = new ByteArrayInputStream("{\"id\":\"c1\"}".getBytes(StandardCharsets.UTF_8));
+
+        assertThatThrownBy(() -> pipeline.bulkLoad(json, "courses-v2"))
+                .isInstanceOf(IOException.class)
+                .hasMessage("Expected a JSON array of courses");
+        verify(bulkWriter, never()).write(anyList());
+    }
+
+    private static InputStream courses(int count) {
+        String json = IntStream.rangeClosed(1, count)
+                .mapToObj(i -> "{\"id\":\"c" + i + "\",\"title\":\"Course " + i + "\"}")
+                .collect(Collectors.joining(",", "[", "]"));
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,117 @@
+package org.undoschool.coursesearch;
+
+import co.elastic.clients.elasticsearch.core.bulk.BulkOperation;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.undoschool.coursesearch.config.CourseSearchProperties;
+import org.undoschool.coursesearch.service.CourseBulkWriter;
+import org.undoschool.coursesearch.service.CourseIndexManager;
+import org.undoschool.coursesearch.service.CoursePopularityService;
+import org.undoschool.coursesearch.service.CourseSignal;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CoursePopularityServiceTests {
+
+    private final CourseBulkWriter bulkWriter = mock(CourseBulkWriter.class);
+    private final CourseIndexManager indexManager = mock(CourseIndexManager.class);
+    private final CourseSearchProperties properties = new CourseSearchProperties();
+    private CoursePopularityService service;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        when(indexManager.alias()).thenReturn("courses");
+        when(bulkWriter.write(any())).thenReturn(new CourseBulkWriter.BulkOutcome(0, 0));
+        service = new CoursePopularityService(bulkWriter, indexManager, properties, new SimpleMeterRegistry());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void concurrentSignalsAreSummedIntoOneIncrementPerCourse() throws Exception {
+        try (ExecutorService threads = Executors.newFixedThreadPool(8)) {
+            for (int t = 0; t < 8; t++) {
+                threads.execute(() -> {
+                    for (int i = 0; i < 1000; i++) {
+                        service.record(List.of(signal("1", CourseSignal.Type.CLICK), signal("2", CourseSignal.Type.CLICK)));
+                    }
+                    service.record(List.of(signal("2", CourseSignal.Type.ENROLMENT)));
+                });
+            }
+        }
+
+        service.flush();
+
+        ArgumentCaptor<List<BulkOperation>> captor = ArgumentCaptor.forClass(List.class);
+        verify(bulkWriter).write(captor.capture());
+        Map<String, Double> deltas = captor.getValue().stream().collect(Collectors.toMap(
+                op -> op.update().id(),
+                op -> op.update().action().script().params().get("delta").to(Double.class)));
+        assertThat(deltas).containsOnly(Map.entry("1", 8000.0), Map.entry("2", 8080.0));
+
+        // Nothing new since the last flush: no request, and idle counters are let go
+        service.flush();
+        verify(bulkWriter, times(1)).write(any());
+        assertThat(service.trackedCount()).isZero();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void deltasOfAFailedFlushGoOutWithTheNextOne() throws Exception {
+        when(bulkWriter.write(any()))
+                .thenThrow(new IOException("connection refused"))
+                .thenReturn(new CourseBulkWriter.BulkOutcome(1, 0));
+        service.record(List.of(signal("1", CourseSignal.Type.CLICK)));
+        service.flush();
+
+        service.record(List.of(signal("1", CourseSignal.Type.CLICK)));
+        service.flush();
+
+        ArgumentCaptor<List<BulkOperation>> captor = ArgumentCaptor.forClass(List.class);
+        verify(bulkWriter, times(2)).write(captor.capture());
+        assertThat(captor.getValue().get(0).update().action().script().params().get("delta").to(Double.class))
+                .isEqualTo(2.0);
+    }
+
+    @Test
+    void invalidSignalsRejectTheWholeBatch() throws Exception {
+        assertThatThrownBy(() -> service.record(List.of(
+                signal("1", CourseSignal.Type.CLICK),
+                signal("2", null))))
+                .isInstanceOf(IllegalArgumentException.class);
+
+        service.flush();
+        verify(bulkWriter, never()).write(any());
+    }
+
+    @Test
+    void signalsForCoursesBeyondTheTrackedLimitAreDropped() {
+        properties.getPopularity().setMaxTracked(10);
+
+        service.record(IntStream.range(0, 20).mapToObj(i -> signal("c" + i, CourseSignal.Type.CLICK)).toList());
+        service.record(Collections.nCopies(5, signal("c0", CourseSignal.Type.CLICK)));
+
+        assertThat(service.trackedCount()).isEqualTo(10);
+    }
+
+    private static CourseSignal signal(String id, CourseSignal.Type type) {
+        return CourseSignal.builder().id(id).type(type).build();
+    }
+}
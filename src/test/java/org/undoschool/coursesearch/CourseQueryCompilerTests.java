@@ -0,0 +1,158 @@
+package org.undoschool.coursesearch;
+
+import co.elastic.clients.elasticsearch._types.query_dsl.BoolQuery;
+import co.elastic.clients.elasticsearch._types.query_dsl.Query;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.elasticsearch.client.elc.NativeQuery;
+import org.undoschool.coursesearch.config.CourseSearchProperties;
+import org.undoschool.coursesearch.service.CourseQueryCompiler;
+import org.undoschool.coursesearch.service.CourseQueryCompiler.TextMode;
+import org.undoschool.coursesearch.service.CourseType;
+import org.undoschool.coursesearch.service.Facet;
+import org.undoschool.coursesearch.service.SearchCriteria;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.EnumSet;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CourseQueryCompilerTests {
+
+    private final CourseQueryCompiler compiler = new CourseQueryCompiler();
+
+    @Test
+    void emptyCriteriaCompilesToMatchAll() {
+        Query query = compiler.compileQuery(SearchCriteria.withDefaults(), TextMode.MATCH);
+
+        assertThat(query.isMatchAll()).isTrue();
+    }
+
+    @Test
+    void structuredConstraintsGoIntoFilterContext() {
+        SearchCriteria criteria = SearchCriteria.builder()
+                .category("Art")
+                .type(CourseType.CLUB)
+                .minPrice(10.0)
+                .maxPrice(100.0)
+                .minAge(8)
+                .maxAge(12)
+                .startDate(LocalDateTime.of(2025, 9, 12, 0, 0))
+                .build();
+
+        BoolQuery bool = compiler.compileQuery(criteria, TextMode.MATCH).bool();
+
+        assertThat(bool.filter()).hasSize(6);
+        assertThat(bool.must()).isEmpty();
+        assertThat(bool.should()).isEmpty();
+        assertThat(bool.filter().get(5).toString()).contains("2025-09-12T00:00:00");
+    }
+
+    @Test
+    void textQueryIsScoredAndFiltersAreKeptForEveryMode() {
+        SearchCriteria criteria = SearchCriteria.builder()
+                .query("pythno")
+                .category("Technology")
+                .build();
+
+        for (TextMode mode : TextMode.values()) {
+            BoolQuery bool = compiler.compileQuery(criteria, mode).bool();
+            assertThat(bool.must()).hasSize(1);
+            assertThat(bool.filter()).hasSize(1);
+        }
+        assertThat(compiler.compileQuery(criteria, TextMode.FUZZY).bool().must().get(0).multiMatch().fuzziness())
+                .isEqualTo("AUTO");
+        assertThat(compiler.compileQuery(criteria, TextMode.CONTAINS).toString()).contains("*pythno*");
+    }
+
+    @Test
+    void facetedFiltersMoveToPostFilterAndEachFacetIgnoresItsOwn() {
+        SearchCriteria criteria = SearchCriteria.builder()
+                .category("Art")
+                .type(CourseType.CLUB)
+                .startDate(LocalDateTime.of(2025, 9, 12, 0, 0))
+                .facets(EnumSet.of(Facet.CATEGORY, Facet.TYPE, Facet.PRICE))
+                .size(10)
+                .build();
+
+        NativeQuery query = compiler.compile(criteria, TextMode.MATCH);
+
+        // The date is not faceted and keeps narrowing the aggregations
+        assertThat(query.getQuery().bool().filter()).hasSize(1);
+        assertThat(query.getFilter().bool().filter()).hasSize(2);
+        assertThat(query.getAggregations()).containsOnlyKeys("category", "type", "price");
+        assertThat(query.getAggregations().get("category").filter().toString())
+                .contains("CLUB").doesNotContain("Art");
+        assertThat(query.getAggregations().get("type").filter().toString())
+                .contains("Art").doesNotContain("CLUB");
+        assertThat(query.getAggregations().get("price").filter().toString())
+                .contains("Art").contains("CLUB");
+    }
+
+    @Test
+    void projectionIsPushedDownAsSourceIncludes() {
+        SearchCriteria criteria = SearchCriteria.withDefaults();
+        assertThat(compiler.compile(criteria, TextMode.MATCH).getSourceFilter().getIncludes()).isNull();
+        assertThat(compiler.compile(criteria, TextMode.MATCH).getSourceFilter().getExcludes()).containsExactly("suggest");
+
+        criteria.setFields(Set.of("id", "title"));
+
+        assertThat(compiler.compile(criteria, TextMode.MATCH).getSourceFilter().getIncludes())
+                .containsExactlyInAnyOrder("id", "title");
+        assertThat(compiler.compileCursorPage(criteria, "pit", Duration.ofMinutes(1), null)
+                .getSourceFilter().getIncludes())
+                .containsExactlyInAnyOrder("id", "title");
+    }
+
+    @Test
+    void popularityBoostsTextQueriesAndTheRelevanceSort() {
+        SearchCriteria text = SearchCriteria.builder().query("python").build();
+        assertThat(compiler.compileQuery(text, TextMode.MATCH).bool().should())
+                .singleElement()
+                .satisfies(clause -> assertThat(clause.rankFeature().field()).isEqualTo("popularity"));
+
+        SearchCriteria relevance = SearchCriteria.builder().category("Art").sort("relevance").build();
+        BoolQuery bool = compiler.compileQuery(relevance, TextMode.MATCH).bool();
+        assertThat(bool.filter()).hasSize(1);
+        assertThat(bool.should()).hasSize(1);
+        assertThat(compiler.createSort("relevance").toString()).isEqualTo("_score: DESC,id: ASC");
+
+        CourseSearchProperties properties = new CourseSearchProperties();
+        properties.getPopularity().setBoost(0);
+        assertThat(new CourseQueryCompiler(properties).compileQuery(text, TextMode.MATCH).bool().should()).isEmpty();
+    }
+
+    @Test
+    void relevanceWithoutTextOrQueryFiltersStillMatchesCoursesWithoutPopularity() {
+        // A bool of only should clauses would require the rank_feature to match
+        BoolQuery unfiltered = compiler.compileQuery(SearchCriteria.builder().sort("relevance").build(), TextMode.MATCH).bool();
+        assertThat(unfiltered.should()).hasSize(1);
+        assertThat(unfiltered.must()).singleElement().satisfies(clause -> assertThat(clause.isMatchAll()).isTrue());
+
+        // Every filter is faceted, so all of them move to post_filter
+        SearchCriteria facetsOnly = SearchCriteria.builder().category("Art").sort("relevance")
+                .facets(EnumSet.of(Facet.CATEGORY)).build();
+        NativeQuery faceted = compiler.compile(facetsOnly, TextMode.MATCH);
+        assertThat(faceted.getFilter()).isNotNull();
+        BoolQuery bool = faceted.getQuery().bool();
+        assertThat(bool.filter()).isEmpty();
+        assertThat(bool.must()).singleElement().satisfies(clause -> assertThat(clause.isMatchAll()).isTrue());
+    }
+
+    @Test
+    void totalHitsFollowThePolicy() {
+        SearchCriteria criteria = SearchCriteria.withDefaults();
+        NativeQuery capped = compiler.compile(criteria, TextMode.MATCH);
+        assertThat(capped.getTrackTotalHits()).isNull();
+        assertThat(capped.getTrackTotalHitsUpTo()).isEqualTo(10_000);
+
+        CourseSearchProperties properties = new CourseSearchProperties();
+        properties.getTotals().setPolicy(CourseSearchProperties.Totals.Policy.NONE);
+        assertThat(new CourseQueryCompiler(properties).compile(criteria, TextMode.MATCH).getTrackTotalHits()).isFalse();
+
+        NativeQuery count = new CourseQueryCompiler(properties).compileCount(criteria);
+        assertThat(count.getTrackTotalHits()).isTrue();
+        assertThat(count.getMaxResults()).isZero();
+    }
+}
@@ -0,0 +1,118 @@
+package org.undoschool.coursesearch;
+
+import co.elastic.clients.elasticsearch._types.query_dsl.BoolQuery;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.elasticsearch.client.elc.NativeQuery;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.SearchHits;
+import org.springframework.data.elasticsearch.core.TotalHitsRelation;
+import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
+import org.springframework.data.elasticsearch.core.query.Query;
+import org.undoschool.coursesearch.config.CourseSearchProperties;
+import org.undoschool.coursesearch.document.CourseDocument;
+import org.undoschool.coursesearch.service.CourseColumnarIndex;
+import org.undoschool.coursesearch.service.CourseQueryCompiler;
+import org.undoschool.coursesearch.service.CourseSearchService;
+import org.undoschool.coursesearch.service.Facet;
+import org.undoschool.coursesearch.service.SearchCacheKey;
+import org.undoschool.coursesearch.service.SearchCircuitBreaker;
+import org.undoschool.coursesearch.service.SearchCoalescer;
+import org.undoschool.coursesearch.service.SearchCriteria;
+import org.undoschool.coursesearch.service.SearchExecutor;
+import org.undoschool.coursesearch.service.SearchMetrics;
+import org.undoschool.coursesearch.service.SearchResult;
+import org.undoschool.coursesearch.service.SearchResultCache;
+import org.undoschool.coursesearch.service.SlowQueryLog;
+
+import java.time.Duration;
+import java.util.EnumSet;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class CourseSearchServiceTests {
+
+    private final CourseSearchProperties properties = new CourseSearchProperties();
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ElasticsearchOperations elasticsearchOperations = mock(ElasticsearchOperations.class);
+    private final CourseQueryCompiler queryCompiler = new CourseQueryCompiler(properties);
+    private final SearchResultCache resultCache = new SearchResultCache(properties, meterRegistry);
+    private final SearchCoalescer coalescer = spy(new SearchCoalescer(properties, meterRegistry));
+    private final CourseSearchService service = new CourseSearchService(elasticsearchOperations, queryCompiler,
+            properties, resultCache, coalescer, new SearchExecutor(properties, meterRegistry),
+            new SearchCircuitBreaker(properties, meterRegistry),
+            new CourseColumnarIndex(elasticsearchOperations, queryCompiler, properties),
+            new SearchMetrics(meterRegistry), mock(SlowQueryLog.class));
+
+    @Test
+    void cacheHitsSkipTheCoalescer() {
+        SearchCriteria criteria = SearchCriteria.withDefaults();
+        SearchResult cached = SearchResult.builder().total(7).courses(List.of()).build();
+        resultCache.put(SearchCacheKey.of(criteria), cached);
+
+        assertThat(service.searchCourses(criteria)).isSameAs(cached);
+
+        verify(coalescer, never()).execute(any(), any());
+        verifyNoInteractions(elasticsearchOperations);
+    }
+
+    @Test
+    void fuzzySearchFailsWhenATierResponseIsMissing() {
+        // multiSearch leaves failed items out, so two responses for three tiers cannot be matched up
+        @SuppressWarnings("unchecked")
+        SearchHits<CourseDocument> hits = mock(SearchHits.class);
+        when(elasticsearchOperations.multiSearch(anyList(), eq(CourseDocument.class))).thenReturn(List.of(hits, hits));
+        SearchCriteria criteria = SearchCriteria.builder().query("piano").fuzzy(true).page(0).size(10).build();
+
+        assertThatThrownBy(() -> service.searchCourses(criteria))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("Fuzzy _msearch returned 2 of 3 tier responses");
+    }
+
+    @Test
+    void relevanceSearchesWithoutQueryFiltersDoNotRequirePopularity() {
+        @SuppressWarnings("unchecked")
+        SearchHits<CourseDocument> hits = mock(SearchHits.class);
+        when(hits.getTotalHitsRelation()).thenReturn(TotalHitsRelation.EQUAL_TO);
+        when(elasticsearchOperations.search(any(Query.class), eq(CourseDocument.class))).thenReturn(hits);
+
+        service.searchCourses(SearchCriteria.builder().sort("relevance").page(0).size(10).build());
+        service.searchCourses(SearchCriteria.builder().category("Art").sort("relevance").page(0).size(10)
+                .facets(EnumSet.of(Facet.CATEGORY)).build());
+
+        ArgumentCaptor<Query> sent = ArgumentCaptor.forClass(Query.class);
+        verify(elasticsearchOperations, times(2)).search(sent.capture(), eq(CourseDocument.class));
+        assertThat(sent.getAllValues()).allSatisfy(query -> {
+            BoolQuery bool = ((NativeQuery) query).getQuery().bool();
+            assertThat(bool.should()).hasSize(1);
+            assertThat(bool.must()).singleElement().satisfies(clause -> assertThat(clause.isMatchAll()).isTrue());
+        });
+    }
+
+    @Test
+    void aFailedFirstCursorPageClosesItsPointInTime() {
+        when(elasticsearchOperations.getIndexCoordinatesFor(CourseDocument.class)).thenReturn(IndexCoordinates.of("courses"));
+        when(elasticsearchOperations.openPointInTime(any(IndexCoordinates.class), any(Duration.class))).thenReturn("pit-1");
+        when(elasticsearchOperations.search(any(Query.class), eq(CourseDocument.class)))
+                .thenThrow(new IllegalStateException("search_phase_execution_exception"));
+        SearchCriteria criteria = SearchCriteria.builder().cursor("*").page(0).size(10).build();
+
+        assertThatThrownBy(() -> service.searchCourses(criteria)).hasMessage("search_phase_execution_exception");
+
+        verify(elasticsearchOperations).closePointInTime("pit-1");
+    }
+}
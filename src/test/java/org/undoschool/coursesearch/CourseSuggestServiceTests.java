@@ -0,0 +1,67 @@
+package org.undoschool.coursesearch;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch.core.SearchRequest;
+import co.elastic.clients.elasticsearch.core.SearchResponse;
+import co.elastic.clients.elasticsearch.core.search.CompletionSuggestOption;
+import co.elastic.clients.elasticsearch.core.search.Suggestion;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.undoschool.coursesearch.service.CourseIndexManager;
+import org.undoschool.coursesearch.service.CourseSuggestService;
+import org.undoschool.coursesearch.service.CourseSuggestService.CourseSuggestion;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CourseSuggestServiceTests {
+
+    private final ElasticsearchClient elasticsearchClient = mock(ElasticsearchClient.class,
+            // The lambda overload builds the request and calls the stubbed overload
+            Mockito.CALLS_REAL_METHODS);
+    private final CourseIndexManager indexManager = mock(CourseIndexManager.class);
+    private final CourseSuggestService service = new CourseSuggestService(elasticsearchClient, indexManager);
+
+    @Test
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    void categoryMatchesAreNotAttributedToACourse() throws Exception {
+        when(indexManager.alias()).thenReturn("courses");
+        SearchResponse<Map> response = SearchResponse.of(r -> r
+                .took(1)
+                .timedOut(false)
+                .shards(s -> s.total(1).successful(1).failed(0))
+                .hits(h -> h.hits(List.of()))
+                .suggest("courses", List.of(Suggestion.of(sg -> sg.completion(c -> c
+                        .text("te").offset(0).length(2)
+                        .options(List.of(
+                                option("Technology", "12", "Robotics Basics", "Technology"),
+                                option("Teen Coding Club", "7", "Teen Coding Club", "Technology"))))))));
+        doReturn(response).when(elasticsearchClient).search(any(SearchRequest.class), eq(Map.class));
+
+        List<CourseSuggestion> suggestions = service.suggest("te", 5);
+
+        assertThat(suggestions).containsExactly(
+                new CourseSuggestion("Technology", null, null, "Technology"),
+                new CourseSuggestion("Teen Coding Club", "7", "Teen Coding Club", "Technology"));
+
+        ArgumentCaptor<SearchRequest> request = ArgumentCaptor.forClass(SearchRequest.class);
+        verify(elasticsearchClient).search(request.capture(), eq(Map.class));
+        assertThat(request.getValue().size()).isZero();
+        assertThat(request.getValue().trackTotalHits().enabled()).isFalse();
+    }
+
+    @SuppressWarnings("rawtypes")
+    private static CompletionSuggestOption<Map> option(String text, String id, String title, String category) {
+        return CompletionSuggestOption.of(o -> o.text(text).id(id).index("courses_v1")
+                .source(Map.of("title", title, "category", category)));
+    }
+}
@@ -0,0 +1,87 @@
+package org.undoschool.coursesearch;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.boot.test.system.CapturedOutput;
+import org.springframework.boot.test.system.OutputCaptureExtension;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.IndexOperations;
+import org.springframework.data.elasticsearch.core.document.Document;
+import org.springframework.data.elasticsearch.core.index.Settings;
+import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
+import org.undoschool.coursesearch.document.CourseDocument;
+import org.undoschool.coursesearch.repository.CourseRepository;
+import org.undoschool.coursesearch.service.CourseIndexManager;
+import org.undoschool.coursesearch.service.DataLoaderService;
+
+import java.util.Map;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(OutputCaptureExtension.class)
+class DataLoaderServiceTests {
+
+    private final CourseRepository courseRepository = mock(CourseRepository.class);
+    private final CourseIndexManager indexManager = mock(CourseIndexManager.class);
+    private final ElasticsearchOperations elasticsearchOperations = mock(ElasticsearchOperations.class);
+    private final IndexOperations indexOps = mock(IndexOperations.class);
+    private final DataLoaderService dataLoader = new DataLoaderService(courseRepository, indexManager, elasticsearchOperations);
+
+    @BeforeEach
+    void setUp() throws Exception {
+        when(elasticsearchOperations.indexOps(CourseDocument.class)).thenReturn(indexOps);
+        when(indexManager.rebuild(any())).thenReturn(
+                new CourseIndexManager.RebuildReport("courses_v1", Optional.empty(), 50, 0, 100, 500));
+    }
+
+    @Test
+    void anOutdatedIndexWithCoursesIsKeptAsItIs() throws Exception {
+        when(indexOps.exists()).thenReturn(true);
+        when(courseRepository.count()).thenReturn(1_000_000L);
+        when(indexOps.getMapping()).thenReturn(Map.of("properties", Map.of("title", Map.of("type", "text"))));
+        when(indexOps.getSettings()).thenReturn(new Settings());
+
+        dataLoader.loadSampleData();
+
+        verify(indexManager, never()).rebuild(any());
+    }
+
+    @Test
+    void anUpToDateIndexBehindTheAliasIsRecognized(CapturedOutput output) throws Exception {
+        when(indexOps.exists()).thenReturn(true);
+        when(courseRepository.count()).thenReturn(50L);
+        when(indexManager.currentIndex()).thenReturn(Optional.of("courses_v3"));
+        // Settings read through the alias come back empty; only the physical index has them
+        when(indexOps.getSettings()).thenReturn(new Settings());
+        IndexOperations physical = mock(IndexOperations.class);
+        when(elasticsearchOperations.indexOps(IndexCoordinates.of("courses_v3"))).thenReturn(physical);
+        when(physical.getMapping()).thenReturn(Map.of("properties", Map.of(
+                "suggest", Map.of("type", "completion"), "popularity", Map.of("type", "rank_feature"))));
+        Settings settings = new Settings();
+        settings.put("index.sort.field", "nextSessionDate");
+        when(physical.getSettings()).thenReturn(settings);
+
+        dataLoader.loadSampleData();
+
+        verify(indexManager, never()).rebuild(any());
+        assertThat(output).contains("skipping data load").doesNotContain("/api/admin/reindex");
+    }
+
+    @Test
+    void sampleDataIsLoadedIntoAMissingOrEmptyIndex() throws Exception {
+        when(indexOps.exists()).thenReturn(true);
+        when(courseRepository.count()).thenReturn(0L);
+        when(indexOps.getMapping()).thenReturn(Document.create());
+
+        dataLoader.loadSampleData();
+
+        verify(indexManager).rebuild(any());
+    }
+}
@@ -0,0 +1,208 @@
+package org.undoschool.coursesearch;
+
+import co.elastic.clients.elasticsearch._types.Refresh;
+import co.elastic.clients.elasticsearch.core.bulk.BulkOperation;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.convert.MappingElasticsearchConverter;
+import org.springframework.data.elasticsearch.core.mapping.SimpleElasticsearchMappingContext;
+import org.undoschool.coursesearch.config.CourseSearchProperties;
+import org.undoschool.coursesearch.document.CourseDocument;
+import org.undoschool.coursesearch.service.CourseBulkWriter;
+import org.undoschool.coursesearch.service.CourseChange;
+import org.undoschool.coursesearch.service.CourseIndexChangedEvent;
+import org.undoschool.coursesearch.service.CourseIndexManager;
+import org.undoschool.coursesearch.service.CourseRebuildEvent;
+import org.undoschool.coursesearch.service.DeltaSyncService;
+
+import java.util.Comparator;
+import java.util.Set;
+import java.util.stream.IntStream;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class DeltaSyncServiceTests {
+
+    private final CourseBulkWriter bulkWriter = mock(CourseBulkWriter.class);
+    private final CourseIndexManager indexManager = mock(CourseIndexManager.class);
+    private final ApplicationEventPublisher eventPublisher = mock(ApplicationEventPublisher.class);
+    private final CourseSearchProperties properties = new CourseSearchProperties();
+    private DeltaSyncService service;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        when(indexManager.alias()).thenReturn("courses");
+        when(bulkWriter.write(any(), any())).thenReturn(new CourseBulkWriter.BulkOutcome(0, 0));
+        ElasticsearchOperations elasticsearchOperations = mock(ElasticsearchOperations.class);
+        MappingElasticsearchConverter converter = new MappingElasticsearchConverter(new SimpleElasticsearchMappingContext());
+        converter.afterPropertiesSet();
+        when(elasticsearchOperations.getElasticsearchConverter()).thenReturn(converter);
+        service = new DeltaSyncService(bulkWriter, indexManager, elasticsearchOperations,
+                properties, eventPublisher);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void repeatedChangesToOneIdAreCoalescedIntoOneOperation() throws Exception {
+        service.submit(List.of(
+                update("1", Map.of("price", 10.0)),
+                update("1", Map.of("price", 12.5, "nextSessionDate", "2025-10-01T09:00")),
+                update("2", Map.of("price", 99.0)),
+                CourseChange.builder().op(CourseChange.Op.DELETE).id("2").build(),
+                update("2", Map.of("price", 1.0))
+        ));
+        assertThat(service.pendingCount()).isEqualTo(2);
+
+        service.flush();
+
+        ArgumentCaptor<List<BulkOperation>> captor = ArgumentCaptor.forClass(List.class);
+        verify(bulkWriter).write(captor.capture(), eq(Refresh.WaitFor));
+        List<BulkOperation> operations = captor.getValue().stream()
+                .sorted(Comparator.comparing(op -> op.isUpdate() ? op.update().id() : op.delete().id()))
+                .toList();
+
+        assertThat(operations).hasSize(2);
+        assertThat(operations.get(0).isUpdate()).isTrue();
+        assertThat((Map<String, Object>) operations.get(0).update().action().doc())
+                .containsEntry("price", 12.5)
+                .containsEntry("nextSessionDate", "2025-10-01T09:00:00");
+        // Fields alone cannot create a valid course, so an unknown id must not be upserted
+        assertThat(operations.get(0).update().action().docAsUpsert()).isNull();
+        assertThat(operations.get(0).update().action().upsert()).isNull();
+        assertThat(operations.get(1).isDelete()).isTrue();
+        assertThat(service.pendingCount()).isZero();
+        verify(eventPublisher).publishEvent(any(CourseIndexChangedEvent.class));
+    }
+
+    @Test
+    void unknownFieldsRejectTheWholeBatch() {
+        assertThatThrownBy(() -> service.submit(List.of(
+                update("1", Map.of("price", 10.0)),
+                update("2", Map.of("id", "3")))))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(service.pendingCount()).isZero();
+    }
+
+    private static CourseChange update(String id, Map<String, Object> fields) {
+        return CourseChange.builder().op(CourseChange.Op.UPSERT).id(id).fields(fields).build();
+    }
+
+    @Test
+    void titleChangesRecomputeSuggestInputsByScript() throws Exception {
+        service.submit(List.of(update("1", Map.of("title", "Chess Club"))));
+
+        service.flush();
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<BulkOperation>> captor = ArgumentCaptor.forClass(List.class);
+        verify(bulkWriter).write(captor.capture(), eq(Refresh.WaitFor));
+        BulkOperation operation = captor.getValue().get(0);
+        assertThat(operation.update().action().doc()).isNull();
+        assertThat(operation.update().action().upsert()).isNull();
+        assertThat(operation.update().action().script().source()).contains("ctx._source.suggest");
+    }
+
+    @Test
+    void fullDocumentChangesKeepTheStoredPopularity() throws Exception {
+        CourseDocument course = CourseDocument.builder().title("Chess Club").category("Games").price(20.0).build();
+        service.submit(List.of(CourseChange.builder().op(CourseChange.Op.UPSERT).id("1").course(course).build()));
+
+        service.flush();
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<BulkOperation>> captor = ArgumentCaptor.forClass(List.class);
+        verify(bulkWriter).write(captor.capture(), eq(Refresh.WaitFor));
+        BulkOperation operation = captor.getValue().get(0);
+        // An index operation would replace the document and reset popularity to zero
+        assertThat(operation.isIndex()).isFalse();
+        assertThat(operation.update().action().scriptedUpsert()).isTrue();
+        assertThat(operation.update().action().script().source())
+                .contains("def popularity = ctx._source.popularity", "ctx._source.popularity = popularity");
+        assertThat(operation.update().action().script().params().get("doc").to(Map.class))
+                .containsKeys("title", "category", "suggest")
+                .doesNotContainKey("popularity");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void changesWrittenDuringARebuildAreReplayedOntoTheNewVersion() throws Exception {
+        service.submit(List.of(update("1", Map.of("price", 10.0))));
+        service.flush();
+        service.onRebuild(new CourseRebuildEvent("courses_v2", CourseRebuildEvent.Stage.STARTED));
+        service.submit(List.of(update("2", Map.of("price", 20.0))));
+        service.flush();
+        service.submit(List.of(update("2", Map.of("title", "Chess Club"))));
+        service.flush();
+
+        service.onRebuild(new CourseRebuildEvent("courses_v2", CourseRebuildEvent.Stage.SWAPPED));
+
+        ArgumentCaptor<List<BulkOperation>> captor = ArgumentCaptor.forClass(List.class);
+        verify(bulkWriter, times(4)).write(captor.capture(), eq(Refresh.WaitFor));
+        // Only the change made after the rebuild started, coalesced, and sent to the new index
+        List<BulkOperation> replay = captor.getAllValues().get(3);
+        assertThat(replay).hasSize(1);
+        assertThat(replay.get(0).update().index()).isEqualTo("courses_v2");
+        assertThat(replay.get(0).update().id()).isEqualTo("2");
+        assertThat(replay.get(0).update().action().script().params().get("doc").to(Map.class))
+                .containsEntry("price", 20.0)
+                .containsEntry("title", "Chess Club");
+        // Two flushes to the served version and the replay
+        verify(eventPublisher, times(3)).publishEvent(new CourseIndexChangedEvent("delta-sync", Set.of("2")));
+    }
+
+    @Test
+    void failedRebuildsDropTheJournal() throws Exception {
+        service.onRebuild(new CourseRebuildEvent("courses_v2", CourseRebuildEvent.Stage.STARTED));
+        service.submit(List.of(update("1", Map.of("price", 10.0))));
+        service.flush();
+
+        service.onRebuild(new CourseRebuildEvent("courses_v2", CourseRebuildEvent.Stage.FAILED));
+        service.onRebuild(new CourseRebuildEvent("courses_v3", CourseRebuildEvent.Stage.SWAPPED));
+
+        verify(bulkWriter, times(1)).write(any(), any());
+    }
+
+    @Test
+    void tooManyPendingIdsFlushOffTheCallersThread() throws Exception {
+        properties.getSync().setMaxPending(3);
+        Thread caller = Thread.currentThread();
+        when(bulkWriter.write(any(), any())).thenAnswer(invocation -> {
+            assertThat(Thread.currentThread()).isNotSameAs(caller);
+            return new CourseBulkWriter.BulkOutcome(3, 0);
+        });
+
+        service.submit(IntStream.range(0, 3).mapToObj(i -> update(String.valueOf(i), Map.of("price", 1.0))).toList());
+
+        verify(bulkWriter, timeout(5000)).write(any(), eq(Refresh.WaitFor));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void titleChangesAfterAFullDocumentRecomputeItsSuggestInput() throws Exception {
+        CourseDocument course = CourseDocument.builder().title("Chess Club").category("Games").build();
+        service.submit(List.of(
+                CourseChange.builder().op(CourseChange.Op.UPSERT).id("1").course(course).build(),
+                update("1", Map.of("title", "Go Club"))));
+
+        service.flush();
+
+        ArgumentCaptor<List<BulkOperation>> captor = ArgumentCaptor.forClass(List.class);
+        verify(bulkWriter).write(captor.capture(), eq(Refresh.WaitFor));
+        Map<String, Object> doc = captor.getValue().get(0).update().action().script().params().get("doc").to(Map.class);
+        assertThat(doc).containsEntry("title", "Go Club");
+        assertThat((Map<String, Object>) doc.get("suggest")).containsEntry("input", List.of("Go Club", "Games"));
+    }
+}
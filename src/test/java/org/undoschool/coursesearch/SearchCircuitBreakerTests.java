@@ -0,0 +1,85 @@
+package org.undoschool.coursesearch;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.undoschool.coursesearch.config.CourseSearchProperties;
+import org.undoschool.coursesearch.service.SearchCircuitBreaker;
+import org.undoschool.coursesearch.service.SearchCircuitBreaker.State;
+import org.undoschool.coursesearch.service.SearchRejectedException;
+import org.undoschool.coursesearch.service.SearchTimeoutException;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SearchCircuitBreakerTests {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void opensOnFailuresAndFailsFast() {
+        SearchCircuitBreaker breaker = breaker(Duration.ofMinutes(1));
+        AtomicInteger calls = new AtomicInteger();
+
+        breaker.execute(() -> "ok");
+        for (int i = 0; i < 3; i++) {
+            assertThatThrownBy(() -> breaker.execute(() -> {
+                calls.incrementAndGet();
+                throw new SearchTimeoutException("slow");
+            })).isInstanceOf(SearchTimeoutException.class);
+        }
+        assertThat(breaker.state()).isEqualTo(State.OPEN);
+
+        assertThatThrownBy(() -> breaker.execute(() -> {
+            calls.incrementAndGet();
+            return "never";
+        })).isInstanceOf(SearchRejectedException.class);
+        assertThat(calls).hasValue(3);
+        assertThat(meterRegistry.counter("search.breaker.rejected").count()).isEqualTo(1);
+    }
+
+    @Test
+    void invalidRequestsDoNotCountAsFailures() {
+        SearchCircuitBreaker breaker = breaker(Duration.ofMinutes(1));
+
+        for (int i = 0; i < 4; i++) {
+            assertThatThrownBy(() -> breaker.execute(() -> {
+                throw new IllegalArgumentException("bad cursor");
+            })).isInstanceOf(IllegalArgumentException.class);
+        }
+        assertThat(breaker.state()).isEqualTo(State.CLOSED);
+    }
+
+    @Test
+    void successfulProbeClosesTheBreaker() throws Exception {
+        SearchCircuitBreaker breaker = breaker(Duration.ofMillis(50));
+        for (int i = 0; i < 4; i++) {
+            assertThatThrownBy(() -> breaker.execute(() -> {
+                throw new IllegalStateException("node down");
+            }));
+        }
+        assertThat(breaker.state()).isEqualTo(State.OPEN);
+
+        Thread.sleep(100);
+        assertThat(breaker.state()).isEqualTo(State.HALF_OPEN);
+        assertThatThrownBy(() -> breaker.execute(() -> {
+            throw new IllegalStateException("still down");
+        }));
+        assertThat(breaker.state()).isEqualTo(State.OPEN);
+
+        Thread.sleep(100);
+        assertThat(breaker.execute(() -> "recovered")).isEqualTo("recovered");
+        assertThat(breaker.state()).isEqualTo(State.CLOSED);
+    }
+
+    private SearchCircuitBreaker breaker(Duration openDuration) {
+        CourseSearchProperties properties = new CourseSearchProperties();
+        properties.getBreaker().setWindowSize(10);
+        properties.getBreaker().setMinimumCalls(4);
+        properties.getBreaker().setFailureRateThreshold(0.5);
+        properties.getBreaker().setOpenDuration(openDuration);
+        return new SearchCircuitBreaker(properties, meterRegistry);
+    }
+}
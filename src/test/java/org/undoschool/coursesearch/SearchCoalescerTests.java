@@ -0,0 +1,107 @@
+package org.undoschool.coursesearch;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.undoschool.coursesearch.config.CourseSearchProperties;
+import org.undoschool.coursesearch.service.SearchCacheKey;
+import org.undoschool.coursesearch.service.SearchCoalescer;
+import org.undoschool.coursesearch.service.SearchCriteria;
+import org.undoschool.coursesearch.service.SearchResult;
+import org.undoschool.coursesearch.service.SearchTimeoutException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SearchCoalescerTests {
+
+    private static final SearchCacheKey KEY = SearchCacheKey.of(SearchCriteria.withDefaults());
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void concurrentIdenticalSearchesShareOneExecution() throws Exception {
+        SearchCoalescer coalescer = new SearchCoalescer(new CourseSearchProperties(), meterRegistry);
+        SearchResult expected = SearchResult.builder().total(3).courses(List.of()).build();
+        AtomicInteger executions = new AtomicInteger();
+        CountDownLatch leaderStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<SearchResult>> results = new ArrayList<>();
+            results.add(executor.submit(() -> coalescer.execute(KEY, () -> {
+                executions.incrementAndGet();
+                leaderStarted.countDown();
+                await(release);
+                return expected;
+            })));
+            assertThat(leaderStarted.await(5, TimeUnit.SECONDS)).isTrue();
+
+            for (int i = 0; i < 7; i++) {
+                results.add(executor.submit(() -> coalescer.execute(KEY, () -> {
+                    executions.incrementAndGet();
+                    return expected;
+                })));
+            }
+            // Let the followers attach before the leader completes
+            while (meterRegistry.counter("search.coalesce.requests", "role", "follower").count() < 7) {
+                Thread.sleep(5);
+            }
+            release.countDown();
+
+            for (Future<SearchResult> result : results) {
+                assertThat(result.get(5, TimeUnit.SECONDS)).isSameAs(expected);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(executions).hasValue(1);
+        assertThat(meterRegistry.counter("search.coalesce.requests", "role", "leader").count()).isEqualTo(1);
+        assertThat(coalescer.inFlightCount()).isZero();
+    }
+
+    @Test
+    void followersTimeOutWhileTheLeaderIsStuck() throws Exception {
+        CourseSearchProperties properties = new CourseSearchProperties();
+        properties.getCoalesce().setTimeout(Duration.ofMillis(50));
+        SearchCoalescer coalescer = new SearchCoalescer(properties, meterRegistry);
+        CountDownLatch leaderStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            executor.submit(() -> coalescer.execute(KEY, () -> {
+                leaderStarted.countDown();
+                await(release);
+                return SearchResult.builder().courses(List.of()).build();
+            }));
+            assertThat(leaderStarted.await(5, TimeUnit.SECONDS)).isTrue();
+
+            assertThatThrownBy(() -> coalescer.execute(KEY, () -> null))
+                    .isInstanceOf(SearchTimeoutException.class);
+            assertThat(meterRegistry.counter("search.coalesce.timeouts").count()).isEqualTo(1);
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
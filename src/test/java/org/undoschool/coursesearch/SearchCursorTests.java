@@ -0,0 +1,30 @@
+package org.undoschool.coursesearch;
+
+import org.junit.jupiter.api.Test;
+import org.undoschool.coursesearch.service.SearchCursor;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SearchCursorTests {
+
+    @Test
+    void cursorRoundTripsThroughOpaqueString() {
+        SearchCursor cursor = new SearchCursor("pit-id==", List.of(1757952000000L, "42"), 1234);
+
+        String encoded = cursor.encode();
+
+        assertThat(encoded).doesNotContain("=", "+", "/");
+        assertThat(SearchCursor.decode(encoded)).isEqualTo(cursor);
+    }
+
+    @Test
+    void malformedCursorIsRejected() {
+        assertThatThrownBy(() -> SearchCursor.decode("not a cursor"))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> SearchCursor.decode(new SearchCursor("pit", List.of(), 0).encode()))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,90 @@
+package org.undoschool.coursesearch;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.undoschool.coursesearch.config.CourseSearchProperties;
+import org.undoschool.coursesearch.service.SearchExecutor;
+import org.undoschool.coursesearch.service.SearchRejectedException;
+import org.undoschool.coursesearch.service.SearchTimeoutException;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SearchExecutorTests {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void searchesBeyondTheLimitAreRejected() throws Exception {
+        CourseSearchProperties properties = new CourseSearchProperties();
+        properties.getExecution().setMaxConcurrent(1);
+        properties.getExecution().setAcquireTimeout(Duration.ofMillis(20));
+        SearchExecutor executor = new SearchExecutor(properties, meterRegistry);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<String> running = CompletableFuture.supplyAsync(() -> executor.execute(() -> {
+            started.countDown();
+            await(release);
+            return "first";
+        }));
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+        assertThatThrownBy(() -> executor.execute(() -> "second"))
+                .isInstanceOf(SearchRejectedException.class);
+        assertThat(meterRegistry.counter("search.execution.rejected").count()).isEqualTo(1);
+
+        release.countDown();
+        assertThat(running.get(5, TimeUnit.SECONDS)).isEqualTo("first");
+        assertThat(executor.execute(() -> "third")).isEqualTo("third");
+    }
+
+    @Test
+    void slowSearchesTimeOut() {
+        CourseSearchProperties properties = new CourseSearchProperties();
+        properties.getExecution().setTimeout(Duration.ofMillis(50));
+        SearchExecutor executor = new SearchExecutor(properties, meterRegistry);
+
+        assertThatThrownBy(() -> executor.execute(() -> {
+            await(new CountDownLatch(1));
+            return "never";
+        })).isInstanceOf(SearchTimeoutException.class);
+        assertThat(meterRegistry.counter("search.execution.timeouts").count()).isEqualTo(1);
+    }
+
+    @Test
+    void slowSearchesAreHedged() {
+        CourseSearchProperties properties = new CourseSearchProperties();
+        properties.getExecution().setHedge(true);
+        properties.getExecution().setHedgeDelay(Duration.ofMillis(20));
+        SearchExecutor executor = new SearchExecutor(properties, meterRegistry);
+        AtomicInteger attempts = new AtomicInteger();
+
+        // The first copy hangs like a request stuck on a slow node; the hedge answers
+        String result = executor.executeHedged(() -> {
+            if (attempts.incrementAndGet() == 1) {
+                await(new CountDownLatch(1));
+                return "slow";
+            }
+            return "hedge";
+        });
+
+        assertThat(result).isEqualTo("hedge");
+        assertThat(meterRegistry.counter("search.execution.hedges").count()).isEqualTo(1);
+        assertThat(executor.execute(() -> "next")).isEqualTo("next");
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package org.undoschool.coursesearch;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.SearchHits;
+import org.springframework.data.elasticsearch.core.TotalHitsRelation;
+import org.springframework.data.elasticsearch.core.query.Query;
+import org.undoschool.coursesearch.config.CourseSearchProperties;
+import org.undoschool.coursesearch.document.CourseDocument;
+import org.undoschool.coursesearch.service.CourseColumnarIndex;
+import org.undoschool.coursesearch.service.CourseQueryCompiler;
+import org.undoschool.coursesearch.service.CourseSearchService;
+import org.undoschool.coursesearch.service.SearchCircuitBreaker;
+import org.undoschool.coursesearch.service.SearchCoalescer;
+import org.undoschool.coursesearch.service.SearchCriteria;
+import org.undoschool.coursesearch.service.SearchExecutor;
+import org.undoschool.coursesearch.service.SearchMetrics;
+import org.undoschool.coursesearch.service.SearchResultCache;
+import org.undoschool.coursesearch.service.SlowQueryLog;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class SearchMetricsTests {
+
+    private final CourseSearchProperties properties = new CourseSearchProperties();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ElasticsearchOperations elasticsearchOperations = mock(ElasticsearchOperations.class);
+    private final CourseQueryCompiler queryCompiler = new CourseQueryCompiler(properties);
+    private final CourseSearchService service = new CourseSearchService(elasticsearchOperations, queryCompiler,
+            properties, new SearchResultCache(properties, meterRegistry), new SearchCoalescer(properties, meterRegistry),
+            new SearchExecutor(properties, meterRegistry), new SearchCircuitBreaker(properties, meterRegistry),
+            new CourseColumnarIndex(elasticsearchOperations, queryCompiler, properties),
+            new SearchMetrics(meterRegistry), mock(SlowQueryLog.class));
+
+    @Test
+    void everyStageOfASearchIsTimedWithItsTierAndSort() {
+        SearchHits<CourseDocument> hits = hits(3, Duration.ofMillis(4));
+        when(elasticsearchOperations.search(any(Query.class), eq(CourseDocument.class))).thenReturn(hits);
+
+        service.searchCourses(SearchCriteria.builder().query("piano").sort("priceAsc").page(0).size(10).build());
+
+        for (String stage : List.of("compile", "es", "map")) {
+            assertThat(count("search.stage", "stage", stage, "tier", "match", "sort", "priceasc"))
+                    .as("stage %s", stage).isEqualTo(1);
+        }
+        assertThat(count("search.es.client", "request", "search")).isEqualTo(1);
+        assertThat(meterRegistry.get("search.es.took").tags("tier", "match").timer()
+                .totalTime(TimeUnit.MILLISECONDS)).isEqualTo(4.0);
+        assertThat(count("search.execute", "sort", "priceasc", "tier", "match")).isEqualTo(1);
+    }
+
+    @Test
+    void aFuzzySearchIsTaggedWithTheTierWhoseHitsWereReturned() {
+        SearchHits<CourseDocument> empty = hits(0, Duration.ofMillis(1));
+        SearchHits<CourseDocument> contains = hits(2, Duration.ofMillis(1));
+        when(elasticsearchOperations.multiSearch(anyList(), eq(CourseDocument.class)))
+                .thenReturn(List.of(empty, empty, contains));
+
+        service.searchCourses(SearchCriteria.builder().query("pian").fuzzy(true).sort("relevance").page(0).size(10).build());
+
+        // Compiling and sending the tiers is shared; mapping belongs to the tier that answered
+        assertThat(count("search.stage", "stage", "compile", "tier", "fuzzy", "sort", "relevance")).isEqualTo(1);
+        assertThat(count("search.stage", "stage", "es", "tier", "fuzzy", "sort", "relevance")).isEqualTo(1);
+        assertThat(count("search.stage", "stage", "map", "tier", "contains", "sort", "relevance")).isEqualTo(1);
+        assertThat(count("search.es.client", "request", "msearch")).isEqualTo(1);
+        for (String tier : List.of("match", "fuzzy", "contains")) {
+            assertThat(count("search.es.took", "tier", tier)).as("took for %s", tier).isEqualTo(1);
+        }
+        assertThat(count("search.execute", "sort", "relevance", "tier", "contains")).isEqualTo(1);
+    }
+
+    @Test
+    void aFuzzySearchWithoutHitsIsTaggedNone() {
+        SearchHits<CourseDocument> empty = hits(0, null);
+        when(elasticsearchOperations.multiSearch(anyList(), eq(CourseDocument.class)))
+                .thenReturn(List.of(empty, empty, empty));
+
+        service.searchCourses(SearchCriteria.builder().query("zzz").fuzzy(true).page(0).size(10).build());
+
+        assertThat(count("search.stage", "stage", "map", "tier", "none", "sort", "upcoming")).isEqualTo(1);
+        assertThat(count("search.execute", "sort", "upcoming", "tier", "none")).isEqualTo(1);
+        // Without a "took" in the response there is nothing to record
+        assertThat(meterRegistry.find("search.es.took").timers()).allSatisfy(timer -> assertThat(timer.count()).isZero());
+    }
+
+    private long count(String name, String... tags) {
+        return meterRegistry.get(name).tags(tags).timer().count();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static SearchHits<CourseDocument> hits(long total, Duration took) {
+        SearchHits<CourseDocument> hits = mock(SearchHits.class);
+        when(hits.getTotalHits()).thenReturn(total);
+        when(hits.getTotalHitsRelation()).thenReturn(TotalHitsRelation.EQUAL_TO);
+        when(hits.getExecutionDuration()).thenReturn(took);
+        return hits;
+    }
+}
@@ -0,0 +1,48 @@
+package org.undoschool.coursesearch;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.undoschool.coursesearch.config.CourseSearchProperties;
+import org.undoschool.coursesearch.service.CourseIndexChangedEvent;
+import org.undoschool.coursesearch.service.SearchCacheKey;
+import org.undoschool.coursesearch.service.SearchCriteria;
+import org.undoschool.coursesearch.service.SearchResult;
+import org.undoschool.coursesearch.service.SearchResultCache;
+import org.undoschool.coursesearch.service.SearchTimeoutException;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SearchResultCacheTests {
+
+    private final SearchResultCache cache = new SearchResultCache(new CourseSearchProperties(), new SimpleMeterRegistry());
+    private final SearchCacheKey key = SearchCacheKey.of(SearchCriteria.withDefaults());
+
+    @Test
+    void searchExceptionsReachTheCallerUnchangedAndAreNotCached() {
+        assertThatThrownBy(() -> cache.get(key, () -> {
+            throw new SearchTimeoutException("took too long");
+        })).isExactlyInstanceOf(SearchTimeoutException.class);
+
+        assertThat(cache.getIfPresent(key)).isNull();
+        assertThat(cache.get(key, () -> result(3)).getTotal()).isEqualTo(3);
+        assertThat(cache.getIfPresent(key).getTotal()).isEqualTo(3);
+    }
+
+    @Test
+    void resultsSearchedAcrossAnIndexChangeAreNotCached() {
+        SearchResult result = cache.get(key, () -> {
+            cache.onIndexChanged(new CourseIndexChangedEvent("delta-sync"));
+            return result(1);
+        });
+
+        assertThat(result.getTotal()).isEqualTo(1);
+        assertThat(cache.getIfPresent(key)).isNull();
+    }
+
+    private static SearchResult result(long total) {
+        return SearchResult.builder().total(total).courses(List.of()).build();
+    }
+}
@@ -0,0 +1,144 @@
+package org.undoschool.coursesearch;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch.core.SearchRequest;
+import co.elastic.clients.elasticsearch.core.SearchResponse;
+import co.elastic.clients.json.jackson.JacksonJsonpMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.elasticsearch.client.elc.NativeQuery;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
+import org.undoschool.coursesearch.config.CourseSearchProperties;
+import org.undoschool.coursesearch.document.CourseDocument;
+import org.undoschool.coursesearch.service.CourseQueryCompiler;
+import org.undoschool.coursesearch.service.CourseQueryCompiler.TextMode;
+import org.undoschool.coursesearch.service.SearchCriteria;
+import org.undoschool.coursesearch.service.SlowQueryLog;
+import org.undoschool.coursesearch.service.SlowQueryLog.SlowQuery;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class SlowQueryLogTests {
+
+    private static final long SLOW = TimeUnit.SECONDS.toNanos(1);
+
+    private final ElasticsearchClient elasticsearchClient = mock(ElasticsearchClient.class);
+    private final ElasticsearchOperations elasticsearchOperations = mock(ElasticsearchOperations.class);
+    private final CourseSearchProperties properties = new CourseSearchProperties();
+    private final CourseQueryCompiler compiler = new CourseQueryCompiler();
+
+    @BeforeEach
+    void setUp() {
+        when(elasticsearchClient._jsonpMapper()).thenReturn(new JacksonJsonpMapper());
+        when(elasticsearchOperations.getIndexCoordinatesFor(CourseDocument.class)).thenReturn(IndexCoordinates.of("courses"));
+        properties.getSlowLog().setProfileSampleRate(0);
+    }
+
+    @Test
+    void onlySearchesOverTheThresholdAreKeptNewestFirst() {
+        properties.getSlowLog().setCapacity(2);
+        SlowQueryLog slowLog = slowLog();
+
+        slowLog.record(criteria("Art"), query("Art"), "match", TimeUnit.MILLISECONDS.toNanos(20), Duration.ofMillis(15));
+        assertThat(slowLog.recent(10)).isEmpty();
+
+        slowLog.record(criteria("Art"), query("Art"), "match", SLOW, Duration.ofMillis(900));
+        slowLog.record(criteria("Music"), query("Music"), "fuzzy", SLOW, Duration.ofMillis(800));
+        slowLog.record(criteria("Science"), query("Science"), "match", SLOW, null);
+
+        List<SlowQuery> recent = slowLog.recent(10);
+        assertThat(recent).extracting(entry -> entry.criteria().category()).containsExactly("Science", "Music");
+        assertThat(recent.get(1).tier()).isEqualTo("fuzzy");
+        assertThat(recent.get(1).elapsedMillis()).isEqualTo(1000);
+        assertThat(recent.get(1).tookMillis()).isEqualTo(800);
+        assertThat(recent.get(1).request())
+                .contains("\"term\"", "Music", "\"sort\"", "nextSessionDate", "\"from\":0", "\"size\":10");
+        assertThat(slowLog.recent(1)).hasSize(1);
+    }
+
+    @Test
+    void sampledSearchesAreProfiledInTheBackground() throws Exception {
+        properties.getSlowLog().setProfileSampleRate(1);
+        SearchResponse<Void> response = SearchResponse.of(r -> r
+                .took(700)
+                .timedOut(false)
+                .shards(s -> s.total(1).successful(1).failed(0))
+                .hits(h -> h.hits(List.of()))
+                .profile(p -> p.shards(List.of())));
+        doReturn(response).when(elasticsearchClient).search(any(SearchRequest.class), eq(Void.class));
+        SlowQueryLog slowLog = slowLog();
+
+        slowLog.record(criteria("Art"), query("Art"), "match", SLOW, Duration.ofMillis(900));
+
+        verify(elasticsearchClient, timeout(5000)).search(any(SearchRequest.class), eq(Void.class));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (slowLog.recent(1).get(0).profile() == null && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(slowLog.recent(1).get(0).profile()).contains("\"shards\"");
+    }
+
+    @Test
+    void disabledLogRecordsNothing() throws Exception {
+        properties.getSlowLog().setEnabled(false);
+        properties.getSlowLog().setProfileSampleRate(1);
+        SlowQueryLog slowLog = slowLog();
+
+        slowLog.record(criteria("Art"), query("Art"), "match", SLOW, Duration.ofMillis(900));
+
+        assertThat(slowLog.recent(10)).isEmpty();
+        verify(elasticsearchClient, never()).search(any(SearchRequest.class), eq(Void.class));
+    }
+
+    @Test
+    void cursorPagesAreProfiledAgainstTheirPointInTime() throws Exception {
+        properties.getSlowLog().setProfileSampleRate(1);
+        SearchResponse<Void> response = SearchResponse.of(r -> r
+                .took(700)
+                .timedOut(false)
+                .shards(s -> s.total(1).successful(1).failed(0))
+                .hits(h -> h.hits(List.of())));
+        doReturn(response).when(elasticsearchClient).search(any(SearchRequest.class), eq(Void.class));
+        SlowQueryLog slowLog = slowLog();
+        NativeQuery page = compiler.compileCursorPage(criteria("Art"), "pit-1", Duration.ofMinutes(1),
+                List.of(1_756_000_000_000L, "c42"));
+
+        slowLog.record(criteria("Art"), page, "cursor", SLOW, Duration.ofMillis(900));
+
+        assertThat(slowLog.recent(1).get(0).request())
+                .contains("\"pit\":{\"id\":\"pit-1\",\"keep_alive\":\"60000ms\"}",
+                        "\"search_after\":[1756000000000,\"c42\"]", "\"_source\":{\"excludes\"");
+        ArgumentCaptor<SearchRequest> profiled = ArgumentCaptor.forClass(SearchRequest.class);
+        verify(elasticsearchClient, timeout(5000)).search(profiled.capture(), eq(Void.class));
+        // A point-in-time request must not name an index
+        assertThat(profiled.getValue().index()).isEmpty();
+        assertThat(profiled.getValue().searchAfter()).hasSize(2);
+    }
+
+    private SlowQueryLog slowLog() {
+        return new SlowQueryLog(elasticsearchClient, elasticsearchOperations, properties, new SimpleMeterRegistry());
+    }
+
+    private static SearchCriteria criteria(String category) {
+        return SearchCriteria.builder().category(category).size(10).build();
+    }
+
+    private NativeQuery query(String category) {
+        return compiler.compile(criteria(category), TextMode.MATCH);
+    }
+}
@@ -0,0 +1,167 @@
+package org.undoschool.coursesearch.benchmark;
+
+import org.springframework.data.elasticsearch.client.ClientConfiguration;
+import org.springframework.data.elasticsearch.client.elc.ElasticsearchClients;
+import org.springframework.data.elasticsearch.client.elc.ElasticsearchTemplate;
+import org.springframework.data.elasticsearch.core.IndexOperations;
+import org.springframework.data.elasticsearch.core.SearchHits;
+import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
+import org.springframework.data.elasticsearch.core.query.Criteria;
+import org.springframework.data.elasticsearch.core.query.CriteriaQuery;
+import org.springframework.data.elasticsearch.core.query.IndexQuery;
+import org.springframework.data.elasticsearch.core.query.IndexQueryBuilder;
+import org.springframework.data.elasticsearch.core.query.Query;
+import org.springframework.util.StringUtils;
+import org.undoschool.coursesearch.document.CourseDocument;
+import org.undoschool.coursesearch.service.CourseQueryCompiler;
+import org.undoschool.coursesearch.service.CourseQueryCompiler.TextMode;
+import org.undoschool.coursesearch.service.SearchCriteria;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Compares the former scored Criteria query against the filter-context query
+ * produced by {@link CourseQueryCompiler} on a synthetic index.
+ *
+ * Needs a running Elasticsearch. Run from the IDE or with:
+ * <pre>
+ * ./mvnw test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=org.undoschool.coursesearch.benchmark.FilterContextBenchmark \
+ *     -Dbench.es=localhost:9200 -Dbench.docs=1000000 -Dbench.queries=2000
+ * </pre>
+ * The index is seeded once and reused by later runs with the same name.
+ */
+public class FilterContextBenchmark {
+
+    public static void main(String[] args) {
+        String host = System.getProperty("bench.es", "localhost:9200");
+        String indexName = System.getProperty("bench.index", "courses_bench");
+        int docs = Integer.getInteger("bench.docs", 1_000_000);
+        int queries = Integer.getInteger("bench.queries", 2_000);
+
+        ElasticsearchTemplate template = new ElasticsearchTemplate(
+                ElasticsearchClients.createImperative(ClientConfiguration.create(host)));
+        IndexCoordinates index = IndexCoordinates.of(indexName);
+
+        seed(template, index, docs);
+
+        CourseQueryCompiler compiler = new CourseQueryCompiler();
+        SyntheticCourses synthetic = new SyntheticCourses(7);
+        List<SearchCriteria> workload = new ArrayList<>(queries);
+        for (int i = 0; i < queries; i++) {
+            workload.add(synthetic.criteria(i % 4 == 0));
+        }
+
+        // Warm up both paths so JIT and Elasticsearch caches start from the same state
+        for (SearchCriteria criteria : workload.subList(0, Math.min(200, queries))) {
+            template.search(legacyQuery(criteria, compiler), CourseDocument.class, index);
+            template.search(compiler.compile(criteria, TextMode.MATCH), CourseDocument.class, index);
+        }
+
+        LatencyStats legacy = new LatencyStats();
+        LatencyStats legacyTook = new LatencyStats();
+        LatencyStats compiled = new LatencyStats();
+        LatencyStats compiledTook = new LatencyStats();
+
+        // Alternate the two variants so cluster noise affects both equally
+        for (SearchCriteria criteria : workload) {
+            run(template, index, legacyQuery(criteria, compiler), legacy, legacyTook);
+            run(template, index, compiler.compile(criteria, TextMode.MATCH), compiled, compiledTook);
+        }
+
+        System.out.printf("index=%s docs=%d queries=%d%n", indexName, docs, queries);
+        System.out.println("criteria (scored)  client: " + legacy.summary());
+        System.out.println("criteria (scored)  took:   " + legacyTook.summary());
+        System.out.println("compiled (filter)  client: " + compiled.summary());
+        System.out.println("compiled (filter)  took:   " + compiledTook.summary());
+    }
+
+    private static void run(ElasticsearchTemplate template, IndexCoordinates index, Query query,
+                            LatencyStats client, LatencyStats took) {
+        long start = System.nanoTime();
+        SearchHits<CourseDocument> hits = template.search(query, CourseDocument.class, index);
+        client.record(System.nanoTime() - start);
+        took.record(hits.getExecutionDuration().toNanos());
+    }
+
+    static void seed(ElasticsearchTemplate template, IndexCoordinates index, int docs) {
+        IndexOperations indexOps = template.indexOps(index);
+        if (!indexOps.exists()) {
+            // Same settings (index sorting) and mapping as an index version built by the app, so a
+            // seeded "courses" index is served as it is rather than treated as outdated
+            indexOps.create(indexOps.createSettings(CourseDocument.class), indexOps.createMapping(CourseDocument.class));
+        }
+        indexOps.refresh();
+
+        long existing = template.count(template.matchAllQuery(), index);
+        if (existing >= docs) {
+            return;
+        }
+
+        SyntheticCourses synthetic = new SyntheticCourses(42);
+        int batchSize = 5_000;
+        // A few bulk requests in flight keep large catalogs (millions of courses) seeding in minutes
+        Semaphore inFlight = new Semaphore(4);
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (long id = existing; id < docs; id += batchSize) {
+                int count = (int) Math.min(batchSize, docs - id);
+                List<IndexQuery> batch = new ArrayList<>(count);
+                for (CourseDocument course : synthetic.courses(id, count)) {
+                    batch.add(new IndexQueryBuilder().withId(course.getId()).withObject(course).build());
+                }
+                inFlight.acquireUninterruptibly();
+                executor.execute(() -> {
+                    try {
+                        template.bulkIndex(batch, index);
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+            }
+        }
+        indexOps.refresh();
+        System.out.printf("seeded %s with %d synthetic courses%n", index.getIndexName(), docs - existing);
+    }
+
+    /**
+     * The scored Criteria query CourseSearchService built before the compiler was introduced.
+     */
+    static Query legacyQuery(SearchCriteria criteria, CourseQueryCompiler compiler) {
+        Criteria root = new Criteria();
+
+        if (StringUtils.hasText(criteria.getQuery())) {
+            root = root.and(new Criteria("title").matches(criteria.getQuery())
+                    .or(new Criteria("description").matches(criteria.getQuery())));
+        }
+        if (StringUtils.hasText(criteria.getCategory())) {
+            root = root.and(new Criteria("category").is(criteria.getCategory()));
+        }
+        if (criteria.getType() != null) {
+            root = root.and(new Criteria("type").is(criteria.getType().name()));
+        }
+        if (criteria.getMinPrice() != null) {
+            root = root.and(new Criteria("price").greaterThanEqual(criteria.getMinPrice()));
+        }
+        if (criteria.getMaxPrice() != null) {
+            root = root.and(new Criteria("price").lessThanEqual(criteria.getMaxPrice()));
+        }
+        if (criteria.getMinAge() != null) {
+            root = root.and(new Criteria("maxAge").greaterThanEqual(criteria.getMinAge()));
+        }
+        if (criteria.getMaxAge() != null) {
+            root = root.and(new Criteria("minAge").lessThanEqual(criteria.getMaxAge()));
+        }
+        if (criteria.getStartDate() != null) {
+            root = root.and(new Criteria("nextSessionDate").greaterThanEqual(criteria.getStartDate()));
+        }
+
+        CriteriaQuery query = new CriteriaQuery(root);
+        query.setPageable(compiler.createPageable(criteria));
+        query.setTrackTotalHits(true);
+        return query;
+    }
+}
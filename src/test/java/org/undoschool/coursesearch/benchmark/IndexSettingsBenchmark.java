@@ -0,0 +1,124 @@
+package org.undoschool.coursesearch.benchmark;
+
+import org.springframework.data.elasticsearch.client.ClientConfiguration;
+import org.springframework.data.elasticsearch.client.elc.ElasticsearchClients;
+import org.springframework.data.elasticsearch.client.elc.ElasticsearchTemplate;
+import org.springframework.data.elasticsearch.core.IndexOperations;
+import org.springframework.data.elasticsearch.core.SearchHits;
+import org.springframework.data.elasticsearch.core.document.Document;
+import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
+import org.springframework.data.elasticsearch.core.query.Query;
+import org.undoschool.coursesearch.document.CourseDocument;
+import org.undoschool.coursesearch.service.CourseQueryCompiler;
+import org.undoschool.coursesearch.service.CourseQueryCompiler.TextMode;
+import org.undoschool.coursesearch.service.Facet;
+import org.undoschool.coursesearch.service.SearchCriteria;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compares query latency on an index created with default settings and a plain mapping
+ * against one created with the settings profile declared on {@link CourseDocument}
+ * (index sort, eager global ordinals, unindexed aggregation-only fields).
+ *
+ * Needs a running Elasticsearch. Run from the IDE or with:
+ * <pre>
+ * ./mvnw test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=org.undoschool.coursesearch.benchmark.IndexSettingsBenchmark \
+ *     -Dbench.es=localhost:9200 -Dbench.docs=1000000 -Dbench.queries=2000
+ * </pre>
+ * Both indices hold the same synthetic catalog and are reused by later runs.
+ */
+public class IndexSettingsBenchmark {
+
+    public static void main(String[] args) {
+        String host = System.getProperty("bench.es", "localhost:9200");
+        int docs = Integer.getInteger("bench.docs", 1_000_000);
+        int queries = Integer.getInteger("bench.queries", 2_000);
+
+        ElasticsearchTemplate template = new ElasticsearchTemplate(
+                ElasticsearchClients.createImperative(ClientConfiguration.create(host)));
+        IndexCoordinates plain = IndexCoordinates.of("courses_bench_plain");
+        IndexCoordinates tuned = IndexCoordinates.of("courses_bench_tuned");
+
+        createPlain(template.indexOps(plain));
+        createTuned(template.indexOps(tuned));
+        FilterContextBenchmark.seed(template, plain, docs);
+        FilterContextBenchmark.seed(template, tuned, docs);
+
+        CourseQueryCompiler compiler = new CourseQueryCompiler();
+        SyntheticCourses synthetic = new SyntheticCourses(7);
+        List<Query> workload = new ArrayList<>(queries);
+        for (int i = 0; i < queries; i++) {
+            // Listing traffic: default upcoming sort, every other request with facet counts
+            SearchCriteria criteria = synthetic.criteria(i % 4 == 0);
+            if (i % 2 == 0) {
+                criteria.setFacets(EnumSet.of(Facet.CATEGORY, Facet.TYPE, Facet.GRADE_RANGE));
+            }
+            workload.add(compiler.compile(criteria, TextMode.MATCH));
+        }
+
+        for (Query query : workload.subList(0, Math.min(200, queries))) {
+            template.search(query, CourseDocument.class, plain);
+            template.search(query, CourseDocument.class, tuned);
+        }
+
+        LatencyStats plainClient = new LatencyStats();
+        LatencyStats plainTook = new LatencyStats();
+        LatencyStats tunedClient = new LatencyStats();
+        LatencyStats tunedTook = new LatencyStats();
+
+        // Alternate the two indices so cluster noise affects both equally
+        for (Query query : workload) {
+            run(template, plain, query, plainClient, plainTook);
+            run(template, tuned, query, tunedClient, tunedTook);
+        }
+
+        System.out.printf("docs=%d queries=%d%n", docs, queries);
+        System.out.println("default settings  client: " + plainClient.summary());
+        System.out.println("default settings  took:   " + plainTook.summary());
+        System.out.println("tuned settings    client: " + tunedClient.summary());
+        System.out.println("tuned settings    took:   " + tunedTook.summary());
+    }
+
+    private static void run(ElasticsearchTemplate template, IndexCoordinates index, Query query,
+                            LatencyStats client, LatencyStats took) {
+        long start = System.nanoTime();
+        SearchHits<CourseDocument> hits = template.search(query, CourseDocument.class, index);
+        client.record(System.nanoTime() - start);
+        took.record(hits.getExecutionDuration().toNanos());
+    }
+
+    /**
+     * The layout before the settings profile: default index settings and a mapping without
+     * eager global ordinals or unindexed fields.
+     */
+    @SuppressWarnings("unchecked")
+    private static void createPlain(IndexOperations indexOps) {
+        if (indexOps.exists()) {
+            return;
+        }
+        Document mapping = indexOps.createMapping(CourseDocument.class);
+        Map<String, Object> properties = new LinkedHashMap<>();
+        ((Map<String, Object>) mapping.get("properties")).forEach((field, definition) -> {
+            Map<String, Object> stripped = new LinkedHashMap<>((Map<String, Object>) definition);
+            stripped.remove("eager_global_ordinals");
+            stripped.remove("index");
+            properties.put(field, stripped);
+        });
+        mapping.put("properties", properties);
+        indexOps.create();
+        indexOps.putMapping(mapping);
+    }
+
+    private static void createTuned(IndexOperations indexOps) {
+        if (indexOps.exists()) {
+            return;
+        }
+        indexOps.create(indexOps.createSettings(CourseDocument.class), indexOps.createMapping(CourseDocument.class));
+    }
+}
@@ -0,0 +1,260 @@
+package org.undoschool.coursesearch.benchmark;
+
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.elasticsearch.client.ClientConfiguration;
+import org.springframework.data.elasticsearch.client.elc.ElasticsearchClients;
+import org.springframework.data.elasticsearch.client.elc.ElasticsearchTemplate;
+import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
+import org.springframework.web.util.UriComponentsBuilder;
+import org.testcontainers.elasticsearch.ElasticsearchContainer;
+import org.testcontainers.utility.DockerImageName;
+import org.undoschool.coursesearch.CourseSearchApplication;
+import org.undoschool.coursesearch.service.SearchCriteria;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Open-loop load test of /api/search against a seeded synthetic catalog.
+ *
+ * Starts Elasticsearch with Testcontainers (or uses -Dload.es), seeds the "courses" index with
+ * -Dload.docs synthetic courses, boots the application on a random port (or targets -Dload.url)
+ * and replays a weighted mix of query classes at -Dload.rps for -Dload.duration. Requests are
+ * issued on schedule whether or not earlier ones have returned, and latency is measured from the
+ * scheduled start, so a slow server shows up as latency instead of as a lower request rate.
+ * <pre>
+ * ./mvnw test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=org.undoschool.coursesearch.benchmark.SearchLoadHarness \
+ *     -Dload.docs=1000000 -Dload.rps=200 -Dload.duration=120 \
+ *     -Dload.mix=filters:50,text:20,sorted:10,deep:10,fuzzy:10
+ * </pre>
+ * Pass -Dload.app.* to set application properties, e.g. -Dload.app.coursesearch.cache.enabled=false.
+ */
+public class SearchLoadHarness {
+
+    /**
+     * Request shapes replayed by the harness.
+     */
+    enum QueryClass {
+        FILTERS,    // structured filters only, the bulk of listing traffic
+        TEXT,       // text query plus filters
+        SORTED,     // filters sorted by price
+        DEEP,       // offset pages far from the start
+        FUZZY       // misspelled text with fuzzy fallback
+    }
+
+    public static void main(String[] args) throws Exception {
+        int docs = Integer.getInteger("load.docs", 100_000);
+        int rps = Integer.getInteger("load.rps", 100);
+        Duration duration = Duration.ofSeconds(Long.getLong("load.duration", 60L));
+        Duration warmup = Duration.ofSeconds(Long.getLong("load.warmup", 10L));
+        Map<QueryClass, Integer> mix = parseMix(System.getProperty("load.mix", "filters:50,text:20,sorted:10,deep:10,fuzzy:10"));
+
+        ElasticsearchContainer container = null;
+        ConfigurableApplicationContext app = null;
+        try {
+            String es = System.getProperty("load.es");
+            if (es == null) {
+                container = new ElasticsearchContainer(DockerImageName.parse("docker.elastic.co/elasticsearch/elasticsearch:8.11.1"))
+                        .withEnv("xpack.security.enabled", "false")
+                        .withEnv("ES_JAVA_OPTS", "-Xms" + System.getProperty("load.esHeap", "2g")
+                                + " -Xmx" + System.getProperty("load.esHeap", "2g"))
+                        .withReuse(true);
+                container.start();
+                es = container.getHttpHostAddress();
+            }
+
+            // Seed before the application starts, so its startup loader finds a populated index
+            ElasticsearchTemplate template = new ElasticsearchTemplate(
+                    ElasticsearchClients.createImperative(ClientConfiguration.create(es)));
+            long seedStart = System.nanoTime();
+            FilterContextBenchmark.seed(template, IndexCoordinates.of("courses"), docs);
+            System.out.printf("catalog ready: %d courses (%d s)%n", docs,
+                    TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - seedStart));
+
+            String baseUrl = System.getProperty("load.url");
+            if (baseUrl == null) {
+                app = startApplication(es);
+                baseUrl = "http://localhost:" + app.getEnvironment().getProperty("local.server.port");
+            }
+
+            run(baseUrl, mix, rps, warmup, false);
+            Map<QueryClass, ClassStats> stats = run(baseUrl, mix, rps, duration, true);
+            report(stats, rps, duration, docs);
+        } finally {
+            if (app != null) {
+                app.close();
+            }
+            if (container != null) {
+                container.stop();
+            }
+        }
+    }
+
+    private static ConfigurableApplicationContext startApplication(String es) {
+        List<String> properties = new ArrayList<>();
+        properties.add("spring.elasticsearch.uris=http://" + es);
+        properties.add("server.port=0");
+        System.getProperties().stringPropertyNames().stream()
+                .filter(name -> name.startsWith("load.app."))
+                .forEach(name -> properties.add(name.substring("load.app.".length()) + "=" + System.getProperty(name)));
+        return new SpringApplicationBuilder(CourseSearchApplication.class)
+                .properties(properties.toArray(String[]::new))
+                .run();
+    }
+
+    private static Map<QueryClass, ClassStats> run(String baseUrl, Map<QueryClass, Integer> mix, int rps,
+                                                   Duration duration, boolean measured) throws InterruptedException {
+        Map<QueryClass, ClassStats> stats = new EnumMap<>(QueryClass.class);
+        mix.keySet().forEach(queryClass -> stats.put(queryClass, new ClassStats()));
+
+        HttpClient client = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(5))
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+        SyntheticCourses synthetic = new SyntheticCourses(measured ? 11 : 3);
+        SplittableRandom random = synthetic.random();
+        int totalWeight = mix.values().stream().mapToInt(Integer::intValue).sum();
+
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / rps;
+        long requests = duration.toSeconds() * rps;
+        long start = System.nanoTime();
+
+        try (ExecutorService senders = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (long i = 0; i < requests; i++) {
+                long scheduled = start + i * intervalNanos;
+                long wait = scheduled - System.nanoTime();
+                if (wait > 0) {
+                    TimeUnit.NANOSECONDS.sleep(wait);
+                }
+
+                QueryClass queryClass = pick(mix, totalWeight, random);
+                URI uri = uri(baseUrl, queryClass, synthetic);
+                ClassStats classStats = stats.get(queryClass);
+                senders.execute(() -> send(client, uri, scheduled, classStats));
+            }
+        }
+        if (!measured) {
+            System.out.printf("warm-up done (%d requests)%n", requests);
+        }
+        return stats;
+    }
+
+    private static void send(HttpClient client, URI uri, long scheduled, ClassStats stats) {
+        try {
+            HttpResponse<Void> response = client.send(
+                    HttpRequest.newBuilder(uri).timeout(Duration.ofSeconds(30)).GET().build(),
+                    HttpResponse.BodyHandlers.discarding());
+            if (response.statusCode() != 200) {
+                stats.errors.incrementAndGet();
+            }
+        } catch (Exception e) {
+            stats.errors.incrementAndGet();
+        } finally {
+            stats.record(System.nanoTime() - scheduled);
+        }
+    }
+
+    private static URI uri(String baseUrl, QueryClass queryClass, SyntheticCourses synthetic) {
+        SearchCriteria criteria = synthetic.criteria(queryClass == QueryClass.TEXT);
+        SplittableRandom random = synthetic.random();
+        switch (queryClass) {
+            case SORTED -> criteria.setSort(random.nextBoolean() ? "priceAsc" : "priceDesc");
+            // Stays inside the default 10k max_result_window
+            case DEEP -> criteria.setPage(50 + random.nextInt(900));
+            case FUZZY -> {
+                criteria.setQuery(synthetic.typo());
+                criteria.setFuzzy(true);
+            }
+            default -> {
+            }
+        }
+
+        UriComponentsBuilder uri = UriComponentsBuilder.fromUriString(baseUrl).path("/api/search");
+        addParam(uri, "q", criteria.getQuery());
+        addParam(uri, "category", criteria.getCategory());
+        addParam(uri, "type", criteria.getType());
+        addParam(uri, "minAge", criteria.getMinAge());
+        addParam(uri, "maxAge", criteria.getMaxAge());
+        addParam(uri, "minPrice", criteria.getMinPrice());
+        addParam(uri, "maxPrice", criteria.getMaxPrice());
+        addParam(uri, "startDate", criteria.getStartDate());
+        addParam(uri, "sort", criteria.getSort());
+        addParam(uri, "page", criteria.getPage());
+        addParam(uri, "size", criteria.getSize());
+        if (criteria.isFuzzy()) {
+            addParam(uri, "fuzzy", true);
+        }
+        return uri.encode().build().toUri();
+    }
+
+    private static void addParam(UriComponentsBuilder uri, String name, Object value) {
+        if (value != null) {
+            uri.queryParam(name, value);
+        }
+    }
+
+    private static QueryClass pick(Map<QueryClass, Integer> mix, int totalWeight, SplittableRandom random) {
+        int roll = random.nextInt(totalWeight);
+        for (Map.Entry<QueryClass, Integer> entry : mix.entrySet()) {
+            roll -= entry.getValue();
+            if (roll < 0) {
+                return entry.getKey();
+            }
+        }
+        throw new IllegalStateException("Empty query mix");
+    }
+
+    static Map<QueryClass, Integer> parseMix(String mix) {
+        Map<QueryClass, Integer> weights = new EnumMap<>(QueryClass.class);
+        for (String part : mix.split(",")) {
+            String[] nameAndWeight = part.trim().split(":");
+            int weight = Integer.parseInt(nameAndWeight[1].trim());
+            if (weight > 0) {
+                weights.put(QueryClass.valueOf(nameAndWeight[0].trim().toUpperCase()), weight);
+            }
+        }
+        if (weights.isEmpty()) {
+            throw new IllegalArgumentException("load.mix has no query class with a positive weight");
+        }
+        return weights;
+    }
+
+    private static void report(Map<QueryClass, ClassStats> stats, int rps, Duration duration, int docs) {
+        System.out.printf("docs=%d target=%d rps duration=%ds%n", docs, rps, duration.toSeconds());
+        LatencyStats all = new LatencyStats();
+        long errors = 0;
+        for (Map.Entry<QueryClass, ClassStats> entry : stats.entrySet()) {
+            ClassStats classStats = entry.getValue();
+            System.out.printf("%-8s %6.1f rps errors=%d %s%n", entry.getKey().name().toLowerCase(),
+                    classStats.latency.count() / (double) duration.toSeconds(), classStats.errors.get(),
+                    classStats.latency.summary());
+            all.merge(classStats.latency);
+            errors += classStats.errors.get();
+        }
+        System.out.printf("%-8s %6.1f rps errors=%d %s%n", "all",
+                all.count() / (double) duration.toSeconds(), errors, all.summary());
+    }
+
+    private static final class ClassStats {
+        private final LatencyStats latency = new LatencyStats();
+        private final AtomicLong errors = new AtomicLong();
+
+        synchronized void record(long nanos) {
+            latency.record(nanos);
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package org.undoschool.coursesearch.benchmark;
+
+import org.undoschool.coursesearch.document.CourseDocument;
+import org.undoschool.coursesearch.service.CourseType;
+import org.undoschool.coursesearch.service.SearchCriteria;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Deterministic generator of synthetic courses and search criteria for benchmarks.
+ *
+ * Category, type, price and date distributions are skewed roughly like sample_courses.json:
+ * a few large categories, mostly COURSE types, prices clustered under $200 and
+ * sessions spread over the next six months.
+ */
+public final class SyntheticCourses {
+
+    public static final LocalDateTime BASE_DATE = LocalDateTime.of(2025, 9, 1, 0, 0);
+
+    static final String[] CATEGORIES = {
+            "Technology", "Science", "Language", "Art", "Math", "History",
+            "Music", "Physical Education", "Strategy Games", "Life Skills"
+    };
+    // Relative weights per category, matching the order above
+    private static final int[] CATEGORY_WEIGHTS = {18, 14, 14, 12, 12, 12, 10, 8, 3, 3};
+
+    private static final String[] SUBJECTS = {
+            "Python", "Robotics", "Chemistry", "Spanish", "Watercolor", "Algebra", "Rome",
+            "Guitar", "Soccer", "Chess", "Cooking", "Astronomy", "Java", "Poetry", "Dinosaurs"
+    };
+    private static final String[] FORMATS = {"Introduction to", "Advanced", "Weekend", "Junior", "Creative"};
+    private static final String[] SUFFIXES = {"Workshop", "Club", "Lab", "Masterclass", "Explorers"};
+
+    private static final String[] TYPOS = {"pythno", "robtics", "chemstry", "spansh", "algebar", "guitr"};
+
+    private final SplittableRandom random;
+
+    public SyntheticCourses(long seed) {
+        this.random = new SplittableRandom(seed);
+    }
+
+    public CourseDocument course(long id) {
+        String subject = pick(SUBJECTS);
+        int minAge = 5 + random.nextInt(12);
+        int maxAge = minAge + 2 + random.nextInt(5);
+        // Skewed towards cheaper courses: most land between $20 and $200
+        double price = Math.round((20 + Math.pow(random.nextDouble(), 2) * 380) * 100) / 100.0;
+
+        return CourseDocument.builder()
+                .id(Long.toString(id))
+                .title(pick(FORMATS) + " " + subject + " " + pick(SUFFIXES))
+                .description("Hands-on sessions about " + subject.toLowerCase()
+                        + " for curious learners, with projects, games and guided practice.")
+                .category(weightedCategory())
+                .type(type().name())
+                .gradeRange((minAge - 5) + "th-" + (maxAge - 5) + "th")
+                .minAge(minAge)
+                .maxAge(maxAge)
+                .price(price)
+                .nextSessionDate(BASE_DATE.plusMinutes(random.nextInt(180 * 24 * 60)))
+                .build();
+    }
+
+    public List<CourseDocument> courses(long firstId, int count) {
+        List<CourseDocument> courses = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            courses.add(course(firstId + i));
+        }
+        return courses;
+    }
+
+    /**
+     * Filter-heavy criteria with an optional text query, the common shape of /api/search traffic.
+     */
+    public SearchCriteria criteria(boolean withText) {
+        SearchCriteria.SearchCriteriaBuilder builder = SearchCriteria.builder()
+                .category(random.nextInt(4) == 0 ? null : weightedCategory())
+                .type(random.nextInt(3) == 0 ? type() : null)
+                .sort(random.nextBoolean() ? "upcoming" : "priceAsc")
+                .page(0)
+                .size(10);
+
+        if (random.nextBoolean()) {
+            builder.minPrice(20.0).maxPrice(50.0 + random.nextInt(150));
+        }
+        if (random.nextInt(3) == 0) {
+            int age = 6 + random.nextInt(10);
+            builder.minAge(age).maxAge(age);
+        }
+        if (random.nextBoolean()) {
+            builder.startDate(BASE_DATE.plusDays(random.nextInt(90)));
+        }
+        if (withText) {
+            builder.query(pick(SUBJECTS).toLowerCase());
+        }
+        return builder.build();
+    }
+
+    public String typo() {
+        return pick(TYPOS);
+    }
+
+    public SplittableRandom random() {
+        return random;
+    }
+
+    private CourseType type() {
+        int roll = random.nextInt(100);
+        if (roll < 70) {
+            return CourseType.COURSE;
+        }
+        return roll < 90 ? CourseType.CLUB : CourseType.ONE_TIME;
+    }
+
+    private String weightedCategory() {
+        int total = 0;
+        for (int weight : CATEGORY_WEIGHTS) {
+            total += weight;
+        }
+        int roll = random.nextInt(total);
+        for (int i = 0; i < CATEGORIES.length; i++) {
+            roll -= CATEGORY_WEIGHTS[i];
+            if (roll < 0) {
+                return CATEGORIES[i];
+            }
+        }
+        return CATEGORIES[0];
+    }
+
+    private String pick(String[] values) {
+        return values[random.nextInt(values.length)];
+    }
+}
@@ -0,0 +1,104 @@
+package org.undoschool.coursesearch.benchmark;
+
+import org.springframework.data.elasticsearch.client.ClientConfiguration;
+import org.springframework.data.elasticsearch.client.elc.ElasticsearchClients;
+import org.springframework.data.elasticsearch.client.elc.ElasticsearchTemplate;
+import org.springframework.data.elasticsearch.core.SearchHits;
+import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
+import org.springframework.data.elasticsearch.core.query.Query;
+import org.undoschool.coursesearch.config.CourseSearchProperties;
+import org.undoschool.coursesearch.config.CourseSearchProperties.Totals.Policy;
+import org.undoschool.coursesearch.document.CourseDocument;
+import org.undoschool.coursesearch.service.CourseQueryCompiler;
+import org.undoschool.coursesearch.service.CourseQueryCompiler.TextMode;
+import org.undoschool.coursesearch.service.SearchCriteria;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Page-0 latency of broad searches under each totals policy (exact, capped, none), plus the
+ * hit-less count request behind /api/search/count.
+ *
+ * Broad means few or no filters, so millions of courses match and an exact total has to visit
+ * all of them. Needs a running Elasticsearch. Run from the IDE or with:
+ * <pre>
+ * ./mvnw test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=org.undoschool.coursesearch.benchmark.TotalHitsBenchmark \
+ *     -Dbench.es=localhost:9200 -Dbench.docs=5000000 -Dbench.queries=1000
+ * </pre>
+ * The index is seeded once and reused by later runs with the same name.
+ */
+public class TotalHitsBenchmark {
+
+    public static void main(String[] args) {
+        String host = System.getProperty("bench.es", "localhost:9200");
+        String indexName = System.getProperty("bench.index", "courses_bench");
+        int docs = Integer.getInteger("bench.docs", 5_000_000);
+        int queries = Integer.getInteger("bench.queries", 1_000);
+
+        ElasticsearchTemplate template = new ElasticsearchTemplate(
+                ElasticsearchClients.createImperative(ClientConfiguration.create(host)));
+        IndexCoordinates index = IndexCoordinates.of(indexName);
+        FilterContextBenchmark.seed(template, index, docs);
+
+        Map<Policy, CourseQueryCompiler> compilers = new EnumMap<>(Policy.class);
+        for (Policy policy : Policy.values()) {
+            CourseSearchProperties properties = new CourseSearchProperties();
+            properties.getTotals().setPolicy(policy);
+            compilers.put(policy, new CourseQueryCompiler(properties));
+        }
+
+        SyntheticCourses synthetic = new SyntheticCourses(7);
+        List<SearchCriteria> workload = new ArrayList<>(queries);
+        for (int i = 0; i < queries; i++) {
+            SearchCriteria criteria = SearchCriteria.withDefaults();
+            // Every other search narrows by category only, the rest match everything
+            if (i % 2 == 0) {
+                criteria.setCategory(synthetic.criteria(false).getCategory());
+            }
+            criteria.setSort(i % 3 == 0 ? "priceAsc" : "upcoming");
+            workload.add(criteria);
+        }
+
+        for (SearchCriteria criteria : workload.subList(0, Math.min(100, queries))) {
+            compilers.values().forEach(compiler ->
+                    template.search(compiler.compile(criteria, TextMode.MATCH), CourseDocument.class, index));
+        }
+
+        Map<Policy, LatencyStats> client = new EnumMap<>(Policy.class);
+        Map<Policy, LatencyStats> took = new EnumMap<>(Policy.class);
+        LatencyStats count = new LatencyStats();
+        for (Policy policy : Policy.values()) {
+            client.put(policy, new LatencyStats());
+            took.put(policy, new LatencyStats());
+        }
+
+        // Interleave the variants so cluster noise affects all of them equally
+        for (SearchCriteria criteria : workload) {
+            compilers.forEach((policy, compiler) -> run(template, index,
+                    compiler.compile(criteria, TextMode.MATCH), client.get(policy), took.get(policy)));
+            long start = System.nanoTime();
+            template.count(compilers.get(Policy.EXACT).compileCount(criteria), CourseDocument.class, index);
+            count.record(System.nanoTime() - start);
+        }
+
+        System.out.printf("index=%s docs=%d queries=%d%n", indexName, docs, queries);
+        for (Policy policy : Policy.values()) {
+            String name = policy.name().toLowerCase();
+            System.out.printf("%-6s client: %s%n", name, client.get(policy).summary());
+            System.out.printf("%-6s took:   %s%n", name, took.get(policy).summary());
+        }
+        System.out.println("count  client: " + count.summary());
+    }
+
+    private static void run(ElasticsearchTemplate template, IndexCoordinates index, Query query,
+                            LatencyStats client, LatencyStats took) {
+        long start = System.nanoTime();
+        SearchHits<CourseDocument> hits = template.search(query, CourseDocument.class, index);
+        client.record(System.nanoTime() - start);
+        took.record(hits.getExecutionDuration().toNanos());
+    }
+}
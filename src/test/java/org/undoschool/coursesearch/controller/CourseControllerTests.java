@@ -0,0 +1,252 @@
+package org.undoschool.coursesearch.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.undoschool.coursesearch.config.ResponseFormatConfig;
+import org.undoschool.coursesearch.document.CourseDocument;
+import org.undoschool.coursesearch.service.CourseExportService;
+import org.undoschool.coursesearch.service.CourseSearchService;
+import org.undoschool.coursesearch.service.CourseSuggestService;
+import org.undoschool.coursesearch.service.CourseSuggestService.CourseSuggestion;
+import org.undoschool.coursesearch.service.CourseType;
+import org.undoschool.coursesearch.service.Facet;
+import org.undoschool.coursesearch.service.SearchCriteria;
+import org.undoschool.coursesearch.service.SearchOutcome;
+import org.undoschool.coursesearch.service.SearchResult;
+import org.undoschool.coursesearch.service.SearchTimeoutException;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest(CourseController.class)
+@Import({ResponseFormatConfig.class, SimpleMeterRegistry.class})
+class CourseControllerTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockitoBean
+    private CourseSearchService searchService;
+
+    @MockitoBean
+    private CourseExportService exportService;
+
+    @MockitoBean
+    private CourseSuggestService suggestService;
+
+    @Test
+    void searchParametersAreBoundIntoCriteria() throws Exception {
+        when(searchService.searchCourses(any())).thenReturn(SearchResult.builder().total(0).courses(List.of()).build());
+
+        mockMvc.perform(get("/api/search")
+                        .param("q", "python")
+                        .param("type", "CLUB")
+                        .param("minPrice", "10")
+                        .param("startDate", "2025-09-12T00:00:00")
+                        .param("cursor", "*"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.total").value(0))
+                .andExpect(jsonPath("$.nextCursor").doesNotExist());
+
+        ArgumentCaptor<SearchCriteria> captor = ArgumentCaptor.forClass(SearchCriteria.class);
+        verify(searchService).searchCourses(captor.capture());
+        SearchCriteria criteria = captor.getValue();
+        assertThat(criteria.getQuery()).isEqualTo("python");
+        assertThat(criteria.getType()).isEqualTo(CourseType.CLUB);
+        assertThat(criteria.getMinPrice()).isEqualTo(10.0);
+        assertThat(criteria.getStartDate()).isEqualTo(LocalDateTime.of(2025, 9, 12, 0, 0));
+        assertThat(criteria.getSort()).isEqualTo("upcoming");
+        assertThat(criteria.getSize()).isEqualTo(10);
+        assertThat(criteria.getCursor()).isEqualTo("*");
+    }
+
+    @Test
+    void facetsAreParsedAndUnknownFacetsRejected() throws Exception {
+        when(searchService.searchCourses(any())).thenReturn(SearchResult.builder().total(0).courses(List.of()).build());
+
+        mockMvc.perform(get("/api/search").param("facets", "category,gradeRange").param("facets", "AGE"))
+                .andExpect(status().isOk());
+
+        ArgumentCaptor<SearchCriteria> captor = ArgumentCaptor.forClass(SearchCriteria.class);
+        verify(searchService).searchCourses(captor.capture());
+        assertThat(captor.getValue().getFacets()).containsExactly(Facet.CATEGORY, Facet.AGE, Facet.GRADE_RANGE);
+
+        mockMvc.perform(get("/api/search").param("facets", "colour"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void viewsAndFieldListsSelectTheProjection() throws Exception {
+        when(searchService.searchCourses(any())).thenReturn(SearchResult.builder().total(0).courses(List.of()).build());
+
+        mockMvc.perform(get("/api/search").param("view", "card"))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/api/search").param("fields", "title,minAge"))
+                .andExpect(status().isOk());
+
+        ArgumentCaptor<SearchCriteria> captor = ArgumentCaptor.forClass(SearchCriteria.class);
+        verify(searchService, times(2)).searchCourses(captor.capture());
+        assertThat(captor.getAllValues().get(0).getFields()).containsExactlyInAnyOrder("id", "title", "price", "nextSessionDate");
+        assertThat(captor.getAllValues().get(1).getFields()).containsExactlyInAnyOrder("id", "title", "minAge");
+
+        mockMvc.perform(get("/api/search").param("view", "card").param("fields", "title"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/search").param("fields", "secret"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void approximateTotalsAreFlaggedAndCountsAreExact() throws Exception {
+        when(searchService.searchCourses(any()))
+                .thenReturn(SearchResult.builder().total(10_000).approximate(true).courses(List.of()).build());
+        when(searchService.countCourses(any())).thenReturn(1_234_567L);
+
+        mockMvc.perform(get("/api/search"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.total").value(10_000))
+                .andExpect(jsonPath("$.approximate").value(true));
+        mockMvc.perform(get("/api/search/count").param("category", "Art"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.total").value(1_234_567));
+
+        ArgumentCaptor<SearchCriteria> captor = ArgumentCaptor.forClass(SearchCriteria.class);
+        verify(searchService).countCourses(captor.capture());
+        assertThat(captor.getValue().getCategory()).isEqualTo("Art");
+    }
+
+    @Test
+    void batchSearchKeepsOrderAndIsolatesFailures() throws Exception {
+        when(searchService.searchBatch(any())).thenReturn(List.of(
+                SearchOutcome.success(SearchResult.builder().total(3).courses(List.of()).build()),
+                SearchOutcome.failure(new SearchTimeoutException("Search did not complete within 3000 ms"))));
+
+        mockMvc.perform(post("/api/search/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                [{"category": "Art"},
+                                 {"facets": ["colour"]},
+                                 {"type": "CLUB", "maxPrice": 50, "sort": "priceAsc"}]
+                                """))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].result.total").value(3))
+                .andExpect(jsonPath("$[0].error").doesNotExist())
+                .andExpect(jsonPath("$[1].error.status").value(400))
+                .andExpect(jsonPath("$[2].error.status").value(504))
+                .andExpect(jsonPath("$[2].result").doesNotExist());
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<SearchCriteria>> captor = ArgumentCaptor.forClass(List.class);
+        verify(searchService).searchBatch(captor.capture());
+        assertThat(captor.getValue()).hasSize(2);
+        assertThat(captor.getValue().get(0).getCategory()).isEqualTo("Art");
+        assertThat(captor.getValue().get(0).getSize()).isEqualTo(10);
+        assertThat(captor.getValue().get(1).getType()).isEqualTo(CourseType.CLUB);
+        assertThat(captor.getValue().get(1).getSort()).isEqualTo("priceAsc");
+    }
+
+    @Test
+    void binaryFormatsAreNegotiatedAndJsonStaysTheDefault() throws Exception {
+        CourseDocument course = CourseDocument.builder().id("7").title("Python for Kids").category("Technology").build();
+        when(searchService.searchCourses(any())).thenReturn(SearchResult.builder().total(1).courses(List.of(course)).build());
+
+        byte[] smile = mockMvc.perform(get("/api/search").accept(ResponseFormatConfig.SMILE))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(ResponseFormatConfig.SMILE))
+                .andReturn().getResponse().getContentAsByteArray();
+        JsonNode decoded = new ObjectMapper(new SmileFactory()).readTree(smile);
+        assertThat(decoded.path("courses").path(0).path("title").asText()).isEqualTo("Python for Kids");
+        assertThat(decoded.has("nextCursor")).isFalse();
+
+        byte[] cbor = mockMvc.perform(get("/api/search").accept(ResponseFormatConfig.CBOR))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(ResponseFormatConfig.CBOR))
+                .andReturn().getResponse().getContentAsByteArray();
+        assertThat(new ObjectMapper(new CBORFactory()).readTree(cbor).path("total").asLong()).isEqualTo(1);
+
+        mockMvc.perform(get("/api/search").accept(MediaType.ALL))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.courses[0].id").value("7"));
+    }
+
+    @Test
+    void suggestReturnsLightweightSuggestions() throws Exception {
+        when(suggestService.suggest("pyt", 3)).thenReturn(List.of(
+                new CourseSuggestion("Python for Kids", "7", "Python for Kids", "Technology")));
+
+        mockMvc.perform(get("/api/suggest").param("prefix", "pyt").param("size", "3"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].text").value("Python for Kids"))
+                .andExpect(jsonPath("$[0].id").value("7"))
+                .andExpect(jsonPath("$[0].description").doesNotExist());
+    }
+
+    @Test
+    void invalidCursorIsBadRequest() throws Exception {
+        when(searchService.searchCourses(any())).thenThrow(new IllegalArgumentException("Invalid cursor"));
+
+        mockMvc.perform(get("/api/search").param("cursor", "garbage"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.detail").value("Invalid cursor"));
+    }
+
+    @Test
+    void exportStreamsNdjson() throws Exception {
+        doAnswer(invocation -> {
+            OutputStream out = invocation.getArgument(1);
+            out.write("{\"id\":\"1\"}\n{\"id\":\"2\"}\n".getBytes(StandardCharsets.UTF_8));
+            return 2L;
+        }).when(exportService).export(any(), any());
+
+        MvcResult started = mockMvc.perform(get("/api/search/export").param("category", "Art"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(CourseController.APPLICATION_NDJSON))
+                .andExpect(content().string("{\"id\":\"1\"}\n{\"id\":\"2\"}\n"));
+    }
+
+    @Test
+    void oversizedExportIsRejectedBeforeStreaming() throws Exception {
+        doThrow(new IllegalArgumentException("Export matches 250000 courses, more than the limit of 100000; narrow the filters"))
+                .when(exportService).checkSize(any());
+
+        mockMvc.perform(get("/api/search/export"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.detail").value(
+                        "Export matches 250000 courses, more than the limit of 100000; narrow the filters"));
+        verify(exportService, never()).export(any(), any());
+    }
+}